@@ -12,14 +12,17 @@ import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import kernel.DataPoint;
+import kernel.FileSummary;
 import kernel.ParserFactory;
 import spi.FileParser;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller which is used to manage the data displayed in the file details screen
@@ -48,7 +51,7 @@ public class FileViewController{
 
     private File inputFile;
 
-    private ArrayList<DataPoint> data;
+    private CompletableFuture<ArrayList<DataPoint>> data;
 
     private FileParser parser;
 
@@ -79,16 +82,17 @@ public class FileViewController{
     public void processFile(File inputFile) throws IOException {
         parser.setDatabase(inputFile);
 
-        // read the database to calculate DB info such as the number of samples
-        data = parser.readDB();
+        // scan the database to find DB info such as the number of samples, it is not parsed until clustering starts
+        FileSummary summary = parser.scanFile();
+        releaseData();
 
         fileNameText.setText(parser.getFileName());
-        int lineNum = parser.getNumberOfLines();
+        long lineNum = summary.getLineCount();
         if(lineNum == 0){
             throw new IOException();
         }
         sampleText.setText(String.valueOf(lineNum));
-        featureText.setText(String.valueOf(parser.getFeatureNumber()));
+        featureText.setText(String.valueOf(summary.getFeatureNumber()));
 
         // update input file field
         setInputFile(inputFile);
@@ -110,13 +114,55 @@ public class FileViewController{
         // set the file information within the next screen so it can be used in clustering
         SettingsViewController settingsViewController = loader.getController();
         settingsViewController.setfileViewScene(landing.getScene());
-        settingsViewController.setData(data);
+        settingsViewController.setData(readData());
         settingsViewController.setFileName(inputFile.getName());
 
         // display file window
         landing.setScene(scene);
     }
 
+    /**
+     * Starts parsing the file in the background the first time clustering is requested, so the file is read while the
+     * cluster settings are being chosen. The same parse is shared if the settings screen is opened again. The file is
+     * connected to the parser again first, as scanning the file may have used up the stream it was connected with.
+     *
+     * @return the data which will be available once the file has been parsed
+     */
+    private CompletableFuture<ArrayList<DataPoint>> readData() {
+        if (data == null) {
+            FileParser fileParser = parser;
+            File file = inputFile;
+            data = CompletableFuture.supplyAsync(() -> {
+                try {
+                    fileParser.setDatabase(file);
+                    return fileParser.readDB();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return data;
+    }
+
+    /**
+     * Closes the dataset of the previous file once it has been parsed, so any storage it holds outside the heap is
+     * released rather than kept until the application exits.
+     */
+    private void releaseData() {
+        if (data != null) {
+            data.thenAccept(points -> {
+                if (!points.isEmpty()) {
+                    try {
+                        points.get(0).getDataset().close();
+                    } catch (IOException e) {
+                        System.err.println("Failed to release the previous file: " + e.getMessage());
+                    }
+                }
+            });
+            data = null;
+        }
+    }
+
     @FXML
     void returnToStart(ActionEvent event) {
         Stage stage = (Stage) newFileButton.getScene().getWindow();
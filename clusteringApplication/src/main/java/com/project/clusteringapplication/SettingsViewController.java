@@ -11,6 +11,7 @@ import javafx.scene.Scene;
 import javafx.scene.chart.Chart;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
@@ -23,9 +24,13 @@ import kernel.DataPoint;
 import spi.DistanceAlgorithm;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * The controller used to handle user interactions within the cluster setting view.
@@ -49,11 +54,14 @@ public class SettingsViewController implements Initializable {
 
     private Scene fileViewScene;
 
-    public void setData(ArrayList<DataPoint> data) {
+    /**
+     * @param data the data of the chosen file, which may still be being parsed in the background
+     */
+    public void setData(Future<ArrayList<DataPoint>> data) {
         this.data = data;
     }
 
-    private ArrayList<DataPoint> data;
+    private Future<ArrayList<DataPoint>> data;
 
     public void setFileName(String fileName) {
         this.fileName = fileName;
@@ -125,7 +133,7 @@ public class SettingsViewController implements Initializable {
         ClusterAlgorithm clusterAlgorithm = clusterAlgorithmFactory.getAlgorithm(algorithmDropDown.getSelectionModel().getSelectedItem());
         DistanceAlgorithm distanceAlgorithm = distanceAlgorithmFactory.getAlgorithm(distanceDropDown.getSelectionModel().getSelectedItem());
         ClusterOutput output = clusterOutputFactory.getClusterOutput(outputDropDown.getSelectionModel().getSelectedItem());
-        Chart outputChart = output.generateGraphicalOutput(clusterAlgorithm, data, distanceAlgorithm, fileViewScene, fileName);
+        Chart outputChart = output.generateGraphicalOutput(clusterAlgorithm, awaitData(), distanceAlgorithm, fileViewScene, fileName);
 
         // load the output screen
         Stage landing = (Stage) algorithmDropDown.getScene().getWindow();
@@ -155,6 +163,14 @@ public class SettingsViewController implements Initializable {
         VBox vBox = new VBox();
         vBox.getChildren().add(outputChart);
 
+        // show anything the algorithm reported about the run below the chart
+        String runSummary = clusterAlgorithm.getRunSummary();
+        if (runSummary != null) {
+            Label summaryLabel = new Label(runSummary);
+            summaryLabel.setPadding(new Insets(10, 10, 0, 10));
+            vBox.getChildren().add(summaryLabel);
+        }
+
         // add buttons to box and alight to the center
         HBox buttonBox = new HBox(10);
         buttonBox.getChildren().addAll(restartButton, settingsButton);
@@ -168,4 +184,24 @@ public class SettingsViewController implements Initializable {
         Scene scene = new Scene(vBox);
         landing.setScene(scene);
     }
+
+    /**
+     * Waits for the background parse of the file to finish.
+     *
+     * @return the parsed data
+     * @throws IOException thrown if the file could not be parsed
+     */
+    private ArrayList<DataPoint> awaitData() throws IOException {
+        try {
+            return data.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading the file was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException("Failed to read the file", e.getCause());
+        }
+    }
 }
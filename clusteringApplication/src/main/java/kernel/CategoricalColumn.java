@@ -0,0 +1,150 @@
+package kernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Stores a single categorical feature for every row of a dataset. Each distinct value is only kept once and rows hold
+ * an integer code for their value. The edit distance between two values is worked out the first time it is needed and
+ * remembered, so comparing categorical features during clustering becomes a table lookup.
+ */
+public class CategoricalColumn {
+    // columns with more distinct values than this are not tabled, as the table would grow with the square of the count
+    private static final int MAX_TABLED_CATEGORIES = 2048;
+
+    private HashMap<String, Integer> codes;
+    private ArrayList<String> categories;
+
+    private int[] rowCodes;
+    private int rowCount;
+
+    // rows of the table are only created when first used, entries hold the distance plus one so zero means unknown
+    private int[][] distanceTable;
+
+    public CategoricalColumn() {
+        codes = new HashMap<>();
+        categories = new ArrayList<>();
+        rowCodes = new int[16];
+    }
+
+    /**
+     * Creates a column which has already been encoded, used when a dataset is loaded from its cache.
+     *
+     * @param categories the distinct values of the column in code order
+     * @param rowCodes   the code of the value held by each row
+     */
+    CategoricalColumn(ArrayList<String> categories, int[] rowCodes) {
+        this.categories = categories;
+        this.rowCodes = rowCodes;
+        rowCount = rowCodes.length;
+        codes = new HashMap<>();
+        for (int i = 0; i < categories.size(); i++) {
+            codes.put(categories.get(i), i);
+        }
+    }
+
+    /**
+     * Adds the value of this feature for a new row.
+     *
+     * @param value the categorical value of the new row
+     * @return the index of the row which was added
+     */
+    public int addValue(String value) {
+        if (rowCount == rowCodes.length) {
+            rowCodes = Arrays.copyOf(rowCodes, rowCount + (rowCount >> 1) + 1);
+        }
+        rowCodes[rowCount] = encode(value);
+        return rowCount++;
+    }
+
+    public String getValue(int row) {
+        return categories.get(rowCodes[row]);
+    }
+
+    public void setValue(int row, String value) {
+        rowCodes[row] = encode(value);
+    }
+
+    public int getCode(int row) {
+        return rowCodes[row];
+    }
+
+    public String getCategory(int code) {
+        return categories.get(code);
+    }
+
+    /**
+     * @return the number of distinct values found in this column
+     */
+    public int getCategoryCount() {
+        return categories.size();
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the edit distance between two of the values in this column.
+     *
+     * @param code1 the code of the first value
+     * @param code2 the code of the second value
+     * @return the number of edits needed to turn one value into the other
+     */
+    public int distance(int code1, int code2) {
+        if (code1 == code2) {
+            return 0;
+        }
+        if (categories.size() > MAX_TABLED_CATEGORIES) {
+            return measureEditDistance(categories.get(code1), categories.get(code2));
+        }
+
+        // the distance is symmetric so only the half of the table where the first code is smallest is used
+        int low = Math.min(code1, code2);
+        int high = Math.max(code1, code2);
+
+        int[][] table = distanceTable;
+        if (table == null || table.length != categories.size()) {
+            table = new int[categories.size()][];
+            distanceTable = table;
+        }
+        int[] tableRow = table[low];
+        if (tableRow == null) {
+            tableRow = new int[categories.size()];
+            table[low] = tableRow;
+        }
+        if (tableRow[high] == 0) {
+            tableRow[high] = measureEditDistance(categories.get(low), categories.get(high)) + 1;
+        }
+        return tableRow[high] - 1;
+    }
+
+    /**
+     * Releases the spare capacity left over from adding rows.
+     */
+    public void trimToSize() {
+        rowCodes = Arrays.copyOf(rowCodes, Math.max(1, rowCount));
+    }
+
+    /**
+     * Measures the Levenshtein distance between two strings, used when the values do not belong to the same column.
+     *
+     * @param value1 the first value
+     * @param value2 the second value
+     * @return the number of edits needed to turn one value into the other
+     */
+    public static int measureEditDistance(String value1, String value2) {
+        return EditDistance.measure(value1, value2);
+    }
+
+    private int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = categories.size();
+            codes.put(value, code);
+            categories.add(value);
+        }
+        return code;
+    }
+}
@@ -0,0 +1,174 @@
+package kernel;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens database files which may have been compressed. The compression is recognised from the first bytes of the file
+ * rather than its name, and compressed files are decompressed on a thread of their own which feeds a bounded pipe, so
+ * decompressing and parsing happen at the same time.
+ */
+public class CompressedInput {
+    // the most decompressed data which is held waiting to be parsed
+    private static final int PIPE_BYTES = 1 << 20;
+    private static final int READ_BUFFER_BYTES = 1 << 16;
+
+    public enum Format {
+        NONE, GZIP, ZIP, ZLIB
+    }
+
+    /**
+     * Works out how a file has been compressed from its first bytes.
+     *
+     * @param file the file to check
+     * @return the compression used by the file, or NONE for a plain file
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static Format detect(File file) throws IOException {
+        byte[] header = new byte[4];
+        int length;
+        try (InputStream in = new FileInputStream(file)) {
+            length = in.readNBytes(header, 0, header.length);
+        }
+        int first = length > 0 ? header[0] & 0xFF : -1;
+        int second = length > 1 ? header[1] & 0xFF : -1;
+
+        if (first == 0x1F && second == 0x8B) {
+            return Format.GZIP;
+        }
+        if (length == 4 && first == 'P' && second == 'K' && header[2] == 3 && header[3] == 4) {
+            return Format.ZIP;
+        }
+        // only the zlib headers whose second byte cannot appear in a text file are accepted
+        if (first == 0x78 && (second == 0x01 || second == 0x9C || second == 0xDA)) {
+            return Format.ZLIB;
+        }
+        return Format.NONE;
+    }
+
+    /**
+     * @param file the file to check
+     * @return true if the file is compressed in a format which can be read
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static boolean isCompressed(File file) throws IOException {
+        return detect(file) != Format.NONE;
+    }
+
+    /**
+     * Opens a file for reading, decompressing it if needed. For a zip file the first file it holds is read.
+     *
+     * @param file the file to open
+     * @return the stream of the file contents
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static InputStream open(File file) throws IOException {
+        Format format = detect(file);
+        if (format == Format.NONE) {
+            return new FileInputStream(file);
+        }
+        return new DecompressingPipe(file, format);
+    }
+
+    private static InputStream openDecompressor(File file, Format format) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), READ_BUFFER_BYTES);
+        try {
+            switch (format) {
+                case GZIP:
+                    return new GZIPInputStream(in, READ_BUFFER_BYTES);
+                case ZLIB:
+                    return new InflaterInputStream(in);
+                default:
+                    ZipInputStream zip = new ZipInputStream(in);
+                    ZipEntry entry = zip.getNextEntry();
+                    while (entry != null && entry.isDirectory()) {
+                        entry = zip.getNextEntry();
+                    }
+                    if (entry == null) {
+                        throw new IOException(file.getName() + " does not contain any files");
+                    }
+                    return zip;
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The read end of the pipe. Errors found while decompressing are passed on to the reader once the data before the
+     * error has been read.
+     */
+    private static class DecompressingPipe extends PipedInputStream {
+        private volatile IOException failure;
+        private Thread thread;
+
+        DecompressingPipe(File file, Format format) throws IOException {
+            super(PIPE_BYTES);
+            InputStream decompressor = openDecompressor(file, format);
+            PipedOutputStream out = new PipedOutputStream(this);
+
+            thread = new Thread(() -> {
+                byte[] buffer = new byte[READ_BUFFER_BYTES];
+                try (InputStream in = decompressor) {
+                    int read;
+                    while ((read = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, read);
+                    }
+                } catch (IOException e) {
+                    // also reached when the reader closes the pipe early, in which case the failure is never read
+                    failure = e;
+                } finally {
+                    // the failure is recorded before the pipe is closed so the reader always sees it
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }, "decompressor");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                checkFailure();
+            }
+            return b;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read < 0) {
+                checkFailure();
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            // a decompressor waiting for space in the pipe would otherwise only see it has been closed a second later
+            thread.interrupt();
+        }
+
+        private void checkFailure() throws IOException {
+            if (failure != null) {
+                throw new IOException("Failed to decompress the database", failure);
+            }
+        }
+    }
+}
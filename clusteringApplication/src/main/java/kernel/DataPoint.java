@@ -1,57 +1,76 @@
 package kernel;
 
-import java.util.ArrayList;
-
 /**
- * Object which is used to represent a single sample from the database.
+ * Object which is used to represent a single sample from the database. The features themselves are held by a dataset,
+ * a data point is a view of one of its rows. Data points which are created by hand are given a dataset of their own.
  */
 public class DataPoint {
-    private ArrayList<Double> numericalFeatures;
-    private ArrayList<String> categoricalFeatures;
-    private String originalString;
+    private static final double[] NO_NUMERICAL_FEATURES = new double[0];
+    private static final String[] NO_CATEGORICAL_FEATURES = new String[0];
+
+    private Dataset dataset;
+    private int row;
 
-    // a copy of the numerical features is kept for displaying clustering results
-    private ArrayList<Double> originalNumericalFeatures;
+    // references to the dataset storage are kept so that feature reads only need a single lookup
+    private FeatureMatrix numericalFeatures;
+    private FeatureMatrix originalNumericalFeatures;
 
     public DataPoint() {
-        numericalFeatures = new ArrayList<Double>();
-        categoricalFeatures = new ArrayList<String>();
-        originalNumericalFeatures = new ArrayList<>();
+        this((String) null);
     }
 
     public DataPoint(String DatabaseLine) {
-        numericalFeatures = new ArrayList<Double>();
-        categoricalFeatures = new ArrayList<String>();
-        originalString = DatabaseLine;
-        originalNumericalFeatures = new ArrayList<>();
+        this(new Dataset(0, 0), 0);
+        dataset.addRow(DatabaseLine, NO_NUMERICAL_FEATURES, NO_CATEGORICAL_FEATURES);
     }
 
     public DataPoint(String DatabaseLine, String[] categoricalData, Double[] numericalData) {
-        numericalFeatures = new ArrayList<Double>();
-        categoricalFeatures = new ArrayList<String>();
-        originalString = DatabaseLine;
-        originalNumericalFeatures = new ArrayList<>();
+        this(DatabaseLine, categoricalData, unbox(numericalData));
+    }
 
-        for (int i = 0; i < categoricalData.length; i++) {
-            categoricalFeatures.add(categoricalData[i]);
-        }
+    public DataPoint(String DatabaseLine, String[] categoricalData, double[] numericalData) {
+        this(new Dataset(numericalData.length, categoricalData.length), 0);
+        dataset.addRow(DatabaseLine, numericalData, categoricalData);
+    }
 
-        for (int i = 0; i < numericalData.length; i++) {
-            numericalFeatures.add(numericalData[i]);
-            originalNumericalFeatures.add(numericalData[i]);
-        }
+    /**
+     * Creates a view of a single row of a dataset.
+     *
+     * @param dataset the dataset which holds the features
+     * @param row     the row of the dataset this data point represents
+     */
+    DataPoint(Dataset dataset, int row) {
+        this.dataset = dataset;
+        this.row = row;
+        numericalFeatures = dataset.getNumericalFeatures();
+        originalNumericalFeatures = dataset.getOriginalNumericalFeatures();
     }
 
     public Double getNumerical(int i) {
-        return numericalFeatures.get(i);
+        return numericalFeatures.get(row, i);
+    }
+
+    /**
+     * Reads a numerical feature without boxing it, this should be preferred inside loops.
+     *
+     * @param i the index of the feature
+     * @return the value of the feature
+     */
+    public double getNumericalValue(int i) {
+        return numericalFeatures.get(row, i);
     }
 
     public void setNumerical(int position, double newValue) {
-        numericalFeatures.set(position, newValue);
+        numericalFeatures.set(row, position, newValue);
+        dataset.markModified();
     }
 
     public Double getOriginalNumerical(int i) {
-        return originalNumericalFeatures.get(i);
+        return originalNumericalFeatures.get(row, i);
+    }
+
+    public double getOriginalNumericalValue(int i) {
+        return originalNumericalFeatures.get(row, i);
     }
 
     /**
@@ -59,35 +78,72 @@ public class DataPoint {
      * @param feature the value which is to be added
      */
     public void addNumerical(Double feature) {
-        numericalFeatures.add(feature);
-        originalNumericalFeatures.add(feature);
+        dataset.addNumericalFeature(feature);
     }
 
     public int sizeNumerical() {
-        return numericalFeatures.size();
+        return numericalFeatures.getColumnCount();
     }
 
     public String getCategorical(int i) {
-        return categoricalFeatures.get(i);
+        return dataset.getCategorical(row, i);
+    }
+
+    /**
+     * @param i the index of the feature
+     * @return the dictionary code of the categorical value, only comparable with codes from the same column
+     */
+    public int getCategoricalCode(int i) {
+        return dataset.getCategoricalColumn(i).getCode(row);
+    }
+
+    /**
+     * @param i the index of the feature
+     * @return the column which holds the categorical feature of this data point
+     */
+    public CategoricalColumn getCategoricalColumn(int i) {
+        return dataset.getCategoricalColumn(i);
     }
 
     public void setCategorical(int position, String newValue) {
-        categoricalFeatures.set(position, newValue);
+        dataset.setCategorical(row, position, newValue);
     }
 
     public void addCategorical(String feature) {
-        categoricalFeatures.add(feature);
+        dataset.addCategoricalFeature(feature);
     }
 
     public int sizeCategorical() {
-        return categoricalFeatures.size();
+        return dataset.getCategoricalCount();
     }
 
     public int sizeTotal() {
-        return (categoricalFeatures.size() + numericalFeatures.size());
+        return (sizeCategorical() + sizeNumerical());
+    }
+
+    /**
+     * @return the dataset which holds the features of this data point
+     */
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * @return the row of the dataset which this data point represents
+     */
+    public int getRow() {
+        return row;
     }
 
     public String toString() {
-        return originalString;
+        return dataset.getOriginalString(row);
+    }
+
+    private static double[] unbox(Double[] values) {
+        double[] unboxed = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            unboxed[i] = values[i];
+        }
+        return unboxed;
     }
 }
@@ -0,0 +1,308 @@
+package kernel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Holds every sample read from a database in shared primitive storage. The numerical features live in a feature
+ * matrix, and each data point handed to the algorithms is a lightweight view of one row of this dataset.
+ */
+public class Dataset implements Closeable {
+    private FeatureMatrix numericalFeatures;
+
+    // a copy of the numerical features is kept for displaying clustering results
+    private FeatureMatrix originalNumericalFeatures;
+
+    // categorical features are dictionary encoded, one column per feature
+    private CategoricalColumn[] categoricalColumns;
+
+    private String[] originalStrings;
+    private int rowCount;
+
+    // used instead of the original strings when the lines are read on demand, for example from a dataset cache
+    private IntFunction<String> lineReader;
+
+    // set when only the position of each line in the database file is kept
+    private SourceLines sourceLines;
+
+    private ArrayList<DataPoint> dataPoints;
+
+    // changed whenever a feature is rewritten, so anything worked out from the features can tell it is out of date
+    private int version;
+
+    // the version the working features were last scaled at, scaling them again would not change them
+    private int scaledVersion = -1;
+
+    /**
+     * Creates an empty dataset where every row will have the given number of features.
+     *
+     * @param numericalCount   the number of numerical features in each sample
+     * @param categoricalCount the number of categorical features in each sample
+     */
+    public Dataset(int numericalCount, int categoricalCount) {
+        this(new HeapFeatureMatrix(numericalCount), new HeapFeatureMatrix(numericalCount), categoricalCount);
+    }
+
+    /**
+     * Creates an empty dataset which stores its numerical features in the given matrices, this allows the storage to
+     * be placed outside of the heap for very large files.
+     *
+     * @param numericalFeatures         the empty matrix which will hold the working copy of the numerical features
+     * @param originalNumericalFeatures the empty matrix which will hold the unmodified numerical features
+     * @param categoricalCount          the number of categorical features in each sample
+     */
+    public Dataset(FeatureMatrix numericalFeatures, FeatureMatrix originalNumericalFeatures, int categoricalCount) {
+        this.numericalFeatures = numericalFeatures;
+        this.originalNumericalFeatures = originalNumericalFeatures;
+        categoricalColumns = new CategoricalColumn[categoricalCount];
+        for (int i = 0; i < categoricalCount; i++) {
+            categoricalColumns[i] = new CategoricalColumn();
+        }
+        originalStrings = new String[16];
+    }
+
+    /**
+     * Creates an empty lean dataset, which only keeps the position of each line in the database file rather than its
+     * text. Lines are read back from the file when they are needed, and rows must be added with their line position.
+     *
+     * @param numericalFeatures         the empty matrix which will hold the working copy of the numerical features
+     * @param originalNumericalFeatures the empty matrix which will hold the unmodified numerical features
+     * @param categoricalCount          the number of categorical features in each sample
+     * @param source                    the database file the rows are read from
+     */
+    public Dataset(FeatureMatrix numericalFeatures, FeatureMatrix originalNumericalFeatures, int categoricalCount, File source) {
+        this(numericalFeatures, originalNumericalFeatures, categoricalCount);
+        originalStrings = null;
+        sourceLines = new SourceLines(source);
+        lineReader = sourceLines;
+    }
+
+    /**
+     * Creates a dataset from storage which already holds every row, used when a dataset is loaded from its cache.
+     *
+     * @param numericalFeatures         the matrix holding the working copy of the numerical features
+     * @param originalNumericalFeatures the matrix holding the unmodified numerical features
+     * @param categoricalColumns        the encoded categorical features
+     * @param lineReader                returns the line of the database each row was read from
+     * @param rowCount                  the number of rows held
+     */
+    Dataset(FeatureMatrix numericalFeatures, FeatureMatrix originalNumericalFeatures, CategoricalColumn[] categoricalColumns,
+            IntFunction<String> lineReader, int rowCount) {
+        this.numericalFeatures = numericalFeatures;
+        this.originalNumericalFeatures = originalNumericalFeatures;
+        this.categoricalColumns = categoricalColumns;
+        this.lineReader = lineReader;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Adds a sample to the end of the dataset.
+     *
+     * @param line        the line of the database the sample was read from
+     * @param numerical   the numerical features of the sample
+     * @param categorical the categorical features of the sample
+     * @return the row index of the new sample
+     */
+    public int addRow(String line, double[] numerical, String[] categorical) {
+        if (lineReader != null) {
+            throw new IllegalStateException("Rows of this dataset cannot be added with the text of their line");
+        }
+        addFeatures(numerical, categorical);
+
+        if (rowCount == originalStrings.length) {
+            originalStrings = Arrays.copyOf(originalStrings, rowCount + (rowCount >> 1) + 1);
+        }
+        originalStrings[rowCount] = line;
+
+        return rowCount++;
+    }
+
+    /**
+     * Adds a sample to the end of a lean dataset.
+     *
+     * @param lineStart   the position of the first byte of the line in the database file
+     * @param lineLength  the number of bytes in the line, not including the line ending
+     * @param numerical   the numerical features of the sample
+     * @param categorical the categorical features of the sample
+     * @return the row index of the new sample
+     */
+    public int addRow(long lineStart, int lineLength, double[] numerical, String[] categorical) {
+        if (sourceLines == null) {
+            throw new IllegalStateException("Rows can only be added by line position to a lean dataset");
+        }
+        addFeatures(numerical, categorical);
+        sourceLines.add(lineStart, lineLength);
+        return rowCount++;
+    }
+
+    private void addFeatures(double[] numerical, String[] categorical) {
+        numericalFeatures.addRow(numerical);
+        originalNumericalFeatures.addRow(numerical);
+        for (int i = 0; i < categoricalColumns.length; i++) {
+            categoricalColumns[i].addValue(categorical[i]);
+        }
+    }
+
+    /**
+     * @return true if the dataset only keeps the position of each line rather than its text
+     */
+    public boolean isLean() {
+        return sourceLines != null;
+    }
+
+    /**
+     * Returns the view of every row in the dataset. The views are only created once so the same data point object is
+     * always returned for a given row.
+     *
+     * @return the data points of the dataset in the order they were added
+     */
+    public ArrayList<DataPoint> getDataPoints() {
+        if (dataPoints == null) {
+            dataPoints = new ArrayList<>(rowCount);
+        }
+        // create views for any rows added since the list was last requested
+        for (int i = dataPoints.size(); i < rowCount; i++) {
+            dataPoints.add(new DataPoint(this, i));
+        }
+        return dataPoints;
+    }
+
+    /**
+     * Releases the spare capacity left over from reading the dataset.
+     */
+    public void trimToSize() {
+        if (numericalFeatures instanceof HeapFeatureMatrix) {
+            ((HeapFeatureMatrix) numericalFeatures).trimToSize();
+        }
+        if (originalNumericalFeatures instanceof HeapFeatureMatrix) {
+            ((HeapFeatureMatrix) originalNumericalFeatures).trimToSize();
+        }
+        if (originalStrings != null) {
+            originalStrings = Arrays.copyOf(originalStrings, Math.max(1, rowCount));
+        }
+        if (sourceLines != null) {
+            sourceLines.trimToSize();
+        }
+        for (CategoricalColumn column : categoricalColumns) {
+            column.trimToSize();
+        }
+    }
+
+    public FeatureMatrix getNumericalFeatures() {
+        return numericalFeatures;
+    }
+
+    public FeatureMatrix getOriginalNumericalFeatures() {
+        return originalNumericalFeatures;
+    }
+
+    public String getCategorical(int row, int column) {
+        return categoricalColumns[column].getValue(row);
+    }
+
+    public void setCategorical(int row, int column, String value) {
+        categoricalColumns[column].setValue(row, value);
+        version++;
+    }
+
+    public CategoricalColumn getCategoricalColumn(int column) {
+        return categoricalColumns[column];
+    }
+
+    public String getOriginalString(int row) {
+        if (lineReader != null) {
+            return lineReader.apply(row);
+        }
+        return originalStrings[row];
+    }
+
+    public int getNumericalCount() {
+        return numericalFeatures.getColumnCount();
+    }
+
+    public int getCategoricalCount() {
+        return categoricalColumns.length;
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * @return a number which changes whenever a feature of the dataset is changed
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Records that a working feature has been changed.
+     */
+    void markModified() {
+        version++;
+    }
+
+    /**
+     * Records that every working feature has just been scaled.
+     */
+    void markScaled() {
+        scaledVersion = version;
+    }
+
+    /**
+     * @return true if the working features have not changed since they were last scaled
+     */
+    boolean isScaled() {
+        return scaledVersion == version;
+    }
+
+    /**
+     * Adds a numerical feature to a dataset holding a single sample, used when a data point is built by hand.
+     *
+     * @param value the value of the new feature
+     */
+    void addNumericalFeature(double value) {
+        ((HeapFeatureMatrix) numericalFeatures).addColumn(value);
+        ((HeapFeatureMatrix) originalNumericalFeatures).addColumn(value);
+    }
+
+    /**
+     * Adds a categorical feature to a dataset holding a single sample, used when a data point is built by hand.
+     *
+     * @param value the value of the new feature
+     */
+    void addCategoricalFeature(String value) {
+        if (rowCount > 1) {
+            throw new IllegalStateException("Features can only be added one at a time to a single sample");
+        }
+        CategoricalColumn column = new CategoricalColumn();
+        column.addValue(value);
+        categoricalColumns = Arrays.copyOf(categoricalColumns, categoricalColumns.length + 1);
+        categoricalColumns[categoricalColumns.length - 1] = column;
+    }
+
+    /**
+     * Releases the storage held outside the heap, which is the files behind mapped feature matrices and the database
+     * file a lean dataset reads its lines from. The dataset and its data points must not be used once it is closed.
+     *
+     * @throws IOException thrown if the storage cannot be released
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            numericalFeatures.close();
+        } finally {
+            try {
+                originalNumericalFeatures.close();
+            } finally {
+                if (sourceLines != null) {
+                    sourceLines.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package kernel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Binary copy of a parsed database which is kept next to the database file. The cache holds the numerical features in
+ * the same row layout as a feature matrix, so loading it only needs the file to be mapped rather than every line to be
+ * parsed again. The cache is tied to the size, modification time and a sampled hash of the database, and to the parser
+ * which wrote it, so a cache which no longer matches is ignored and written again.
+ *
+ * The file starts with a fixed size header, followed by the numerical features, the categorical columns (their
+ * distinct values and then a code for every row), the text of every line and finally the position of each line.
+ */
+public class DatasetCache {
+    public static final String EXTENSION = ".cache";
+
+    // smaller databases are parsed quickly enough that a cache would only clutter the folder
+    private static final long MIN_SOURCE_BYTES = 4L << 20;
+
+    private static final int MAGIC = 0x434C4443;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 72;
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // the amount of the database hashed at its start, middle and end
+    private static final int HASH_SAMPLE_BYTES = 1 << 16;
+
+    // the lines are mapped in segments which always hold whole lines
+    private static final long LINE_SEGMENT_BYTES = 1L << 30;
+
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private File source;
+    private File cacheFile;
+    private int parserId;
+
+    /**
+     * @param source     the database file which is cached
+     * @param parserName the name of the parser which reads the database, caches written by other parsers are ignored
+     */
+    public DatasetCache(File source, String parserName) {
+        this.source = source;
+        this.cacheFile = new File(source.getPath() + EXTENSION);
+        this.parserId = parserName.hashCode();
+    }
+
+    /**
+     * @param source the database file
+     * @return true if the database is large enough for a cache to be worth keeping
+     */
+    public static boolean isWorthCaching(File source) {
+        return source.length() >= MIN_SOURCE_BYTES;
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Loads the dataset from the cache. Off the heap the working copy of the numerical features is mapped privately, so
+     * normalising the features never changes the cache. On the heap the features are copied into arrays, which the
+     * distance algorithms can read directly.
+     *
+     * @param offHeap true to map the features from the cache, false to copy them onto the heap as the parser would
+     *                have stored them for a database of this size
+     * @return the cached dataset, or null if there is no cache or it no longer matches the database
+     */
+    public Dataset load(boolean offHeap) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        // a private mapping needs a writable channel even though nothing is ever written back to the file
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long cacheSize = channel.size();
+            if (cacheSize < HEADER_BYTES) {
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+            channel.read(header, 0);
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != parserId) {
+                return null;
+            }
+            int rowCount = header.getInt();
+            long sourceSize = header.getLong();
+            long sourceModified = header.getLong();
+            long sourceHash = header.getLong();
+            int numericalCount = header.getInt();
+            int categoricalCount = header.getInt();
+            long categoricalPosition = header.getLong();
+            long linesPosition = header.getLong();
+            long lineIndexPosition = header.getLong();
+
+            if (sourceSize != source.length() || sourceModified != source.lastModified() || sourceHash != hashSource(source)) {
+                return null;
+            }
+            if (lineIndexPosition + (rowCount + 1L) * Long.BYTES != cacheSize) {
+                System.err.println("Ignoring damaged dataset cache " + cacheFile.getName());
+                return null;
+            }
+
+            FeatureMatrix original;
+            FeatureMatrix working;
+            if (offHeap) {
+                original = MappedFeatureMatrix.mapExisting(channel, HEADER_BYTES, rowCount, numericalCount, FileChannel.MapMode.READ_ONLY, ORDER);
+                working = MappedFeatureMatrix.mapExisting(channel, HEADER_BYTES, rowCount, numericalCount, FileChannel.MapMode.PRIVATE, ORDER);
+            } else {
+                original = readHeapFeatures(channel, rowCount, numericalCount);
+                working = original.copy();
+            }
+            CategoricalColumn[] columns = readCategoricalColumns(channel, categoricalPosition, linesPosition, rowCount, categoricalCount);
+            CachedLines lines = new CachedLines(channel, linesPosition, lineIndexPosition, rowCount);
+
+            return new Dataset(working, original, columns, lines, rowCount);
+        } catch (IOException e) {
+            System.err.println("Unable to read dataset cache " + cacheFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the dataset to the cache, replacing any older cache. The cache is written to a temporary file first so a
+     * half written cache is never left in place of a working one.
+     *
+     * @param dataset the dataset which was read from the database
+     * @return true if the cache was written
+     */
+    public boolean save(Dataset dataset) {
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeDataset(channel, dataset);
+            }
+            try {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Unable to write dataset cache " + cacheFile.getName() + ": " + e.getMessage());
+            tempFile.delete();
+            return false;
+        }
+    }
+
+    private void writeDataset(FileChannel channel, Dataset dataset) throws IOException {
+        int rowCount = dataset.size();
+        int numericalCount = dataset.getNumericalCount();
+        int categoricalCount = dataset.getCategoricalCount();
+        CacheWriter writer = new CacheWriter(channel, HEADER_BYTES);
+
+        // the original values are cached as the working copy may already have been normalised
+        FeatureMatrix original = dataset.getOriginalNumericalFeatures();
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < numericalCount; column++) {
+                writer.putDouble(original.get(row, column));
+            }
+        }
+
+        long categoricalPosition = writer.position();
+        for (int i = 0; i < categoricalCount; i++) {
+            CategoricalColumn column = dataset.getCategoricalColumn(i);
+            writer.putInt(column.getCategoryCount());
+            for (int code = 0; code < column.getCategoryCount(); code++) {
+                byte[] category = column.getCategory(code).getBytes(StandardCharsets.UTF_8);
+                writer.putInt(category.length);
+                writer.putBytes(category);
+            }
+            for (int row = 0; row < rowCount; row++) {
+                writer.putInt(column.getCode(row));
+            }
+        }
+
+        long linesPosition = writer.position();
+        long[] lineStarts = new long[rowCount + 1];
+        for (int row = 0; row < rowCount; row++) {
+            lineStarts[row] = writer.position();
+            String line = dataset.getOriginalString(row);
+            writer.putBytes(line == null ? new byte[0] : line.getBytes(StandardCharsets.UTF_8));
+        }
+        lineStarts[rowCount] = writer.position();
+
+        long lineIndexPosition = writer.position();
+        for (long lineStart : lineStarts) {
+            writer.putLong(lineStart);
+        }
+        writer.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+        header.putInt(MAGIC).putInt(VERSION).putInt(parserId).putInt(rowCount);
+        header.putLong(source.length()).putLong(source.lastModified()).putLong(hashSource(source));
+        header.putInt(numericalCount).putInt(categoricalCount);
+        header.putLong(categoricalPosition).putLong(linesPosition).putLong(lineIndexPosition);
+        header.flip();
+        channel.write(header, 0);
+    }
+
+    /**
+     * Copies the numerical features out of the cache into a matrix on the heap.
+     */
+    private static HeapFeatureMatrix readHeapFeatures(FileChannel channel, int rowCount, int numericalCount) throws IOException {
+        HeapFeatureMatrix features = new HeapFeatureMatrix(numericalCount, rowCount);
+        MappedFeatureMatrix mapped = MappedFeatureMatrix.mapExisting(channel, HEADER_BYTES, rowCount, numericalCount, FileChannel.MapMode.READ_ONLY, ORDER);
+        double[] row = new double[numericalCount];
+        for (int i = 0; i < rowCount; i++) {
+            mapped.readRow(i, row);
+            features.addRow(row);
+        }
+        return features;
+    }
+
+    private static CategoricalColumn[] readCategoricalColumns(FileChannel channel, long position, long end, int rowCount, int categoricalCount) throws IOException {
+        CategoricalColumn[] columns = new CategoricalColumn[categoricalCount];
+        for (int i = 0; i < categoricalCount; i++) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(end - position, Integer.MAX_VALUE));
+            buffer.order(ORDER);
+
+            int categoryCount = buffer.getInt();
+            ArrayList<String> categories = new ArrayList<>(categoryCount);
+            for (int code = 0; code < categoryCount; code++) {
+                byte[] category = new byte[buffer.getInt()];
+                buffer.get(category);
+                categories.add(new String(category, StandardCharsets.UTF_8));
+            }
+            int[] rowCodes = new int[rowCount];
+            buffer.asIntBuffer().get(rowCodes);
+
+            columns[i] = new CategoricalColumn(categories, rowCodes);
+            position += buffer.position() + rowCount * (long) Integer.BYTES;
+        }
+        return columns;
+    }
+
+    /**
+     * Hashes samples from the start, middle and end of the database. Hashing the whole file would take as long as
+     * parsing it, while the samples together with the size and modification time catch files which have been replaced.
+     *
+     * @param source the database file
+     * @return the hash of the sampled bytes
+     * @throws IOException thrown if the database cannot be read
+     */
+    static long hashSource(File source) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] sampleStarts = {0, Math.max(0, size / 2 - HASH_SAMPLE_BYTES / 2), Math.max(0, size - HASH_SAMPLE_BYTES)};
+            ByteBuffer sample = ByteBuffer.allocate(HASH_SAMPLE_BYTES);
+            for (long sampleStart : sampleStarts) {
+                sample.clear();
+                while (sample.hasRemaining() && channel.read(sample, sampleStart + sample.position()) > 0) {
+                    // keep reading until the sample is full or the end of the file is reached
+                }
+                sample.flip();
+                crc.update(sample);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Reads the line each row came from out of the mapped cache, lines are only decoded when they are asked for.
+     */
+    private static class CachedLines implements IntFunction<String> {
+        private LongBuffer lineStarts;
+        private MappedByteBuffer[] segments;
+        private long[] segmentStarts;
+        private int[] segmentFirstRows;
+
+        CachedLines(FileChannel channel, long linesPosition, long lineIndexPosition, int rowCount) throws IOException {
+            lineStarts = channel.map(FileChannel.MapMode.READ_ONLY, lineIndexPosition, (rowCount + 1L) * Long.BYTES)
+                    .order(ORDER).asLongBuffer();
+
+            // segments are found by searching the line positions, so the lines never need to be scanned
+            ArrayList<MappedByteBuffer> segmentList = new ArrayList<>();
+            ArrayList<Long> startList = new ArrayList<>();
+            ArrayList<Integer> firstRowList = new ArrayList<>();
+            int firstRow = 0;
+            while (firstRow < rowCount) {
+                long start = lineStarts.get(firstRow);
+                int endRow = lastRowBefore(firstRow, rowCount, start + LINE_SEGMENT_BYTES);
+                long end = lineStarts.get(endRow);
+                segmentList.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                startList.add(start);
+                firstRowList.add(firstRow);
+                firstRow = endRow;
+            }
+
+            segments = segmentList.toArray(new MappedByteBuffer[0]);
+            segmentStarts = new long[segments.length];
+            segmentFirstRows = new int[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                segmentStarts[i] = startList.get(i);
+                segmentFirstRows[i] = firstRowList.get(i);
+            }
+        }
+
+        @Override
+        public String apply(int row) {
+            int segment = Arrays.binarySearch(segmentFirstRows, row);
+            if (segment < 0) {
+                segment = -segment - 2;
+            }
+            long start = lineStarts.get(row);
+            byte[] line = new byte[(int) (lineStarts.get(row + 1) - start)];
+            segments[segment].get((int) (start - segmentStarts[segment]), line, 0, line.length);
+            return new String(line, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return the furthest row boundary after the first row which ends no later than the limit, always at least
+         * one row on so that a single very long line still gets a segment of its own
+         */
+        private int lastRowBefore(int firstRow, int rowCount, long limit) {
+            int low = firstRow + 1;
+            int high = rowCount;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (lineStarts.get(middle) <= limit) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Buffers the values written to the cache so the file is written in large blocks.
+     */
+    private static class CacheWriter {
+        private FileChannel channel;
+        private ByteBuffer buffer;
+        private long position;
+
+        CacheWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+            buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ORDER);
+        }
+
+        long position() {
+            return position + buffer.position();
+        }
+
+        void putInt(int value) throws IOException {
+            ensureSpace(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureSpace(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensureSpace(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensureSpace(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        private void ensureSpace(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
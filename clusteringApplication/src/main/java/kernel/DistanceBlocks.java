@@ -0,0 +1,242 @@
+package kernel;
+
+import spi.DistanceAlgorithm;
+
+import java.util.List;
+
+/**
+ * Measures squared euclidean distances between many data points at once, using |x - y|^2 = |x|^2 + |y|^2 - 2 x.y.
+ * Points whose features share a heap array are read from it where they are, while small groups of points from
+ * anywhere else, such as centroids, are packed into an array of their own. The squared length of every row is worked
+ * out once, so each pair only needs a dot product. Pairs are measured a tile at a time, so the rows of a tile stay in the
+ * processor cache while they are used against every row of the other tile, and two rows from each side are handled
+ * together so every value loaded is used twice.
+ */
+public class DistanceBlocks {
+    // the number of rows from each side measured together, small enough for both tiles to stay in the cache
+    private static final int TILE_ROWS = 64;
+
+    // pairs closer than this fraction of their squared lengths lose too much precision to cancellation, so they are
+    // measured directly instead
+    private static final double CANCELLATION_RATIO = 1e-4;
+
+    // the most values copied into an array of their own, larger groups have to be held in a single heap array already
+    private static final long MAX_PACKED_VALUES = 1 << 22;
+
+    private double[] values;
+    // the position of the first feature of each row in the values
+    private int[] rowOffsets;
+    private double[] norms;
+    private int rowCount;
+    private int featureCount;
+
+    /**
+     * Prepares the numerical features of a group of data points, which must either share a heap array or be few enough
+     * to be copied, as checked by {@link #canMeasure(DistanceAlgorithm, List)}.
+     *
+     * @param points the data points, which must all have the same number of numerical features
+     */
+    public DistanceBlocks(List<DataPoint> points) {
+        rowCount = points.size();
+        featureCount = rowCount == 0 ? 0 : points.get(0).sizeNumerical();
+        rowOffsets = new int[rowCount];
+        norms = new double[rowCount];
+
+        values = getSharedArray(points);
+        if (values != null) {
+            for (int i = 0; i < rowCount; i++) {
+                DataPoint dp = points.get(i);
+                rowOffsets[i] = dp.getDataset().getNumericalFeatures().getRowOffset(dp.getRow());
+            }
+        } else {
+            long packedLength = (long) rowCount * featureCount;
+            if (packedLength > MAX_PACKED_VALUES) {
+                throw new IllegalArgumentException("The features of " + rowCount + " points are too large to be copied");
+            }
+            values = new double[(int) packedLength];
+            for (int i = 0; i < rowCount; i++) {
+                DataPoint dp = points.get(i);
+                rowOffsets[i] = i * featureCount;
+                for (int k = 0; k < featureCount; k++) {
+                    values[rowOffsets[i] + k] = dp.getNumericalValue(k);
+                }
+            }
+        }
+
+        for (int i = 0; i < rowCount; i++) {
+            norms[i] = dot(values, rowOffsets[i], values, rowOffsets[i], featureCount);
+        }
+    }
+
+    /**
+     * Checks whether the distances between a group of data points can be measured by the block engine, which is only
+     * the case for a plain euclidean distance over data points without any categorical features. The points also have
+     * to share a heap array or be few enough to copy, so features kept off the heap are never copied onto it.
+     *
+     * @param distanceAlgorithm the algorithm the distances should be measured with
+     * @param points            the data points to be measured
+     * @return true if the block engine gives the comparison distances of the algorithm
+     */
+    public static boolean canMeasure(DistanceAlgorithm distanceAlgorithm, List<DataPoint> points) {
+        if (!distanceAlgorithm.isPlainEuclidean()) {
+            return false;
+        }
+        for (DataPoint dp : points) {
+            if (dp.sizeCategorical() != 0) {
+                return false;
+            }
+        }
+        if (points.isEmpty() || (long) points.size() * points.get(0).sizeNumerical() <= MAX_PACKED_VALUES) {
+            return true;
+        }
+        return getSharedArray(points) != null;
+    }
+
+    /**
+     * @param points the data points to check
+     * @return the heap array holding the features of every point, or null if they are not all held in the same array
+     */
+    private static double[] getSharedArray(List<DataPoint> points) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        double[] shared = points.get(0).getDataset().getNumericalFeatures().getArray();
+        if (shared == null) {
+            return null;
+        }
+        for (DataPoint dp : points) {
+            if (dp.getDataset().getNumericalFeatures().getArray() != shared) {
+                return null;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Measures the squared distance from each of a range of rows to each of a range of rows of another group.
+     *
+     * @param rowStart    the first row of this group to measure from
+     * @param rowEnd      the row after the last row to measure from
+     * @param columns     the group of rows to measure to
+     * @param columnStart the first row of the other group to measure to
+     * @param columnEnd   the row after the last row to measure to
+     * @param out         filled row by row with the squared distances
+     * @param outOffset   the position in the output of the distance between the first pair
+     * @param outStride   the distance in the output between consecutive rows of this group
+     */
+    public void squaredDistances(int rowStart, int rowEnd, DistanceBlocks columns, int columnStart, int columnEnd,
+                                 double[] out, int outOffset, int outStride) {
+        for (int tileRow = rowStart; tileRow < rowEnd; tileRow += TILE_ROWS) {
+            int tileRowEnd = Math.min(tileRow + TILE_ROWS, rowEnd);
+            for (int tileColumn = columnStart; tileColumn < columnEnd; tileColumn += TILE_ROWS) {
+                int tileColumnEnd = Math.min(tileColumn + TILE_ROWS, columnEnd);
+                measureTile(tileRow, tileRowEnd, columns, tileColumn, tileColumnEnd,
+                        out, outOffset + (tileRow - rowStart) * outStride - columnStart, outStride);
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows in the group
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    private void measureTile(int rowStart, int rowEnd, DistanceBlocks columns, int columnStart, int columnEnd,
+                             double[] out, int outOrigin, int outStride) {
+        double[] a = values;
+        double[] b = columns.values;
+        int d = featureCount;
+
+        int i = rowStart;
+        for (; i + 1 < rowEnd; i += 2) {
+            int a0 = rowOffsets[i];
+            int a1 = rowOffsets[i + 1];
+            int j = columnStart;
+            for (; j + 1 < columnEnd; j += 2) {
+                int b0 = columns.rowOffsets[j];
+                int b1 = columns.rowOffsets[j + 1];
+                // two rows of each side at once, so each value read is used for two dot products, with the features
+                // split into even and odd positions so there are eight independent sums for the processor to work on
+                double dot00 = 0;
+                double dot01 = 0;
+                double dot10 = 0;
+                double dot11 = 0;
+                double odd00 = 0;
+                double odd01 = 0;
+                double odd10 = 0;
+                double odd11 = 0;
+                int k = 0;
+                for (; k + 1 < d; k += 2) {
+                    double x0 = a[a0 + k];
+                    double x1 = a[a1 + k];
+                    double y0 = b[b0 + k];
+                    double y1 = b[b1 + k];
+                    dot00 += x0 * y0;
+                    dot01 += x0 * y1;
+                    dot10 += x1 * y0;
+                    dot11 += x1 * y1;
+                    double u0 = a[a0 + k + 1];
+                    double u1 = a[a1 + k + 1];
+                    double v0 = b[b0 + k + 1];
+                    double v1 = b[b1 + k + 1];
+                    odd00 += u0 * v0;
+                    odd01 += u0 * v1;
+                    odd10 += u1 * v0;
+                    odd11 += u1 * v1;
+                }
+                if (k < d) {
+                    double x0 = a[a0 + k];
+                    double x1 = a[a1 + k];
+                    double y0 = b[b0 + k];
+                    double y1 = b[b1 + k];
+                    dot00 += x0 * y0;
+                    dot01 += x0 * y1;
+                    dot10 += x1 * y0;
+                    dot11 += x1 * y1;
+                }
+                dot00 += odd00;
+                dot01 += odd01;
+                dot10 += odd10;
+                dot11 += odd11;
+                int row0 = outOrigin + (i - rowStart) * outStride;
+                int row1 = row0 + outStride;
+                out[row0 + j] = finish(i, columns, j, dot00);
+                out[row0 + j + 1] = finish(i, columns, j + 1, dot01);
+                out[row1 + j] = finish(i + 1, columns, j, dot10);
+                out[row1 + j + 1] = finish(i + 1, columns, j + 1, dot11);
+            }
+            if (j < columnEnd) {
+                int row0 = outOrigin + (i - rowStart) * outStride;
+                int b0 = columns.rowOffsets[j];
+                out[row0 + j] = finish(i, columns, j, dot(a, a0, b, b0, d));
+                out[row0 + outStride + j] = finish(i + 1, columns, j, dot(a, a1, b, b0, d));
+            }
+        }
+        if (i < rowEnd) {
+            int row = outOrigin + (i - rowStart) * outStride;
+            for (int j = columnStart; j < columnEnd; j++) {
+                out[row + j] = finish(i, columns, j, dot(a, rowOffsets[i], b, columns.rowOffsets[j], d));
+            }
+        }
+    }
+
+    private double finish(int i, DistanceBlocks columns, int j, double dot) {
+        double normTotal = norms[i] + columns.norms[j];
+        double squaredDistance = normTotal - 2 * dot;
+        if (squaredDistance < CANCELLATION_RATIO * normTotal) {
+            // close pairs matter the most when looking for the nearest point, so they are measured exactly
+            return DistanceKernel.squaredDistance(values, rowOffsets[i], columns.values, columns.rowOffsets[j], featureCount);
+        }
+        return squaredDistance;
+    }
+
+    private static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int k = 0; k < length; k++) {
+            sum += a[aOffset + k] * b[bOffset + k];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,258 @@
+package kernel;
+
+/**
+ * Inner loops shared by the distance algorithms, working over primitive feature arrays. Summing the squared
+ * differences into a single total makes every addition wait for the one before it, so the loops here keep four
+ * separate totals which the processor can work on at the same time and only combine them at the end.
+ */
+public class DistanceKernel {
+    // the number of separate totals kept by the unrolled loops
+    private static final int LANES = 4;
+
+    // rows which features are copied into when they are not held in a heap array, kept for each thread
+    private static final ThreadLocal<double[][]> SCRATCH_ROWS = ThreadLocal.withInitial(() -> new double[2][0]);
+
+    private DistanceKernel() {
+    }
+
+    /**
+     * Measures the squared euclidean distance between two rows of features.
+     *
+     * @param a       the array holding the first row
+     * @param aOffset the position of the first row in its array
+     * @param b       the array holding the second row
+     * @param bOffset the position of the second row in its array
+     * @param length  the number of features in each row
+     * @return the sum of the squared differences between the features
+     */
+    public static double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+
+        int unrolled = length - length % LANES;
+        int i = 0;
+        for (; i < unrolled; i += LANES) {
+            double d0 = a[aOffset + i] - b[bOffset + i];
+            double d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+            double d2 = a[aOffset + i + 2] - b[bOffset + i + 2];
+            double d3 = a[aOffset + i + 3] - b[bOffset + i + 3];
+            sum0 += d0 * d0;
+            sum1 += d1 * d1;
+            sum2 += d2 * d2;
+            sum3 += d3 * d3;
+        }
+
+        // the remaining features go into the same totals they would have if the row was longer
+        if (i < length) {
+            double d0 = a[aOffset + i] - b[bOffset + i];
+            sum0 += d0 * d0;
+        }
+        if (i + 1 < length) {
+            double d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+            sum1 += d1 * d1;
+        }
+        if (i + 2 < length) {
+            double d2 = a[aOffset + i + 2] - b[bOffset + i + 2];
+            sum2 += d2 * d2;
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Measures the squared euclidean distance between two rows of features, but gives up as soon as the distance is
+     * known to be larger than a bound. The sum only grows as features are added, so once the partial sum is over the
+     * bound the rest of the features cannot bring it back under.
+     *
+     * @param a          the array holding the first row
+     * @param aOffset    the position of the first row in its array
+     * @param b          the array holding the second row
+     * @param bOffset    the position of the second row in its array
+     * @param length     the number of features in each row
+     * @param upperBound the largest distance which needs to be measured exactly
+     * @return the same value as squaredDistance when it is no larger than the bound, otherwise a partial sum which is
+     * larger than the bound
+     */
+    public static double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length, double upperBound) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+
+        int unrolled = length - length % LANES;
+        int i = 0;
+        for (; i < unrolled; i += LANES) {
+            double d0 = a[aOffset + i] - b[bOffset + i];
+            double d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+            double d2 = a[aOffset + i + 2] - b[bOffset + i + 2];
+            double d3 = a[aOffset + i + 3] - b[bOffset + i + 3];
+            sum0 += d0 * d0;
+            sum1 += d1 * d1;
+            sum2 += d2 * d2;
+            sum3 += d3 * d3;
+
+            // the totals are combined in the same order as the final result, so the partial sum is never larger
+            double partialSum = (sum0 + sum1) + (sum2 + sum3);
+            if (partialSum > upperBound) {
+                return partialSum;
+            }
+        }
+
+        if (i < length) {
+            double d0 = a[aOffset + i] - b[bOffset + i];
+            sum0 += d0 * d0;
+        }
+        if (i + 1 < length) {
+            double d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+            sum1 += d1 * d1;
+        }
+        if (i + 2 < length) {
+            double d2 = a[aOffset + i + 2] - b[bOffset + i + 2];
+            sum2 += d2 * d2;
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Measures the manhattan distance between two rows of features, giving up once it is larger than a bound.
+     *
+     * @param a          the array holding the first row
+     * @param aOffset    the position of the first row in its array
+     * @param b          the array holding the second row
+     * @param bOffset    the position of the second row in its array
+     * @param length     the number of features in each row
+     * @param upperBound the largest distance which needs to be measured exactly
+     * @return the sum of the absolute differences when it is no larger than the bound, otherwise a partial sum which is
+     * larger than the bound
+     */
+    public static double manhattanDistance(double[] a, int aOffset, double[] b, int bOffset, int length, double upperBound) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+
+        int unrolled = length - length % LANES;
+        int i = 0;
+        for (; i < unrolled; i += LANES) {
+            sum0 += Math.abs(a[aOffset + i] - b[bOffset + i]);
+            sum1 += Math.abs(a[aOffset + i + 1] - b[bOffset + i + 1]);
+            sum2 += Math.abs(a[aOffset + i + 2] - b[bOffset + i + 2]);
+            sum3 += Math.abs(a[aOffset + i + 3] - b[bOffset + i + 3]);
+
+            double partialSum = (sum0 + sum1) + (sum2 + sum3);
+            if (partialSum > upperBound) {
+                return partialSum;
+            }
+        }
+        for (; i < length; i++) {
+            sum0 += Math.abs(a[aOffset + i] - b[bOffset + i]);
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Measures the chebyshev distance between two rows of features, giving up once it is larger than a bound.
+     *
+     * @param a          the array holding the first row
+     * @param aOffset    the position of the first row in its array
+     * @param b          the array holding the second row
+     * @param bOffset    the position of the second row in its array
+     * @param length     the number of features in each row
+     * @param upperBound the largest distance which needs to be measured exactly
+     * @return the largest absolute difference when it is no larger than the bound, otherwise a difference which is
+     * larger than the bound
+     */
+    public static double chebyshevDistance(double[] a, int aOffset, double[] b, int bOffset, int length, double upperBound) {
+        double largest = 0;
+        for (int i = 0; i < length; i++) {
+            double difference = Math.abs(a[aOffset + i] - b[bOffset + i]);
+            if (difference > largest) {
+                largest = difference;
+                if (largest > upperBound) {
+                    return largest;
+                }
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Works out the dot product of two rows of features.
+     *
+     * @param a       the array holding the first row
+     * @param aOffset the position of the first row in its array
+     * @param b       the array holding the second row
+     * @param bOffset the position of the second row in its array
+     * @param length  the number of features in each row
+     * @return the sum of the products of the features
+     */
+    public static double dotProduct(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+
+        int unrolled = length - length % LANES;
+        int i = 0;
+        for (; i < unrolled; i += LANES) {
+            sum0 += a[aOffset + i] * b[bOffset + i];
+            sum1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            sum2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            sum3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Measures the edit distance between a categorical feature of two data points, looking it up from the column when
+     * both values come from the same dataset.
+     *
+     * @param dp1     the first data point
+     * @param dp2     the second data point
+     * @param feature the index of the categorical feature
+     * @return the number of edits needed to turn one value into the other
+     */
+    public static int categoricalDistance(DataPoint dp1, DataPoint dp2, int feature) {
+        CategoricalColumn column = dp1.getCategoricalColumn(feature);
+        if (column == dp2.getCategoricalColumn(feature)) {
+            return column.distance(dp1.getCategoricalCode(feature), dp2.getCategoricalCode(feature));
+        }
+        return CategoricalColumn.measureEditDistance(dp1.getCategorical(feature), dp2.getCategorical(feature));
+    }
+
+    /**
+     * Returns one of two arrays kept for the current thread, which can be used to copy features into without creating
+     * a new array for every distance measured. The contents are only valid until the next call on the same thread
+     * which asks for the same array.
+     *
+     * @param index  which of the two arrays is wanted, 0 or 1
+     * @param length the smallest length the array must have
+     * @return the array
+     */
+    public static double[] scratchRow(int index, int length) {
+        double[][] rows = SCRATCH_ROWS.get();
+        if (rows[index].length < length) {
+            rows[index] = new double[length];
+        }
+        return rows[index];
+    }
+
+    /**
+     * Copies the numerical features of a data point into an array, so they can be passed to the kernels when the
+     * dataset does not hold its features in a heap array.
+     *
+     * @param dp     the data point to copy
+     * @param values the array to copy into, which must hold at least every numerical feature
+     * @return the array which was passed in
+     */
+    public static double[] copyNumericalValues(DataPoint dp, double[] values) {
+        for (int k = 0; k < dp.sizeNumerical(); k++) {
+            values[k] = dp.getNumericalValue(k);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,227 @@
+package kernel;
+
+import spi.DistanceAlgorithm;
+
+import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Holds the comparison distance between every pair of a group of data points, so algorithms which look at the same
+ * pairs many times only need to measure each pair once. The distance between two points is the same either way round,
+ * so only the pairs above the diagonal are kept, one row after another in a single array.
+ * <p>
+ * The values are comparison distances from the distance algorithm, which are converted with its toDistance method when
+ * the distance itself is needed.
+ */
+public class DistanceMatrix {
+    // the largest number of points whose pairs fit in a single array
+    public static final int MAX_POINTS = 65536;
+
+    // the number of rows filled together by the block engine
+    private static final int BAND_ROWS = 64;
+
+    private double[] distances;
+    private int size;
+
+    // set when the points are every row of a dataset in row order, so the row of a point is its index. Held weakly so
+    // a cached matrix does not keep its dataset alive, any point looked up keeps its own dataset reachable
+    private WeakReference<Dataset> dataset;
+    private IdentityHashMap<DataPoint, Integer> indices;
+
+    private DistanceMatrix(int size) {
+        this.size = size;
+        distances = new double[(int) entryCount(size)];
+    }
+
+    /**
+     * Measures the comparison distance between every pair of points, with the rows shared out between threads.
+     *
+     * @param points            the points to measure between, the index of a point in the list is its index in the
+     *                          matrix
+     * @param distanceAlgorithm the algorithm used to measure each pair
+     * @return the filled matrix
+     */
+    public static DistanceMatrix compute(List<DataPoint> points, DistanceAlgorithm distanceAlgorithm) {
+        int n = points.size();
+        if (n > MAX_POINTS) {
+            throw new IllegalArgumentException("A distance matrix can hold at most " + MAX_POINTS + " points");
+        }
+        DistanceMatrix matrix = new DistanceMatrix(n);
+        Dataset rowOrderedDataset = getRowOrderedDataset(points);
+        if (rowOrderedDataset != null) {
+            matrix.dataset = new WeakReference<>(rowOrderedDataset);
+        } else {
+            matrix.indices = new IdentityHashMap<>(n);
+            for (int i = 0; i < n; i++) {
+                matrix.indices.put(points.get(i), i);
+            }
+        }
+
+        if (DistanceBlocks.canMeasure(distanceAlgorithm, points)) {
+            matrix.fillBlocks(new DistanceBlocks(points));
+            return matrix;
+        }
+
+        // early rows hold far more pairs than late ones, so each task fills one of each to even out the work
+        IntStream.range(0, (n + 1) / 2).parallel().forEach(i -> {
+            double[] rowDistances = new double[n];
+            matrix.fillRow(i, points, distanceAlgorithm, rowDistances);
+            if (n - 1 - i != i) {
+                matrix.fillRow(n - 1 - i, points, distanceAlgorithm, rowDistances);
+            }
+        });
+        return matrix;
+    }
+
+    /**
+     * Returns the comparison distance between two points in the matrix.
+     *
+     * @param i the index of the first point
+     * @param j the index of the second point
+     * @return the comparison distance between the points, zero for a point and itself
+     */
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0;
+        }
+        return i < j ? distances[index(i, j)] : distances[index(j, i)];
+    }
+
+    /**
+     * Returns the comparison distance between two data points in the matrix.
+     *
+     * @param dp1 the first data point
+     * @param dp2 the second data point
+     * @return the comparison distance between the data points
+     */
+    public double get(DataPoint dp1, DataPoint dp2) {
+        return get(indexOf(dp1), indexOf(dp2));
+    }
+
+    /**
+     * @param dp a data point held by the matrix
+     * @return the index of the data point in the matrix
+     */
+    public int indexOf(DataPoint dp) {
+        if (dataset != null) {
+            if (dp.getDataset() != dataset.get()) {
+                throw new IllegalArgumentException("The data point is not held by this distance matrix");
+            }
+            return dp.getRow();
+        }
+        Integer index = indices.get(dp);
+        if (index == null) {
+            throw new IllegalArgumentException("The data point is not held by this distance matrix");
+        }
+        return index;
+    }
+
+    /**
+     * @param dp a data point
+     * @return true if the data point is held by the matrix
+     */
+    public boolean contains(DataPoint dp) {
+        return dataset != null ? dp.getDataset() == dataset.get() : indices.containsKey(dp);
+    }
+
+    /**
+     * @return the number of points held by the matrix
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copies the comparison distances, for algorithms which need to change them as they go.
+     *
+     * @return the distance between every pair above the diagonal, one row after another
+     */
+    public double[] toArray() {
+        return distances.clone();
+    }
+
+    /**
+     * @return the number of bytes used by the matrix
+     */
+    public long getByteSize() {
+        return byteSize(size);
+    }
+
+    /**
+     * Works out how much memory a matrix will need before it is created.
+     *
+     * @param pointCount the number of points the matrix would hold
+     * @return the number of bytes the matrix would use
+     */
+    public static long byteSize(int pointCount) {
+        return entryCount(pointCount) * Double.BYTES;
+    }
+
+    private void fillRow(int i, List<DataPoint> points, DistanceAlgorithm distanceAlgorithm, double[] rowDistances) {
+        if (i == size - 1) {
+            return;
+        }
+        distanceAlgorithm.measureComparisonDistances(points.get(i), points.subList(i + 1, size), rowDistances);
+        System.arraycopy(rowDistances, 0, distances, index(i, i + 1), size - 1 - i);
+    }
+
+    /**
+     * Fills the matrix a band of rows at a time with the block engine. Only the tiles on or above the diagonal are
+     * measured, and the bands are paired up as the rows are so each task has a similar amount of work.
+     *
+     * @param blocks the features of the points prepared for the block engine
+     */
+    private void fillBlocks(DistanceBlocks blocks) {
+        int bandCount = (size + BAND_ROWS - 1) / BAND_ROWS;
+        IntStream.range(0, (bandCount + 1) / 2).parallel().forEach(band -> {
+            double[] bandDistances = new double[BAND_ROWS * size];
+            fillBand(band, blocks, bandDistances);
+            if (bandCount - 1 - band != band) {
+                fillBand(bandCount - 1 - band, blocks, bandDistances);
+            }
+        });
+    }
+
+    private void fillBand(int band, DistanceBlocks blocks, double[] bandDistances) {
+        int rowStart = band * BAND_ROWS;
+        int rowEnd = Math.min(rowStart + BAND_ROWS, size);
+        // the band is measured from its first row onwards, which covers every pair above the diagonal
+        int width = size - rowStart;
+        blocks.squaredDistances(rowStart, rowEnd, blocks, rowStart, size, bandDistances, 0, width);
+        for (int i = rowStart; i < rowEnd && i < size - 1; i++) {
+            System.arraycopy(bandDistances, (i - rowStart) * width + (i + 1 - rowStart), distances, index(i, i + 1), size - 1 - i);
+        }
+    }
+
+    private int index(int i, int j) {
+        // rows before i hold (size - 1) + (size - 2) + ... + (size - i) pairs
+        return (int) ((long) i * (2L * size - i - 1) / 2) + (j - i - 1);
+    }
+
+    private static long entryCount(int pointCount) {
+        return (long) pointCount * (pointCount - 1) / 2;
+    }
+
+    /**
+     * @param points the points of the matrix
+     * @return the dataset holding the points if they are every row of it in row order, otherwise null
+     */
+    static Dataset getRowOrderedDataset(List<DataPoint> points) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Dataset dataset = points.get(0).getDataset();
+        if (dataset.size() != points.size()) {
+            return null;
+        }
+        for (int i = 0; i < points.size(); i++) {
+            DataPoint dp = points.get(i);
+            if (dp.getDataset() != dataset || dp.getRow() != i) {
+                return null;
+            }
+        }
+        return dataset;
+    }
+}
@@ -0,0 +1,236 @@
+package kernel;
+
+import spi.DistanceAlgorithm;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Keeps the distance matrices of recently clustered datasets, so clustering the same dataset again with different
+ * settings does not need every pair to be measured again. A matrix is kept for each dataset and distance algorithm,
+ * and is replaced once the features of the dataset change. The total size of the matrices is kept within a memory
+ * budget, with the least recently used matrices removed first to make room.
+ * <p>
+ * Datasets are held weakly, so the matrices of a dataset are removed once the dataset is no longer used. Matrices are
+ * measured outside the lock of the cache, and a request for a matrix which is already being measured waits for it
+ * rather than measuring it again.
+ */
+public class DistanceMatrixCache {
+    private static final DistanceMatrixCache SHARED = new DistanceMatrixCache(Runtime.getRuntime().maxMemory() / 4);
+
+    private long memoryBudget;
+    private long memoryUsed;
+
+    // kept in access order so the first entry is always the least recently used
+    private LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // the keys of datasets which have been garbage collected
+    private ReferenceQueue<Dataset> releasedDatasets = new ReferenceQueue<>();
+
+    /**
+     * @param memoryBudget the largest number of bytes the cached matrices may use between them
+     */
+    public DistanceMatrixCache(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @return the cache shared by every algorithm, which may use up to a quarter of the maximum heap size
+     */
+    public static DistanceMatrixCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the distance matrix for a group of data points, measuring it if it has not already been cached. Only
+     * matrices for every row of a dataset are cached, as other groups are unlikely to be clustered again.
+     *
+     * @param points            the points to measure between
+     * @param distanceAlgorithm the algorithm used to measure each pair
+     * @return the distance matrix, or null if it would not fit in the memory budget
+     */
+    public DistanceMatrix getMatrix(List<DataPoint> points, DistanceAlgorithm distanceAlgorithm) {
+        long byteSize = DistanceMatrix.byteSize(points.size());
+        if (points.size() > DistanceMatrix.MAX_POINTS || byteSize > memoryBudget) {
+            return null;
+        }
+
+        Dataset dataset = DistanceMatrix.getRowOrderedDataset(points);
+        if (dataset == null) {
+            return DistanceMatrix.compute(points, distanceAlgorithm);
+        }
+
+        Key key = new Key(dataset, distanceAlgorithm, releasedDatasets);
+        Entry entry;
+        boolean measure = false;
+        synchronized (this) {
+            removeReleased();
+            entry = entries.get(key);
+            if (entry != null && entry.version != dataset.getVersion()) {
+                // the features have changed since the matrix was measured
+                remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                // the space is taken now so other matrices measured at the same time are kept within the budget
+                makeRoom(byteSize);
+                entry = new Entry(new CompletableFuture<>(), dataset.getVersion(), byteSize);
+                entries.put(key, entry);
+                memoryUsed += byteSize;
+                measure = true;
+            }
+        }
+        if (!measure) {
+            return waitFor(entry.matrix);
+        }
+
+        try {
+            DistanceMatrix matrix = DistanceMatrix.compute(points, distanceAlgorithm);
+            entry.matrix.complete(matrix);
+            return matrix;
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    remove(key);
+                }
+            }
+            entry.matrix.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes every cached matrix. Matrices which are still being measured are given to the requests waiting for them
+     * but are not kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        memoryUsed = 0;
+    }
+
+    /**
+     * @return the number of bytes used by the cached matrices
+     */
+    public synchronized long getMemoryUsed() {
+        removeReleased();
+        return memoryUsed;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @return the number of matrices in the cache
+     */
+    public synchronized int size() {
+        removeReleased();
+        return entries.size();
+    }
+
+    /**
+     * Removes the least recently used matrices until a new matrix of the given size fits within the budget.
+     *
+     * @param byteSize the size of the new matrix
+     */
+    private void makeRoom(long byteSize) {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (memoryUsed + byteSize > memoryBudget && iterator.hasNext()) {
+            memoryUsed -= iterator.next().getValue().byteSize;
+            iterator.remove();
+        }
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            memoryUsed -= entry.byteSize;
+        }
+    }
+
+    /**
+     * Removes the matrices of datasets which have been garbage collected.
+     */
+    private void removeReleased() {
+        Object released;
+        while ((released = releasedDatasets.poll()) != null) {
+            remove((Key) released);
+        }
+    }
+
+    /**
+     * Waits for a matrix which may still be being measured by another request.
+     *
+     * @param matrix the matrix which is being measured
+     * @return the measured matrix
+     */
+    private static DistanceMatrix waitFor(CompletableFuture<DistanceMatrix> matrix) {
+        try {
+            return matrix.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Identifies a dataset and a distance algorithm. Datasets are compared by identity and held weakly, while distance
+     * algorithms are compared by type and name as a new instance of each plugin is created whenever the plugins are
+     * loaded. Once its dataset has been garbage collected a key is only equal to itself, so it can still be removed.
+     */
+    private static class Key extends WeakReference<Dataset> {
+        private int datasetHash;
+        private Class<?> algorithmType;
+        private String algorithmName;
+
+        private Key(Dataset dataset, DistanceAlgorithm distanceAlgorithm, ReferenceQueue<Dataset> queue) {
+            super(dataset, queue);
+            datasetHash = System.identityHashCode(dataset);
+            algorithmType = distanceAlgorithm.getClass();
+            algorithmName = distanceAlgorithm.getName();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            Dataset dataset = get();
+            return dataset != null && dataset == other.get() && algorithmType == other.algorithmType
+                    && Objects.equals(algorithmName, other.algorithmName);
+        }
+
+        @Override
+        public int hashCode() {
+            return datasetHash * 31 + algorithmType.hashCode();
+        }
+    }
+
+    private static class Entry {
+        private CompletableFuture<DistanceMatrix> matrix;
+        private int version;
+        private long byteSize;
+
+        private Entry(CompletableFuture<DistanceMatrix> matrix, int version, long byteSize) {
+            this.matrix = matrix;
+            this.version = version;
+            this.byteSize = byteSize;
+        }
+    }
+}
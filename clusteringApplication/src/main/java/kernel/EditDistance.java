@@ -0,0 +1,74 @@
+package kernel;
+
+/**
+ * Measures the Levenshtein distance between two strings without creating any objects. The two rows of the dynamic
+ * programming table are kept for each thread and reused by every call, only growing when a longer string is seen, so
+ * measuring categorical features during clustering does not produce any garbage once the rows are large enough.
+ */
+public class EditDistance {
+    private static final ThreadLocal<int[][]> SCRATCH_ROWS = ThreadLocal.withInitial(() -> new int[2][16]);
+
+    private EditDistance() {
+    }
+
+    /**
+     * Measures the number of single character insertions, deletions and substitutions needed to turn one string into
+     * the other.
+     *
+     * @param value1 the first value
+     * @param value2 the second value
+     * @return the number of edits needed to turn one value into the other
+     */
+    public static int measure(CharSequence value1, CharSequence value2) {
+        // the rows are sized by the shorter string
+        CharSequence longer = value1;
+        CharSequence shorter = value2;
+        if (longer.length() < shorter.length()) {
+            longer = value2;
+            shorter = value1;
+        }
+
+        // characters shared at the start and end of both strings never need to be edited
+        int start = 0;
+        int longerEnd = longer.length();
+        int shorterEnd = shorter.length();
+        while (start < shorterEnd && longer.charAt(start) == shorter.charAt(start)) {
+            start++;
+        }
+        while (shorterEnd > start && longer.charAt(longerEnd - 1) == shorter.charAt(shorterEnd - 1)) {
+            longerEnd--;
+            shorterEnd--;
+        }
+        int longerLength = longerEnd - start;
+        int shorterLength = shorterEnd - start;
+        if (shorterLength == 0) {
+            return longerLength;
+        }
+
+        int[][] rows = SCRATCH_ROWS.get();
+        if (rows[0].length <= shorterLength) {
+            int capacity = shorterLength + (shorterLength >> 1) + 1;
+            rows[0] = new int[capacity];
+            rows[1] = new int[capacity];
+        }
+        int[] previous = rows[0];
+        int[] current = rows[1];
+
+        for (int j = 0; j <= shorterLength; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= longerLength; i++) {
+            char c = longer.charAt(start + i - 1);
+            current[0] = i;
+            for (int j = 1; j <= shorterLength; j++) {
+                int substitution = previous[j - 1] + (c == shorter.charAt(start + j - 1) ? 0 : 1);
+                int edit = Math.min(current[j - 1], previous[j]) + 1;
+                current[j] = Math.min(substitution, edit);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[shorterLength];
+    }
+}
@@ -0,0 +1,77 @@
+package kernel;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Primitive storage for the numerical features of a dataset. Values are addressed by row (sample) and column (feature)
+ * so that every data point in a dataset can share one block of storage instead of holding its own list of boxed values.
+ */
+public abstract class FeatureMatrix implements Closeable {
+
+    /**
+     * Reads a single feature value.
+     *
+     * @param row    the sample the value belongs to
+     * @param column the feature which is being read
+     * @return the value stored at the given position
+     */
+    public abstract double get(int row, int column);
+
+    /**
+     * Overwrites a single feature value.
+     *
+     * @param row    the sample the value belongs to
+     * @param column the feature which is being updated
+     * @param value  the new value
+     */
+    public abstract void set(int row, int column, double value);
+
+    /**
+     * Appends a new row to the end of the matrix.
+     *
+     * @param values the feature values of the new row, only the first column count values are read
+     * @return the index of the row which was added
+     */
+    public abstract int addRow(double[] values);
+
+    public abstract int getRowCount();
+
+    public abstract int getColumnCount();
+
+    /**
+     * Creates an independent copy of the matrix which is not affected by later updates to this matrix.
+     *
+     * @return the copied matrix
+     */
+    public abstract FeatureMatrix copy();
+
+    /**
+     * Gives direct access to the array backing the matrix so that tight loops can avoid going through get for every
+     * value. Matrices which are not stored in a heap array return null.
+     *
+     * @return the row-major backing array, or null if there is not one
+     */
+    public double[] getArray() {
+        return null;
+    }
+
+    /**
+     * Returns the position of the first value of a row within the backing array.
+     *
+     * @param row the row being looked up
+     * @return the offset of the row in the array returned by getArray
+     */
+    public int getRowOffset(int row) {
+        return row * getColumnCount();
+    }
+
+    /**
+     * Releases any storage held outside the heap. Matrices held on the heap have nothing to release.
+     *
+     * @throws IOException thrown if the storage cannot be released
+     */
+    @Override
+    public void close() throws IOException {
+    }
+}
@@ -0,0 +1,76 @@
+package kernel;
+
+import java.util.List;
+
+/**
+ * Running minimum, maximum and total of every numerical feature. Data can be added a batch at a time, so the
+ * statistics of a database can be collected while it is still being read.
+ */
+public class FeatureStatistics {
+    private double[] minFeatureValues;
+    private double[] maxFeatureValues;
+    private double[] featureTotals;
+    private long count;
+
+    /**
+     * Adds a group of data points to the statistics. Every data point must have the same number of numerical features.
+     *
+     * @param data the data points to add
+     */
+    public void add(List<DataPoint> data) {
+        if (data.isEmpty()) {
+            return;
+        }
+        if (minFeatureValues == null) {
+            int featureCount = data.get(0).sizeNumerical();
+            minFeatureValues = new double[featureCount];
+            maxFeatureValues = new double[featureCount];
+            featureTotals = new double[featureCount];
+            for (int i = 0; i < featureCount; i++) {
+                minFeatureValues[i] = data.get(0).getNumericalValue(i);
+                maxFeatureValues[i] = data.get(0).getNumericalValue(i);
+            }
+        }
+
+        int featureCount = minFeatureValues.length;
+        // a single pass over the data points collects the statistics for every feature, so each row is read in order
+        for (int j = 0; j < data.size(); j++) {
+            DataPoint dp = data.get(j);
+            for (int i = 0; i < featureCount; i++) {
+                double x = dp.getNumericalValue(i);
+                featureTotals[i] += x;
+
+                if (x < minFeatureValues[i]) {
+                    minFeatureValues[i] = x;
+                }
+                if (x > maxFeatureValues[i]) {
+                    maxFeatureValues[i] = x;
+                }
+            }
+        }
+        count += data.size();
+    }
+
+    public int getFeatureCount() {
+        return minFeatureValues == null ? 0 : minFeatureValues.length;
+    }
+
+    /**
+     * @return the number of data points which have been added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin(int feature) {
+        return minFeatureValues[feature];
+    }
+
+    public double getMax(int feature) {
+        return maxFeatureValues[feature];
+    }
+
+    public double getMean(int feature) {
+        return featureTotals[feature] / count;
+    }
+}
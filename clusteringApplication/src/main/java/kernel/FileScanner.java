@@ -0,0 +1,128 @@
+package kernel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the lines of a file without decoding it. The file is mapped in sections which are searched at the same time,
+ * and each section is searched eight bytes at a time by treating them as a single long.
+ */
+public class FileScanner {
+    private static final long SECTION_BYTES = 64L << 20;
+
+    // a new line character repeated in every byte of a long
+    private static final long NEW_LINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * Counts the lines in a file, a last line without a new line character is still counted.
+     *
+     * @param file the file to count
+     * @return the number of lines in the file
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static long countLines(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return 0;
+            }
+
+            ArrayList<Callable<Long>> tasks = new ArrayList<>();
+            for (long start = 0; start < size; start += SECTION_BYTES) {
+                long sectionStart = start;
+                long sectionLength = Math.min(SECTION_BYTES, size - start);
+                tasks.add(() -> countNewLines(channel.map(FileChannel.MapMode.READ_ONLY, sectionStart, sectionLength)));
+            }
+
+            long lineCount = 0;
+            if (tasks.size() == 1) {
+                lineCount = countNewLines(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            } else {
+                lineCount = sum(ForkJoinPool.commonPool().invokeAll(tasks));
+            }
+
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            channel.read(lastByte, size - 1);
+            if (lastByte.get(0) != '\n') {
+                lineCount++;
+            }
+            return lineCount;
+        }
+    }
+
+    /**
+     * Counts the lines in a stream, used for files which have to be decompressed before they can be searched.
+     *
+     * @param in the stream to count, which is read to its end
+     * @return the number of lines in the stream
+     * @throws IOException thrown if the stream cannot be read
+     */
+    public static long countLines(InputStream in) throws IOException {
+        byte[] block = new byte[1 << 16];
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        long lineCount = 0;
+        byte lastByte = '\n';
+        int read;
+        while ((read = in.read(block)) > 0) {
+            buffer.limit(read);
+            lineCount += countNewLines(buffer);
+            lastByte = block[read - 1];
+        }
+        return lastByte == '\n' ? lineCount : lineCount + 1;
+    }
+
+    /**
+     * Counts the new line characters in a buffer.
+     *
+     * @param buffer the bytes to search
+     * @return the number of new line characters
+     */
+    static long countNewLines(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        long count = 0;
+        int i = 0;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            // bytes which held a new line become zero, then the high bit of each byte is set unless the byte is zero
+            long word = buffer.getLong(i) ^ NEW_LINES;
+            long nonZero = ((word & LOW_BITS) + LOW_BITS) | word;
+            count += Long.bitCount(~nonZero & HIGH_BITS);
+        }
+        for (; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long sum(List<Future<Long>> counts) throws IOException {
+        long total = 0;
+        try {
+            for (Future<Long> count : counts) {
+                total += count.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Counting lines was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to count lines", e.getCause());
+        }
+        return total;
+    }
+}
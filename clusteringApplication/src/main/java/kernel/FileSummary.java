@@ -0,0 +1,38 @@
+package kernel;
+
+/**
+ * The details of a database which can be found without parsing every line, used to describe a file before it is
+ * clustered.
+ */
+public class FileSummary {
+    private long lineCount;
+    private int numericalCount;
+    private int categoricalCount;
+
+    /**
+     * @param lineCount        the number of lines in the file
+     * @param numericalCount   the number of numerical features in each sample
+     * @param categoricalCount the number of categorical features in each sample
+     */
+    public FileSummary(long lineCount, int numericalCount, int categoricalCount) {
+        this.lineCount = lineCount;
+        this.numericalCount = numericalCount;
+        this.categoricalCount = categoricalCount;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public int getNumericalCount() {
+        return numericalCount;
+    }
+
+    public int getCategoricalCount() {
+        return categoricalCount;
+    }
+
+    public int getFeatureNumber() {
+        return numericalCount + categoricalCount;
+    }
+}
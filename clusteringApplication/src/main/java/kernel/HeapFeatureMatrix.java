@@ -0,0 +1,102 @@
+package kernel;
+
+import java.util.Arrays;
+
+/**
+ * Feature matrix which keeps all of its values in a single row-major double array, so the features of a sample are
+ * contiguous in memory and no value is ever boxed.
+ */
+public class HeapFeatureMatrix extends FeatureMatrix {
+    private static final int DEFAULT_ROW_CAPACITY = 16;
+
+    private double[] values;
+    private int rowCount;
+    private int columnCount;
+
+    public HeapFeatureMatrix(int columnCount) {
+        this(columnCount, DEFAULT_ROW_CAPACITY);
+    }
+
+    public HeapFeatureMatrix(int columnCount, int rowCapacity) {
+        this.columnCount = columnCount;
+        values = new double[Math.max(1, columnCount * Math.max(1, rowCapacity))];
+    }
+
+    @Override
+    public double get(int row, int column) {
+        return values[row * columnCount + column];
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+        values[row * columnCount + column] = value;
+    }
+
+    @Override
+    public int addRow(double[] rowValues) {
+        ensureCapacity((rowCount + 1) * columnCount);
+        System.arraycopy(rowValues, 0, values, rowCount * columnCount, columnCount);
+        return rowCount++;
+    }
+
+    /**
+     * Adds a new feature to a matrix which only contains a single row. This is used when a data point is built up one
+     * feature at a time rather than being read from a file.
+     *
+     * @param value the value of the new feature
+     */
+    public void addColumn(double value) {
+        if (rowCount > 1) {
+            throw new IllegalStateException("Features can only be added one at a time to a single row matrix");
+        }
+        rowCount = 1;
+        ensureCapacity(columnCount + 1);
+        values[columnCount] = value;
+        columnCount++;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public FeatureMatrix copy() {
+        HeapFeatureMatrix copy = new HeapFeatureMatrix(columnCount, rowCount);
+        System.arraycopy(values, 0, copy.values, 0, rowCount * columnCount);
+        copy.rowCount = rowCount;
+        return copy;
+    }
+
+    @Override
+    public double[] getArray() {
+        return values;
+    }
+
+    @Override
+    public int getRowOffset(int row) {
+        return row * columnCount;
+    }
+
+    /**
+     * Releases any spare capacity left over from growing the matrix while rows were being added.
+     */
+    public void trimToSize() {
+        if (values.length > rowCount * columnCount) {
+            values = Arrays.copyOf(values, Math.max(1, rowCount * columnCount));
+        }
+    }
+
+    private void ensureCapacity(int requiredLength) {
+        if (requiredLength > values.length) {
+            // grow by half again to keep the number of copies low when reading large files
+            int newLength = Math.max(requiredLength, values.length + (values.length >> 1));
+            values = Arrays.copyOf(values, newLength);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package kernel;
+
+/**
+ * The ways the distance between two clusters can be worked out from the distances between their data points. Each
+ * linkage gives the distance from a newly merged cluster to every other cluster from the distances before the merge,
+ * using the Lance-Williams formula, so the distances between the data points never need to be measured again.
+ */
+public enum Linkage {
+    /**
+     * Clusters are as close as their closest pair of data points.
+     */
+    SINGLE("Single") {
+        @Override
+        public double update(double distanceIK, double distanceJK, double distanceIJ, int sizeI, int sizeJ, int sizeK) {
+            return Math.min(distanceIK, distanceJK);
+        }
+    },
+
+    /**
+     * Clusters are as close as their furthest pair of data points.
+     */
+    COMPLETE("Complete") {
+        @Override
+        public double update(double distanceIK, double distanceJK, double distanceIJ, int sizeI, int sizeJ, int sizeK) {
+            return Math.max(distanceIK, distanceJK);
+        }
+    },
+
+    /**
+     * Clusters are as close as the average distance between their data points.
+     */
+    AVERAGE("Average") {
+        @Override
+        public double update(double distanceIK, double distanceJK, double distanceIJ, int sizeI, int sizeJ, int sizeK) {
+            return (sizeI * distanceIK + sizeJ * distanceJK) / (sizeI + sizeJ);
+        }
+    },
+
+    /**
+     * Clusters are as close as the average distance between the two clusters each was merged from, whatever their
+     * sizes.
+     */
+    WEIGHTED("Weighted") {
+        @Override
+        public double update(double distanceIK, double distanceJK, double distanceIJ, int sizeI, int sizeJ, int sizeK) {
+            return (distanceIK + distanceJK) / 2;
+        }
+    },
+
+    /**
+     * Clusters are as close as their centroids. Merged clusters can be closer to other clusters than the clusters they
+     * were merged from were.
+     */
+    CENTROID("Centroid") {
+        @Override
+        public double update(double distanceIK, double distanceJK, double distanceIJ, int sizeI, int sizeJ, int sizeK) {
+            double sizeIJ = sizeI + sizeJ;
+            return (sizeI * distanceIK + sizeJ * distanceJK) / sizeIJ - sizeI * sizeJ * distanceIJ / (sizeIJ * sizeIJ);
+        }
+    },
+
+    /**
+     * Clusters are as close as the increase in the total squared distance from each data point to the centroid of its
+     * cluster if they were merged.
+     */
+    WARD("Ward") {
+        @Override
+        public double update(double distanceIK, double distanceJK, double distanceIJ, int sizeI, int sizeJ, int sizeK) {
+            return ((sizeI + sizeK) * distanceIK + (sizeJ + sizeK) * distanceJK - sizeK * distanceIJ)
+                    / (sizeI + sizeJ + sizeK);
+        }
+    };
+
+    private String name;
+
+    Linkage(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Works out the distance from a cluster K to the cluster made by merging clusters I and J.
+     *
+     * @param distanceIK the distance between clusters I and K
+     * @param distanceJK the distance between clusters J and K
+     * @param distanceIJ the distance between clusters I and J
+     * @param sizeI      the number of data points in cluster I
+     * @param sizeJ      the number of data points in cluster J
+     * @param sizeK      the number of data points in cluster K
+     * @return the distance between cluster K and the merged cluster
+     */
+    public abstract double update(double distanceIK, double distanceJK, double distanceIJ, int sizeI, int sizeJ, int sizeK);
+
+    /**
+     * @return true if the formula works on squared euclidean distances rather than distances
+     */
+    public boolean usesSquaredDistances() {
+        return this == CENTROID || this == WARD;
+    }
+
+    /**
+     * A merged cluster is never closer to another cluster than both of the clusters it was merged from for every
+     * linkage except centroid linkage. Only then can the closest pair of clusters be found by following nearest
+     * neighbours, as the merge of a pair of mutual nearest neighbours never changes the nearest neighbour of another
+     * cluster to something closer.
+     *
+     * @return true if nearest neighbour chains give the same merges as always merging the closest pair
+     */
+    public boolean isReducible() {
+        return this != CENTROID;
+    }
+
+    /**
+     * @return the name of the linkage so it can be displayed as an option in the GUI
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
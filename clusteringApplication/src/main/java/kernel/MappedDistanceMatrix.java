@@ -0,0 +1,238 @@
+package kernel;
+
+import spi.DistanceAlgorithm;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Holds the distance between every pair of a group of data points in a memory-mapped temporary file, for groups whose
+ * distance matrix is too large for the java heap. The pairs above the diagonal are kept one row after another as in a
+ * {@link DistanceMatrix}, so reading a row or working through the rows in order reads the file from start to end and
+ * the operating system only needs to hold the pages currently in use.
+ * <p>
+ * The matrix starts with comparison distances from the distance algorithm, and unlike an in-memory matrix its values
+ * can be changed, so it can be worked on directly by clustering methods which update the distances as they go.
+ */
+public class MappedDistanceMatrix implements Closeable {
+    // a single mapping is limited to 2GB, so the file is mapped in segments which always hold a whole number of rows
+    private static final long SEGMENT_BYTES = 1L << 28;
+
+    // the number of pairs measured together by each task when the matrix is filled
+    private static final int BAND_PAIRS = 1 << 20;
+    private static final int MAX_BAND_ROWS = 64;
+
+    private File backingFile;
+    private FileChannel channel;
+    private ArrayList<DoubleBuffer> segments = new ArrayList<>();
+    private int size;
+
+    // the segment holding each row, and the position of the first pair of the row in that segment
+    private int[] rowSegments;
+    private int[] rowOffsets;
+
+    private MappedDistanceMatrix(int size) throws IOException {
+        this.size = size;
+        rowSegments = new int[size];
+        rowOffsets = new int[size];
+
+        backingFile = File.createTempFile("distances", ".matrix");
+        backingFile.deleteOnExit();
+        channel = new RandomAccessFile(backingFile, "rw").getChannel();
+
+        long segmentStart = 0;
+        long segmentEntries = 0;
+        for (int i = 0; i < size; i++) {
+            int rowEntries = size - 1 - i;
+            if ((segmentEntries + rowEntries) * Double.BYTES > SEGMENT_BYTES) {
+                mapSegment(segmentStart, segmentEntries);
+                segmentStart += segmentEntries;
+                segmentEntries = 0;
+            }
+            rowSegments[i] = segments.size();
+            rowOffsets[i] = (int) segmentEntries;
+            segmentEntries += rowEntries;
+        }
+        mapSegment(segmentStart, segmentEntries);
+    }
+
+    /**
+     * Measures the comparison distance between every pair of points into a new temporary file, with the rows shared out
+     * between threads. The file is removed when the matrix is closed, or otherwise when the application exits.
+     *
+     * @param points            the points to measure between, the index of a point in the list is its index in the
+     *                          matrix
+     * @param distanceAlgorithm the algorithm used to measure each pair
+     * @return the filled matrix
+     * @throws IOException thrown if the temporary file cannot be created
+     */
+    public static MappedDistanceMatrix compute(List<DataPoint> points, DistanceAlgorithm distanceAlgorithm) throws IOException {
+        MappedDistanceMatrix matrix = new MappedDistanceMatrix(points.size());
+        try {
+            if (DistanceBlocks.canMeasure(distanceAlgorithm, points)) {
+                matrix.fillBlocks(new DistanceBlocks(points));
+            } else {
+                matrix.fillRows(points, distanceAlgorithm);
+            }
+        } catch (RuntimeException e) {
+            matrix.close();
+            throw e;
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns the value held for a pair of points.
+     *
+     * @param i the index of the first point
+     * @param j the index of the second point
+     * @return the value for the pair, zero for a point and itself
+     */
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0;
+        }
+        if (i > j) {
+            return get(j, i);
+        }
+        return segments.get(rowSegments[i]).get(rowOffsets[i] + (j - i - 1));
+    }
+
+    /**
+     * Changes the value held for a pair of points.
+     *
+     * @param i     the index of the first point
+     * @param j     the index of the second point, which must differ from the first
+     * @param value the new value for the pair
+     */
+    public void set(int i, int j, double value) {
+        if (i > j) {
+            set(j, i, value);
+            return;
+        }
+        segments.get(rowSegments[i]).put(rowOffsets[i] + (j - i - 1), value);
+    }
+
+    /**
+     * Copies the values between a point and every later point.
+     *
+     * @param i   the index of the point
+     * @param row filled from the start with the value for each later point in order, at least size - 1 - i long
+     */
+    public void readRow(int i, double[] row) {
+        DoubleBuffer view = segments.get(rowSegments[i]).duplicate();
+        view.position(rowOffsets[i]);
+        view.get(row, 0, size - 1 - i);
+    }
+
+    /**
+     * Replaces the values between a point and every later point.
+     *
+     * @param i   the index of the point
+     * @param row the value for each later point in order, from the start of the array
+     */
+    public void writeRow(int i, double[] row) {
+        DoubleBuffer view = segments.get(rowSegments[i]).duplicate();
+        view.position(rowOffsets[i]);
+        view.put(row, 0, size - 1 - i);
+    }
+
+    /**
+     * Changes every value in the matrix, working through the file from start to end.
+     *
+     * @param conversion turns each value into its new value
+     */
+    public void convert(DoubleUnaryOperator conversion) {
+        double[] row = new double[size];
+        for (int i = 0; i < size - 1; i++) {
+            readRow(i, row);
+            for (int k = 0; k < size - 1 - i; k++) {
+                row[k] = conversion.applyAsDouble(row[k]);
+            }
+            writeRow(i, row);
+        }
+    }
+
+    /**
+     * @return the number of points held by the matrix
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Closes and removes the backing file. The matrix must not be used after it has been closed.
+     *
+     * @throws IOException thrown if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        segments.clear();
+        channel.close();
+        backingFile.delete();
+    }
+
+    private void fillRows(List<DataPoint> points, DistanceAlgorithm distanceAlgorithm) {
+        // early rows hold far more pairs than late ones, so each task fills one of each to even out the work
+        IntStream.range(0, (size + 1) / 2).parallel().forEach(i -> {
+            double[] rowDistances = new double[size];
+            fillRow(i, points, distanceAlgorithm, rowDistances);
+            if (size - 1 - i != i) {
+                fillRow(size - 1 - i, points, distanceAlgorithm, rowDistances);
+            }
+        });
+    }
+
+    private void fillRow(int i, List<DataPoint> points, DistanceAlgorithm distanceAlgorithm, double[] rowDistances) {
+        if (i == size - 1) {
+            return;
+        }
+        distanceAlgorithm.measureComparisonDistances(points.get(i), points.subList(i + 1, size), rowDistances);
+        writeRow(i, rowDistances);
+    }
+
+    /**
+     * Fills the matrix a band of rows at a time with the block engine. Bands are kept small enough that the buffer of
+     * each task stays small however many points there are.
+     *
+     * @param blocks the features of the points prepared for the block engine
+     */
+    private void fillBlocks(DistanceBlocks blocks) {
+        int bandRows = Math.max(1, Math.min(MAX_BAND_ROWS, BAND_PAIRS / Math.max(1, size)));
+        int bandCount = (size + bandRows - 1) / bandRows;
+        IntStream.range(0, (bandCount + 1) / 2).parallel().forEach(band -> {
+            double[] bandDistances = new double[bandRows * size];
+            double[] rowDistances = new double[size];
+            fillBand(band * bandRows, bandRows, blocks, bandDistances, rowDistances);
+            if (bandCount - 1 - band != band) {
+                fillBand((bandCount - 1 - band) * bandRows, bandRows, blocks, bandDistances, rowDistances);
+            }
+        });
+    }
+
+    private void fillBand(int rowStart, int bandRows, DistanceBlocks blocks, double[] bandDistances, double[] rowDistances) {
+        int rowEnd = Math.min(rowStart + bandRows, size);
+        // the band is measured from its first row onwards, which covers every pair above the diagonal
+        int width = size - rowStart;
+        blocks.squaredDistances(rowStart, rowEnd, blocks, rowStart, size, bandDistances, 0, width);
+        for (int i = rowStart; i < rowEnd && i < size - 1; i++) {
+            System.arraycopy(bandDistances, (i - rowStart) * width + (i + 1 - rowStart), rowDistances, 0, size - 1 - i);
+            writeRow(i, rowDistances);
+        }
+    }
+
+    private void mapSegment(long firstEntry, long entryCount) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, firstEntry * Double.BYTES, entryCount * Double.BYTES);
+        segments.add(buffer.order(ByteOrder.nativeOrder()).asDoubleBuffer());
+    }
+}
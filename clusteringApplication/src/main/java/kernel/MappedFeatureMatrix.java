@@ -0,0 +1,172 @@
+package kernel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * Feature matrix which keeps its values outside of the java heap in a memory-mapped temporary file. This allows
+ * datasets larger than the heap to be clustered, as only the pages which are currently in use need to be held in
+ * memory by the operating system.
+ */
+public class MappedFeatureMatrix extends FeatureMatrix {
+    // a single mapping is limited to 2GB, so the file is mapped in segments which always hold a whole number of rows
+    private static final long SEGMENT_BYTES = 1L << 28;
+
+    // both are null when the matrix maps part of an existing file, such as a dataset cache
+    private File backingFile;
+    private FileChannel channel;
+    private ArrayList<DoubleBuffer> segments;
+
+    private int rowsPerSegment;
+    private int rowCount;
+    private int columnCount;
+
+    /**
+     * Creates an empty matrix backed by a new temporary file, the file is removed when the application exits.
+     *
+     * @param columnCount the number of features held in each row
+     * @throws IOException thrown if the temporary file cannot be created
+     */
+    public MappedFeatureMatrix(int columnCount) throws IOException {
+        this(columnCount, 0);
+        backingFile = File.createTempFile("features", ".matrix");
+        backingFile.deleteOnExit();
+        channel = new RandomAccessFile(backingFile, "rw").getChannel();
+    }
+
+    /**
+     * Creates a matrix over rows which have already been written to a file. The rows are mapped straight away and the
+     * matrix cannot grow, so the channel may be closed once this returns.
+     *
+     * @param channel     the channel of the file holding the rows
+     * @param position    the position in the file of the first value
+     * @param rowCount    the number of rows held in the file
+     * @param columnCount the number of features held in each row
+     * @param mode        READ_ONLY for values which are never changed, or PRIVATE so changes stay in memory
+     * @param order       the byte order the values were written in
+     * @return the matrix viewing the rows in the file
+     * @throws IOException thrown if the file cannot be mapped
+     */
+    static MappedFeatureMatrix mapExisting(FileChannel channel, long position, int rowCount, int columnCount,
+                                           FileChannel.MapMode mode, ByteOrder order) throws IOException {
+        MappedFeatureMatrix matrix = new MappedFeatureMatrix(columnCount, rowCount);
+        if (columnCount > 0) {
+            long rowBytes = columnCount * (long) Double.BYTES;
+            for (int firstRow = 0; firstRow < rowCount; firstRow += matrix.rowsPerSegment) {
+                int rows = Math.min(matrix.rowsPerSegment, rowCount - firstRow);
+                MappedByteBuffer buffer = channel.map(mode, position + firstRow * rowBytes, rows * rowBytes);
+                matrix.segments.add(buffer.order(order).asDoubleBuffer());
+            }
+        }
+        return matrix;
+    }
+
+    private MappedFeatureMatrix(int columnCount, int rowCount) {
+        this.columnCount = columnCount;
+        this.rowCount = rowCount;
+        rowsPerSegment = columnCount == 0 ? Integer.MAX_VALUE : (int) Math.max(1, SEGMENT_BYTES / (columnCount * (long) Double.BYTES));
+        segments = new ArrayList<>();
+    }
+
+    @Override
+    public double get(int row, int column) {
+        return segments.get(row / rowsPerSegment).get((row % rowsPerSegment) * columnCount + column);
+    }
+
+    @Override
+    public void set(int row, int column, double value) {
+        segments.get(row / rowsPerSegment).put((row % rowsPerSegment) * columnCount + column, value);
+    }
+
+    /**
+     * Copies every value of a row, reading the mapped file in one go rather than a value at a time.
+     *
+     * @param row    the row to copy
+     * @param values filled with the value of each column
+     */
+    public void readRow(int row, double[] values) {
+        if (columnCount == 0) {
+            return;
+        }
+        DoubleBuffer view = segments.get(row / rowsPerSegment).duplicate();
+        view.position((row % rowsPerSegment) * columnCount);
+        view.get(values, 0, columnCount);
+    }
+
+    @Override
+    public int addRow(double[] values) {
+        if (channel == null) {
+            throw new IllegalStateException("Rows cannot be added to a matrix mapped from an existing file");
+        }
+        if (columnCount > 0) {
+            int segmentIndex = rowCount / rowsPerSegment;
+            if (segmentIndex == segments.size()) {
+                mapSegment(segmentIndex);
+            }
+            DoubleBuffer segment = segments.get(segmentIndex);
+            int offset = (rowCount % rowsPerSegment) * columnCount;
+            for (int i = 0; i < columnCount; i++) {
+                segment.put(offset + i, values[i]);
+            }
+        }
+        return rowCount++;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public FeatureMatrix copy() {
+        try {
+            MappedFeatureMatrix copy = new MappedFeatureMatrix(columnCount);
+            double[] row = new double[columnCount];
+            for (int i = 0; i < rowCount; i++) {
+                for (int j = 0; j < columnCount; j++) {
+                    row[j] = get(i, j);
+                }
+                copy.addRow(row);
+            }
+            return copy;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes and removes the backing file. The matrix must not be used after it has been closed.
+     *
+     * @throws IOException thrown if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        segments.clear();
+        if (channel != null) {
+            channel.close();
+            backingFile.delete();
+        }
+    }
+
+    private void mapSegment(int segmentIndex) {
+        long segmentBytes = (long) rowsPerSegment * columnCount * Double.BYTES;
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, segmentIndex * segmentBytes, segmentBytes);
+            segments.add(buffer.order(ByteOrder.nativeOrder()).asDoubleBuffer());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map feature storage file", e);
+        }
+    }
+}
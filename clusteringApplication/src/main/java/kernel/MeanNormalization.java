@@ -1,6 +1,7 @@
 package kernel;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class MeanNormalization {
     /**
@@ -9,34 +10,70 @@ public class MeanNormalization {
      * @return the scaled data
      */
     public ArrayList<DataPoint> scaleDataset(ArrayList<DataPoint> data){
-        // for each numerical feature
-        for(int i = 0; i < data.get(0).sizeNumerical(); i++){
-            double minFeatureValue = data.get(0).getNumerical(i);
-            double maxFeatureValue = data.get(0).getNumerical(i);
-            double averageValue = 0;
-
-            // for each data point
-            for(int j = 0; j < data.size(); j++){
-                averageValue += data.get(j).getNumerical(i);
-
-                if(data.get(j).getNumerical(i) < minFeatureValue){
-                    minFeatureValue = data.get(j).getNumerical(i);
-                }
-                if (data.get(j).getNumerical(i) > maxFeatureValue){
-                    maxFeatureValue = data.get(j).getNumerical(i);
-                }
+        if (data.isEmpty()) {
+            return data;
+        }
+
+        // a whole dataset which has already been scaled is left alone, so clustering the same data again gives the
+        // same result and anything worked out from the scaled features can be reused
+        Dataset dataset = getWholeDataset(data);
+        if (dataset != null && dataset.isScaled()) {
+            return data;
+        }
+
+        FeatureStatistics statistics = new FeatureStatistics();
+        statistics.add(data);
+        scaleBatch(data, statistics);
+        if (dataset != null) {
+            dataset.markScaled();
+        }
+        return data;
+    }
+
+    /**
+     * @param data the data that is to be scaled
+     * @return the dataset the data points belong to if they are every row of a single dataset, otherwise null
+     */
+    private Dataset getWholeDataset(List<DataPoint> data) {
+        Dataset dataset = data.get(0).getDataset();
+        if (dataset.size() != data.size()) {
+            return null;
+        }
+        boolean[] seen = new boolean[data.size()];
+        for (DataPoint dp : data) {
+            if (dp.getDataset() != dataset || seen[dp.getRow()]) {
+                return null;
             }
-            //calculate mean
-            averageValue = averageValue / data.size();
+            seen[dp.getRow()] = true;
+        }
+        return dataset;
+    }
 
-            // normalise feature for every datapoint
-            for(int j = 0; j < data.size(); j++){
-                double x = data.get(j).getNumerical(i);
+    /**
+     * Scales a group of data points using statistics which have already been collected, this allows a database which
+     * is read in batches to be scaled one batch at a time.
+     *
+     * @param data       the data that is to be scaled
+     * @param statistics the statistics of the whole database
+     */
+    public void scaleBatch(List<DataPoint> data, FeatureStatistics statistics) {
+        int featureCount = statistics.getFeatureCount();
+        double[] averageValues = new double[featureCount];
+        double[] featureRanges = new double[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            averageValues[i] = statistics.getMean(i);
+            featureRanges[i] = statistics.getMax(i) - statistics.getMin(i);
+        }
 
-                x = (x - averageValue) / (maxFeatureValue - minFeatureValue);
-                data.get(j).setNumerical(i, x);
+        // normalise every feature of every datapoint
+        for (int j = 0; j < data.size(); j++) {
+            DataPoint dp = data.get(j);
+            for (int i = 0; i < featureCount; i++) {
+                double x = dp.getNumericalValue(i);
+
+                x = (x - averageValues[i]) / featureRanges[i];
+                dp.setNumerical(i, x);
             }
         }
-        return data;
     }
 }
@@ -0,0 +1,217 @@
+package kernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * The full history of a hierarchical clustering, kept as a few arrays with one entry per merge. Clusters are numbered
+ * so that each data point is the cluster of its own index, and the cluster made by merge k is numbered after every
+ * data point, at the number of data points plus k.
+ * <p>
+ * The clusters at any level of the hierarchy can be taken from the tree in O(n) time, so once a tree is built the
+ * number of clusters can be changed without clustering again.
+ */
+public class MergeTree {
+    private int pointCount;
+    private int[] left;
+    private int[] right;
+    private double[] heights;
+    private int[] sizes;
+
+    // the smallest data point index in the cluster made by each merge
+    private int[] firstPoints;
+
+    private MergeTree(int pointCount, int mergeCount) {
+        this.pointCount = pointCount;
+        left = new int[mergeCount];
+        right = new int[mergeCount];
+        heights = new double[mergeCount];
+        sizes = new int[mergeCount];
+        firstPoints = new int[mergeCount];
+    }
+
+    /**
+     * Builds the tree from a list of merges, each given by a data point from either of the clusters it joins.
+     *
+     * @param pointCount the number of data points clustered
+     * @param pointsA    a data point from the first cluster of each merge
+     * @param pointsB    a data point from the second cluster of each merge
+     * @param heights    the distance between the clusters of each merge
+     * @return the tree holding the merges in the order given
+     */
+    public static MergeTree fromMerges(int pointCount, int[] pointsA, int[] pointsB, double[] heights) {
+        MergeTree tree = new MergeTree(pointCount, heights.length);
+        // the cluster currently holding each data point is found by following parents up to a root data point
+        int[] parent = new int[pointCount];
+        int[] clusterIds = new int[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            parent[i] = i;
+            clusterIds[i] = i;
+        }
+
+        for (int k = 0; k < heights.length; k++) {
+            int rootA = findRoot(parent, pointsA[k]);
+            int rootB = findRoot(parent, pointsB[k]);
+            if (rootA == rootB) {
+                throw new IllegalArgumentException("Merge " + k + " joins a cluster with itself");
+            }
+            int idA = clusterIds[rootA];
+            int idB = clusterIds[rootB];
+            tree.left[k] = Math.min(idA, idB);
+            tree.right[k] = Math.max(idA, idB);
+            tree.heights[k] = heights[k];
+            tree.sizes[k] = tree.getClusterSize(idA) + tree.getClusterSize(idB);
+            tree.firstPoints[k] = Math.min(tree.getFirstPoint(idA), tree.getFirstPoint(idB));
+
+            parent[rootB] = rootA;
+            clusterIds[rootA] = pointCount + k;
+        }
+        return tree;
+    }
+
+    /**
+     * Gives the clusters left after the first few merges. Clusters are ordered by their first data point and the data
+     * points of the later cluster of each merge are added to the end of the earlier one, which is the order the
+     * agglomerative algorithm gives.
+     *
+     * @param points the data points which were clustered, in the order they were numbered
+     * @param rounds the number of merges to make
+     * @return the clusters left after the merges
+     */
+    public Cluster[] cut(List<DataPoint> points, int rounds) {
+        int mergesMade = Math.min(rounds, getMergeCount());
+        // each cluster is a linked list of data point indexes starting at its first data point
+        int[] next = new int[pointCount];
+        int[] last = new int[pointCount];
+        boolean[] merged = new boolean[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            next[i] = -1;
+            last[i] = i;
+        }
+
+        for (int k = 0; k < mergesMade; k++) {
+            int firstA = getFirstPoint(left[k]);
+            int firstB = getFirstPoint(right[k]);
+            int mergeTo = Math.min(firstA, firstB);
+            int mergeFrom = Math.max(firstA, firstB);
+
+            next[last[mergeTo]] = mergeFrom;
+            last[mergeTo] = last[mergeFrom];
+            merged[mergeFrom] = true;
+        }
+
+        ArrayList<Cluster> clusters = new ArrayList<>();
+        for (int i = 0; i < pointCount; i++) {
+            if (!merged[i]) {
+                Cluster cluster = new Cluster();
+                for (int member = i; member != -1; member = next[member]) {
+                    cluster.add(points.get(member));
+                }
+                clusters.add(cluster);
+            }
+        }
+        return clusters.toArray(new Cluster[0]);
+    }
+
+    /**
+     * Gives the clusters left once the merges have brought the data points down to a number of clusters.
+     *
+     * @param points       the data points which were clustered, in the order they were numbered
+     * @param clusterCount the number of clusters wanted
+     * @return the clusters, or a single cluster of every point if fewer than one are asked for
+     */
+    public Cluster[] cutToCount(List<DataPoint> points, int clusterCount) {
+        return cut(points, pointCount - Math.max(1, clusterCount));
+    }
+
+    /**
+     * Gives the clusters left after every merge up to a distance. Merges are made in order until one further apart
+     * than the distance is reached, as centroid linkage can make a merge lower than the one before it.
+     *
+     * @param points the data points which were clustered, in the order they were numbered
+     * @param height the furthest apart two clusters can be and still be merged
+     * @return the clusters left after the merges
+     */
+    public Cluster[] cutAtHeight(List<DataPoint> points, double height) {
+        int rounds = 0;
+        while (rounds < heights.length && heights[rounds] <= height) {
+            rounds++;
+        }
+        return cut(points, rounds);
+    }
+
+    /**
+     * Changes the height of every merge, for trees built from comparison distances rather than distances.
+     *
+     * @param conversion turns the height of a merge into its new height
+     */
+    public void convertHeights(DoubleUnaryOperator conversion) {
+        for (int k = 0; k < heights.length; k++) {
+            heights[k] = conversion.applyAsDouble(heights[k]);
+        }
+    }
+
+    /**
+     * @return the number of data points clustered
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * @return the number of merges in the tree
+     */
+    public int getMergeCount() {
+        return heights.length;
+    }
+
+    /**
+     * @param k the merge
+     * @return the smaller number of the two clusters joined by the merge
+     */
+    public int getLeft(int k) {
+        return left[k];
+    }
+
+    /**
+     * @param k the merge
+     * @return the larger number of the two clusters joined by the merge
+     */
+    public int getRight(int k) {
+        return right[k];
+    }
+
+    /**
+     * @param k the merge
+     * @return the distance between the two clusters joined by the merge
+     */
+    public double getHeight(int k) {
+        return heights[k];
+    }
+
+    /**
+     * @param k the merge
+     * @return the number of data points in the cluster made by the merge
+     */
+    public int getSize(int k) {
+        return sizes[k];
+    }
+
+    private int getClusterSize(int id) {
+        return id < pointCount ? 1 : sizes[id - pointCount];
+    }
+
+    private int getFirstPoint(int id) {
+        return id < pointCount ? id : firstPoints[id - pointCount];
+    }
+
+    private static int findRoot(int[] parent, int i) {
+        while (parent[i] != i) {
+            // point part of the way up the tree on the way, which keeps the paths short
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
@@ -0,0 +1,169 @@
+package kernel;
+
+import spi.DistanceAlgorithm;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps the merge trees of recently clustered datasets, so trying a different number of rounds only needs the tree to
+ * be cut again rather than the whole hierarchy to be rebuilt. A tree only holds a few numbers for each data point, so a
+ * fixed number of the most recently used trees are kept. Like the distance matrix cache, only trees for every row of a
+ * dataset are kept, and a tree is replaced once the features of its dataset change. Datasets are held weakly, so the
+ * trees of a dataset are removed once the dataset is no longer used.
+ */
+public class MergeTreeCache {
+    private static final MergeTreeCache SHARED = new MergeTreeCache(16);
+
+    private int capacity;
+
+    // kept in access order so the first entry is always the least recently used
+    private LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // the keys of datasets which have been garbage collected
+    private ReferenceQueue<Dataset> releasedDatasets = new ReferenceQueue<>();
+
+    /**
+     * @param capacity the largest number of trees kept
+     */
+    public MergeTreeCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the cache shared by every algorithm
+     */
+    public static MergeTreeCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the tree built for a group of data points by a method, if it has been cached.
+     *
+     * @param points            the points which were clustered
+     * @param distanceAlgorithm the algorithm used to measure the points
+     * @param method            the clustering method and any settings other than the number of rounds
+     * @return the cached tree, or null if there is none for the current features of the points
+     */
+    public synchronized MergeTree get(List<DataPoint> points, DistanceAlgorithm distanceAlgorithm, String method) {
+        Dataset dataset = DistanceMatrix.getRowOrderedDataset(points);
+        if (dataset == null) {
+            return null;
+        }
+        removeReleased();
+        Key key = new Key(dataset, distanceAlgorithm, method, releasedDatasets);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.version != dataset.getVersion()) {
+            // the features have changed since the tree was built
+            entries.remove(key);
+            return null;
+        }
+        return entry.tree;
+    }
+
+    /**
+     * Keeps a tree, if the points are every row of a dataset.
+     *
+     * @param points            the points which were clustered
+     * @param distanceAlgorithm the algorithm used to measure the points
+     * @param method            the clustering method and any settings other than the number of rounds
+     * @param tree              the tree built for the points
+     */
+    public synchronized void put(List<DataPoint> points, DistanceAlgorithm distanceAlgorithm, String method, MergeTree tree) {
+        Dataset dataset = DistanceMatrix.getRowOrderedDataset(points);
+        if (dataset == null) {
+            return;
+        }
+        removeReleased();
+        entries.put(new Key(dataset, distanceAlgorithm, method, releasedDatasets), new Entry(tree, dataset.getVersion()));
+
+        // remove the least recently used trees once there are too many
+        Iterator<Key> iterator = entries.keySet().iterator();
+        while (entries.size() > capacity && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Removes every cached tree.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of trees in the cache
+     */
+    public synchronized int size() {
+        removeReleased();
+        return entries.size();
+    }
+
+    /**
+     * Removes the trees of datasets which have been garbage collected.
+     */
+    private void removeReleased() {
+        Object released;
+        while ((released = releasedDatasets.poll()) != null) {
+            entries.remove(released);
+        }
+    }
+
+    /**
+     * Identifies a dataset, a distance algorithm and a clustering method. Datasets are compared by identity and held
+     * weakly, while distance algorithms are compared by type and name as a new instance of each plugin is created
+     * whenever the plugins are loaded. Once its dataset has been garbage collected a key is only equal to itself, so it
+     * can still be removed.
+     */
+    private static class Key extends WeakReference<Dataset> {
+        private int datasetHash;
+        private Class<?> algorithmType;
+        private String algorithmName;
+        private String method;
+
+        private Key(Dataset dataset, DistanceAlgorithm distanceAlgorithm, String method, ReferenceQueue<Dataset> queue) {
+            super(dataset, queue);
+            datasetHash = System.identityHashCode(dataset);
+            algorithmType = distanceAlgorithm.getClass();
+            algorithmName = distanceAlgorithm.getName();
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            Dataset dataset = get();
+            return dataset != null && dataset == other.get() && algorithmType == other.algorithmType
+                    && Objects.equals(algorithmName, other.algorithmName) && Objects.equals(method, other.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return (datasetHash * 31 + algorithmType.hashCode()) * 31 + Objects.hashCode(method);
+        }
+    }
+
+    private static class Entry {
+        private MergeTree tree;
+        private int version;
+
+        private Entry(MergeTree tree, int version) {
+            this.tree = tree;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package kernel;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Hierarchical clustering over a distance matrix, which measures nothing after the matrix is filled. When two clusters
+ * are merged the distances from the new cluster are worked out from the old distances with the formula of the
+ * linkage, and the row of one of the old clusters is reused for it.
+ * <p>
+ * The closest pair is found by following chains of nearest neighbours: starting at any cluster, the nearest neighbour
+ * of the end of the chain is added until two clusters are each other's nearest neighbour, and those two are merged.
+ * For every linkage except centroid linkage such a pair would also be merged by always merging the closest pair, so the
+ * whole hierarchy is found in O(n^2) time. Merges are not made in order of distance, so they are sorted afterwards.
+ * Centroid linkage instead keeps the nearest neighbour of each cluster and always merges the closest pair, which is
+ * usually close to O(n^2) time but can be O(n^3).
+ */
+public class NearestNeighborChain {
+
+    private NearestNeighborChain() {
+    }
+
+    /**
+     * Clusters the data points of a distance matrix until one cluster is left.
+     *
+     * @param distances  the distances between every pair of data points above the diagonal, one row after another in
+     *                   the layout of a {@link DistanceMatrix}, squared for linkages which use squared distances. The
+     *                   array is overwritten with the distances between clusters.
+     * @param pointCount the number of data points
+     * @param linkage    how the distance between clusters is worked out
+     * @return the merges in the order they are made
+     */
+    public static MergeTree cluster(double[] distances, int pointCount, Linkage linkage) {
+        int[] weights = new int[pointCount];
+        Arrays.fill(weights, 1);
+        return cluster(distances, weights, linkage);
+    }
+
+    /**
+     * Clusters rows which each stand for a group of data points until one cluster is left. The number of data points
+     * in each row is used as its size by the linkage formulas, so the starting distances should already be the
+     * distances between the groups.
+     *
+     * @param distances the distances between every pair of rows above the diagonal, one row after another in the
+     *                  layout of a {@link DistanceMatrix}, squared for linkages which use squared distances. The array
+     *                  is overwritten with the distances between clusters.
+     * @param weights   the number of data points each row stands for
+     * @param linkage   how the distance between clusters is worked out
+     * @return the merges in the order they are made
+     */
+    public static MergeTree cluster(double[] distances, int[] weights, Linkage linkage) {
+        Merges merges = new Merges(distances, weights, linkage);
+        if (linkage.isReducible()) {
+            merges.followChains();
+            merges.sortByHeight();
+        } else {
+            merges.mergeClosestPairs();
+        }
+        return merges.toTree();
+    }
+
+    /**
+     * Clusters the data points of a distance matrix by always merging the closest pair of clusters, with ties going to
+     * the pair with the earliest first data points. This gives exactly the merges of comparing every pair of clusters
+     * each round, even when distances tie, but can take up to O(n^3) time.
+     *
+     * @param distances  the distances between every pair of data points above the diagonal, one row after another in
+     *                   the layout of a {@link DistanceMatrix}, squared for linkages which use squared distances. The
+     *                   array is overwritten with the distances between clusters.
+     * @param pointCount the number of data points
+     * @param linkage    how the distance between clusters is worked out
+     * @return the merges in the order they are made
+     */
+    public static MergeTree mergeClosestPairs(double[] distances, int pointCount, Linkage linkage) {
+        int[] weights = new int[pointCount];
+        Arrays.fill(weights, 1);
+        Merges merges = new Merges(distances, weights, linkage);
+        merges.mergeClosestPairs();
+        return merges.toTree();
+    }
+
+    /**
+     * Clusters the data points of a distance matrix held on disk by always merging the closest pair of clusters, giving
+     * the same merges as {@link #mergeClosestPairs(double[], int, Linkage)}. Only the nearest later cluster of each
+     * row is kept in memory, and each merge works through the other clusters in row order so the file is read from
+     * start to end rather than jumping between pages.
+     *
+     * @param distances the distances between every pair of data points, squared for linkages which use squared
+     *                  distances. The matrix is overwritten with the distances between clusters.
+     * @param linkage   how the distance between clusters is worked out
+     * @return the merges in the order they are made
+     */
+    public static MergeTree mergeClosestPairs(MappedDistanceMatrix distances, Linkage linkage) {
+        MappedMerges merges = new MappedMerges(distances, linkage);
+        merges.mergeClosestPairs();
+        return merges.toTree();
+    }
+
+    /**
+     * The state of a clustering while the merges are made. Each cluster lives in the row of its first data point.
+     */
+    private static class Merges {
+        private double[] distances;
+        private int size;
+        private Linkage linkage;
+
+        private int[] clusterSizes;
+        private boolean[] merged;
+
+        private int mergeCount;
+        private int[] pointsA;
+        private int[] pointsB;
+        private double[] heights;
+
+        private Merges(double[] distances, int[] weights, Linkage linkage) {
+            int size = weights.length;
+            if (distances.length != (long) size * (size - 1) / 2) {
+                throw new IllegalArgumentException("The distances do not hold every pair of " + size + " points");
+            }
+            this.distances = distances;
+            this.size = size;
+            this.linkage = linkage;
+            clusterSizes = weights.clone();
+            merged = new boolean[size];
+
+            int totalMerges = Math.max(0, size - 1);
+            pointsA = new int[totalMerges];
+            pointsB = new int[totalMerges];
+            heights = new double[totalMerges];
+        }
+
+        private void followChains() {
+            int[] chain = new int[size];
+            int chainLength = 0;
+            int chainStart = 0;
+
+            while (mergeCount < heights.length) {
+                if (chainLength == 0) {
+                    while (merged[chainStart]) {
+                        chainStart++;
+                    }
+                    chain[chainLength++] = chainStart;
+                }
+
+                int end = chain[chainLength - 1];
+                // the cluster before the end of the chain is kept on a tie, otherwise chains could go round in circles
+                int previous = chainLength > 1 ? chain[chainLength - 2] : -1;
+                int nearest = previous;
+                double nearestDistance = previous >= 0 ? get(end, previous) : Double.POSITIVE_INFINITY;
+                for (int k = 0; k < size; k++) {
+                    if (k == end || merged[k]) {
+                        continue;
+                    }
+                    double distance = get(end, k);
+                    if (nearest < 0 || distance < nearestDistance) {
+                        nearest = k;
+                        nearestDistance = distance;
+                    }
+                }
+
+                if (nearest == previous) {
+                    chainLength -= 2;
+                    merge(end, previous, nearestDistance);
+                } else {
+                    chain[chainLength++] = nearest;
+                }
+            }
+        }
+
+        private void mergeClosestPairs() {
+            // the nearest cluster in a later row to each cluster
+            int[] nearest = new int[size];
+            double[] nearestDistances = new double[size];
+            for (int i = 0; i < size; i++) {
+                findNearest(i, nearest, nearestDistances);
+            }
+
+            while (mergeCount < heights.length) {
+                // ties go to the earliest pair, as they do when every pair is compared
+                int first = -1;
+                for (int i = 0; i < size; i++) {
+                    if (!merged[i] && nearest[i] >= 0 && (first < 0 || nearestDistances[i] < nearestDistances[first])) {
+                        first = i;
+                    }
+                }
+                int second = nearest[first];
+                merge(first, second, nearestDistances[first]);
+
+                findNearest(first, nearest, nearestDistances);
+                for (int i = 0; i < size; i++) {
+                    if (merged[i] || i == first) {
+                        continue;
+                    }
+                    if (nearest[i] == first || nearest[i] == second) {
+                        // the distance to the nearest cluster may have grown or the cluster may be gone
+                        findNearest(i, nearest, nearestDistances);
+                    } else if (i < first) {
+                        double distance = get(i, first);
+                        if (distance < nearestDistances[i] || (distance == nearestDistances[i] && first < nearest[i])) {
+                            nearest[i] = first;
+                            nearestDistances[i] = distance;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void findNearest(int i, int[] nearest, double[] nearestDistances) {
+            nearest[i] = -1;
+            nearestDistances[i] = Double.POSITIVE_INFINITY;
+            for (int k = i + 1; k < size; k++) {
+                if (!merged[k] && (nearest[i] < 0 || distances[index(i, k)] < nearestDistances[i])) {
+                    nearest[i] = k;
+                    nearestDistances[i] = distances[index(i, k)];
+                }
+            }
+        }
+
+        /**
+         * Merges two clusters into the row of the one with the earlier first data point and works out the distances
+         * from the merged cluster to every other cluster.
+         */
+        private void merge(int cluster1, int cluster2, double height) {
+            int mergeTo = Math.min(cluster1, cluster2);
+            int mergeFrom = Math.max(cluster1, cluster2);
+            pointsA[mergeCount] = mergeTo;
+            pointsB[mergeCount] = mergeFrom;
+            heights[mergeCount] = height;
+            mergeCount++;
+
+            int sizeTo = clusterSizes[mergeTo];
+            int sizeFrom = clusterSizes[mergeFrom];
+            for (int k = 0; k < size; k++) {
+                if (k == mergeTo || k == mergeFrom || merged[k]) {
+                    continue;
+                }
+                int toIndex = mergeTo < k ? index(mergeTo, k) : index(k, mergeTo);
+                distances[toIndex] = linkage.update(distances[toIndex], get(mergeFrom, k), height,
+                        sizeTo, sizeFrom, clusterSizes[k]);
+            }
+            clusterSizes[mergeTo] = sizeTo + sizeFrom;
+            merged[mergeFrom] = true;
+        }
+
+        /**
+         * Puts the merges in order of height, keeping the order they were made in for equal heights.
+         */
+        private void sortByHeight() {
+            Integer[] order = IntStream.range(0, mergeCount).boxed().toArray(Integer[]::new);
+            Arrays.sort(order, (a, b) -> Double.compare(heights[a], heights[b]));
+
+            int[] sortedA = new int[mergeCount];
+            int[] sortedB = new int[mergeCount];
+            double[] sortedHeights = new double[mergeCount];
+            for (int k = 0; k < mergeCount; k++) {
+                sortedA[k] = pointsA[order[k]];
+                sortedB[k] = pointsB[order[k]];
+                sortedHeights[k] = heights[order[k]];
+            }
+            pointsA = sortedA;
+            pointsB = sortedB;
+            heights = sortedHeights;
+        }
+
+        private MergeTree toTree() {
+            if (linkage.usesSquaredDistances()) {
+                for (int k = 0; k < heights.length; k++) {
+                    heights[k] = Math.sqrt(heights[k]);
+                }
+            }
+            return MergeTree.fromMerges(size, pointsA, pointsB, heights);
+        }
+
+        private double get(int i, int j) {
+            return i < j ? distances[index(i, j)] : distances[index(j, i)];
+        }
+
+        private int index(int i, int j) {
+            // rows before i hold (size - 1) + (size - 2) + ... + (size - i) pairs
+            return (int) ((long) i * (2L * size - i - 1) / 2) + (j - i - 1);
+        }
+    }
+
+    /**
+     * The state of a clustering over a distance matrix held on disk. Each cluster lives in the row of its first data
+     * point, and only a few rows are copied into memory at a time.
+     */
+    private static class MappedMerges {
+        private MappedDistanceMatrix distances;
+        private int size;
+        private Linkage linkage;
+
+        private int[] clusterSizes;
+        private boolean[] merged;
+
+        // the nearest cluster in a later row to each cluster
+        private int[] nearest;
+        private double[] nearestDistances;
+
+        // the rows of the two clusters being merged, and a row being searched for its nearest cluster
+        private double[] rowTo;
+        private double[] rowFrom;
+        private double[] searchRow;
+
+        private int mergeCount;
+        private int[] pointsA;
+        private int[] pointsB;
+        private double[] heights;
+
+        private MappedMerges(MappedDistanceMatrix distances, Linkage linkage) {
+            this.distances = distances;
+            this.linkage = linkage;
+            size = distances.size();
+            clusterSizes = new int[size];
+            Arrays.fill(clusterSizes, 1);
+            merged = new boolean[size];
+            nearest = new int[size];
+            nearestDistances = new double[size];
+            rowTo = new double[size];
+            rowFrom = new double[size];
+            searchRow = new double[size];
+
+            int totalMerges = Math.max(0, size - 1);
+            pointsA = new int[totalMerges];
+            pointsB = new int[totalMerges];
+            heights = new double[totalMerges];
+        }
+
+        private void mergeClosestPairs() {
+            for (int i = 0; i < size; i++) {
+                distances.readRow(i, searchRow);
+                findNearest(i, searchRow);
+            }
+
+            while (mergeCount < heights.length) {
+                // ties go to the earliest pair, as they do when every pair is compared
+                int first = -1;
+                for (int i = 0; i < size; i++) {
+                    if (!merged[i] && nearest[i] >= 0 && (first < 0 || nearestDistances[i] < nearestDistances[first])) {
+                        first = i;
+                    }
+                }
+                merge(first, nearest[first], nearestDistances[first]);
+            }
+        }
+
+        /**
+         * Merges a cluster into the row of an earlier cluster. The distances from the merged cluster and the nearest
+         * cluster of every row they affect are worked out in a single pass through the other clusters in row order.
+         */
+        private void merge(int mergeTo, int mergeFrom, double height) {
+            pointsA[mergeCount] = mergeTo;
+            pointsB[mergeCount] = mergeFrom;
+            heights[mergeCount] = height;
+            mergeCount++;
+            merged[mergeFrom] = true;
+
+            int sizeTo = clusterSizes[mergeTo];
+            int sizeFrom = clusterSizes[mergeFrom];
+            distances.readRow(mergeTo, rowTo);
+            distances.readRow(mergeFrom, rowFrom);
+            for (int k = 0; k < size; k++) {
+                if (k == mergeTo || merged[k]) {
+                    continue;
+                }
+                double distanceTo = k < mergeTo ? distances.get(k, mergeTo) : rowTo[k - mergeTo - 1];
+                double distanceFrom = k < mergeFrom ? distances.get(k, mergeFrom) : rowFrom[k - mergeFrom - 1];
+                double distance = linkage.update(distanceTo, distanceFrom, height, sizeTo, sizeFrom, clusterSizes[k]);
+
+                if (k > mergeTo) {
+                    rowTo[k - mergeTo - 1] = distance;
+                    if (nearest[k] == mergeFrom) {
+                        // the cluster is gone, the rows of later clusters are unchanged by the merge
+                        distances.readRow(k, searchRow);
+                        findNearest(k, searchRow);
+                    }
+                    continue;
+                }
+
+                distances.set(k, mergeTo, distance);
+                if (nearest[k] == mergeTo || nearest[k] == mergeFrom) {
+                    // the distance to the nearest cluster may have grown or the cluster may be gone
+                    distances.readRow(k, searchRow);
+                    findNearest(k, searchRow);
+                } else if (distance < nearestDistances[k] || (distance == nearestDistances[k] && mergeTo < nearest[k])) {
+                    nearest[k] = mergeTo;
+                    nearestDistances[k] = distance;
+                }
+            }
+            distances.writeRow(mergeTo, rowTo);
+            clusterSizes[mergeTo] = sizeTo + sizeFrom;
+            findNearest(mergeTo, rowTo);
+        }
+
+        private void findNearest(int i, double[] row) {
+            nearest[i] = -1;
+            nearestDistances[i] = Double.POSITIVE_INFINITY;
+            for (int k = i + 1; k < size; k++) {
+                if (!merged[k] && (nearest[i] < 0 || row[k - i - 1] < nearestDistances[i])) {
+                    nearest[i] = k;
+                    nearestDistances[i] = row[k - i - 1];
+                }
+            }
+        }
+
+        private MergeTree toTree() {
+            if (linkage.usesSquaredDistances()) {
+                for (int k = 0; k < heights.length; k++) {
+                    heights[k] = Math.sqrt(heights[k]);
+                }
+            }
+            return MergeTree.fromMerges(size, pointsA, pointsB, heights);
+        }
+    }
+}
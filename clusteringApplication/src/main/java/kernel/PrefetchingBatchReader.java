@@ -0,0 +1,80 @@
+package kernel;
+
+import spi.BatchReader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Wraps a batch reader so that the next batch is read on a background thread while the current batch is being used.
+ * Only one batch is read ahead, so no more than two batches are held at once.
+ */
+public class PrefetchingBatchReader implements BatchReader {
+    private BatchReader reader;
+    private ExecutorService executor;
+    private Future<ArrayList<DataPoint>> nextBatch;
+
+    /**
+     * Starts reading the first batch straight away.
+     *
+     * @param reader the reader which is used on the background thread
+     */
+    public PrefetchingBatchReader(BatchReader reader) {
+        this.reader = reader;
+        executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "batch-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        nextBatch = executor.submit(reader::nextBatch);
+    }
+
+    @Override
+    public ArrayList<DataPoint> nextBatch() throws IOException {
+        if (nextBatch == null) {
+            return null;
+        }
+        ArrayList<DataPoint> batch = await(nextBatch);
+        if (batch == null) {
+            nextBatch = null;
+        } else {
+            nextBatch = executor.submit(reader::nextBatch);
+        }
+        return batch;
+    }
+
+    /**
+     * Closes the wrapped reader once any batch which is still being read has finished.
+     *
+     * @throws IOException thrown if the wrapped reader cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        nextBatch = null;
+        Future<Object> closed = executor.submit(() -> {
+            reader.close();
+            return null;
+        });
+        executor.shutdown();
+        await(closed);
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading the database was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to read the database", e.getCause());
+        }
+    }
+}
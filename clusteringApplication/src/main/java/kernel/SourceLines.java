@@ -0,0 +1,123 @@
+package kernel;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Remembers where the line of each row starts in the database file rather than holding its text. A line is read back
+ * from the file whenever it is needed, which is only when results are displayed or exported.
+ */
+public class SourceLines implements IntFunction<String>, Closeable {
+    private File source;
+    private FileChannel channel;
+    private boolean closed;
+
+    private long[] lineStarts;
+    private int[] lineLengths;
+    private int lineCount;
+
+    /**
+     * @param source the database file the lines are read from
+     */
+    public SourceLines(File source) {
+        this.source = source;
+        lineStarts = new long[16];
+        lineLengths = new int[16];
+    }
+
+    /**
+     * Adds the position of the line of a new row.
+     *
+     * @param lineStart  the position of the first byte of the line in the file
+     * @param lineLength the number of bytes in the line, not including the line ending
+     */
+    public void add(long lineStart, int lineLength) {
+        if (lineCount == lineStarts.length) {
+            int capacity = lineCount + (lineCount >> 1) + 1;
+            lineStarts = Arrays.copyOf(lineStarts, capacity);
+            lineLengths = Arrays.copyOf(lineLengths, capacity);
+        }
+        lineStarts[lineCount] = lineStart;
+        lineLengths[lineCount++] = lineLength;
+    }
+
+    /**
+     * Reads the line of a row back from the database file.
+     *
+     * @param row the row whose line is needed
+     * @return the text of the line
+     */
+    @Override
+    public String apply(int row) {
+        ByteBuffer line = ByteBuffer.allocate(lineLengths[row]);
+        try {
+            try {
+                readFully(line, lineStarts[row]);
+            } catch (ClosedChannelException e) {
+                // the channel is closed if any thread reading it is interrupted, so it is opened again unless that was us
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                line.clear();
+                readFully(line, lineStarts[row]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read line " + row + " of " + source.getName(), e);
+        }
+        return new String(line.array(), 0, line.position(), Charset.defaultCharset());
+    }
+
+    /**
+     * Releases the spare capacity left over from adding lines.
+     */
+    public void trimToSize() {
+        lineStarts = Arrays.copyOf(lineStarts, Math.max(1, lineCount));
+        lineLengths = Arrays.copyOf(lineLengths, Math.max(1, lineCount));
+    }
+
+    public int size() {
+        return lineCount;
+    }
+
+    private void readFully(ByteBuffer line, long position) throws IOException {
+        FileChannel fileChannel = openChannel();
+        while (line.hasRemaining()) {
+            int read = fileChannel.read(line, position + line.position());
+            if (read < 0) {
+                throw new IOException(source.getName() + " has changed since it was read");
+            }
+        }
+    }
+
+    /**
+     * Closes the database file, after which no more lines can be read.
+     *
+     * @throws IOException thrown if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private synchronized FileChannel openChannel() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+        }
+        return channel;
+    }
+}
@@ -4,19 +4,39 @@ import com.google.auto.service.AutoService;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
 import kernel.Cluster;
+import kernel.DistanceMatrix;
+import kernel.DistanceMatrixCache;
+import kernel.Linkage;
+import kernel.MappedDistanceMatrix;
 import kernel.MeanNormalization;
+import kernel.MergeTree;
+import kernel.MergeTreeCache;
+import kernel.NearestNeighborChain;
 import spi.ClusterAlgorithm;
 import kernel.DataPoint;
 import spi.DistanceAlgorithm;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The representation of the Agglomerative clustering algorithm.
  */
 @AutoService(ClusterAlgorithm.class)
 public class AgglomerativeAlgorithm implements ClusterAlgorithm {
+    // searches over fewer pairs of data points than this stay on one thread
+    private static final long PARALLEL_MIN_PAIRS = 1L << 15;
+    private static final int CHUNKS_PER_THREAD = 4;
+
     private int roundLimit;
+    private Linkage linkage = Linkage.SINGLE;
+    private boolean distancesOnDisk;
 
     /**
      * The method which implements the bulk of the clustering algorithm.
@@ -28,11 +48,18 @@ public class AgglomerativeAlgorithm implements ClusterAlgorithm {
     public Cluster[] clusterData(ArrayList<DataPoint> inputData, DistanceAlgorithm distanceAlgorithm) {
         MeanNormalization scaler = new MeanNormalization();
         inputData = scaler.scaleDataset(inputData);
+        distanceAlgorithm.prepare(inputData);
+
+        // the whole hierarchy is kept, so trying another number of rounds only needs it to be cut again
+        MergeTree mergeTree = getMergeTree(inputData, distanceAlgorithm);
+        if (mergeTree != null) {
+            return mergeTree.cut(inputData, roundLimit);
+        }
 
+        // there is no room for the distances between every pair, so the closest pair is searched for each round
         ArrayList<Cluster> clusters = convertToSingletonClusters(inputData);
         int clusterRoundCounter = 0;
 
-
             while (clusters.size() > 1 && clusterRoundCounter < roundLimit) {
 
                 // find the merge candidates and combine them into a single cluster
@@ -56,32 +83,203 @@ public class AgglomerativeAlgorithm implements ClusterAlgorithm {
     }
 
     /**
-     * Looks through all clusters and finds the clusters with the closest data points
+     * Returns the whole hierarchy for the selected linkage, built from the distance matrix of the data points so each
+     * pair is measured once and the distances between clusters are then updated as they are merged. Hierarchies are
+     * kept in the shared merge tree cache, so they are only built again once the data changes.
+     * <p>
+     * The distance matrix is kept in a temporary file instead of memory when distances on disk are selected, or when
+     * a linkage other than single linkage needs a matrix too large for the free memory. Single linkage instead falls
+     * back to searching for the closest pair each round, which needs no matrix at all.
+     *
+     * @param inputData         the scaled data points
+     * @param distanceAlgorithm the subroutine used to measure the distance between data points
+     * @return every merge in the order it is made, or null for single linkage when the distance matrix does not fit
+     * in memory and distances on disk are not selected
+     */
+    public MergeTree getMergeTree(ArrayList<DataPoint> inputData, DistanceAlgorithm distanceAlgorithm) {
+        String method = getName() + " " + linkage.getName();
+        MergeTree mergeTree = MergeTreeCache.getShared().get(inputData, distanceAlgorithm, method);
+        if (mergeTree != null) {
+            return mergeTree;
+        }
+
+        DistanceMatrix matrix = distancesOnDisk ? null : DistanceMatrixCache.getShared().getMatrix(inputData, distanceAlgorithm);
+        if (matrix == null && !distancesOnDisk) {
+            if (linkage == Linkage.SINGLE) {
+                return null;
+            }
+            // too large to keep in the cache, but the other linkages still need every pair
+            if (fitsInMemory(inputData.size())) {
+                matrix = DistanceMatrix.compute(inputData, distanceAlgorithm);
+            }
+        }
+
+        if (matrix == null) {
+            mergeTree = buildOnDisk(inputData, distanceAlgorithm);
+        } else if (linkage == Linkage.SINGLE) {
+            // merging the closest pair on the comparison distances ties exactly as comparing every pair of clusters does
+            mergeTree = NearestNeighborChain.mergeClosestPairs(matrix.toArray(), inputData.size(), linkage);
+            mergeTree.convertHeights(distanceAlgorithm::toDistance);
+        } else {
+            // the matrix holds comparison distances, the linkage formulas need the distances themselves
+            double[] distances = matrix.toArray();
+            for (int i = 0; i < distances.length; i++) {
+                distances[i] = convertDistance(distances[i], distanceAlgorithm);
+            }
+            mergeTree = NearestNeighborChain.cluster(distances, inputData.size(), linkage);
+        }
+
+        MergeTreeCache.getShared().put(inputData, distanceAlgorithm, method, mergeTree);
+        return mergeTree;
+    }
+
+    /**
+     * Builds the hierarchy from a distance matrix kept in a temporary file, which is removed once the hierarchy is
+     * built. Only a few rows and the nearest cluster of each row are held in memory, so the number of data points is
+     * limited by the free disk space rather than the heap.
+     *
+     * @param inputData         the scaled data points
+     * @param distanceAlgorithm the subroutine used to measure the distance between data points
+     * @return every merge in the order it is made
+     */
+    private MergeTree buildOnDisk(ArrayList<DataPoint> inputData, DistanceAlgorithm distanceAlgorithm) {
+        try (MappedDistanceMatrix matrix = MappedDistanceMatrix.compute(inputData, distanceAlgorithm)) {
+            if (linkage == Linkage.SINGLE) {
+                MergeTree mergeTree = NearestNeighborChain.mergeClosestPairs(matrix, linkage);
+                mergeTree.convertHeights(distanceAlgorithm::toDistance);
+                return mergeTree;
+            }
+            matrix.convert(comparisonDistance -> convertDistance(comparisonDistance, distanceAlgorithm));
+            return NearestNeighborChain.mergeClosestPairs(matrix, linkage);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to keep the distance matrix on disk", e);
+        }
+    }
+
+    /**
+     * Turns a comparison distance into the distance used by the linkage formulas.
+     */
+    private double convertDistance(double comparisonDistance, DistanceAlgorithm distanceAlgorithm) {
+        double distance = distanceAlgorithm.toDistance(comparisonDistance);
+        return linkage.usesSquaredDistances() ? distance * distance : distance;
+    }
+
+    /**
+     * Checks whether a distance matrix and the copy changed by the linkage would both fit in the free memory.
+     *
+     * @param pointCount the number of data points
+     * @return true if the hierarchy can be built in memory
+     */
+    private static boolean fitsInMemory(int pointCount) {
+        Runtime runtime = Runtime.getRuntime();
+        long freeMemory = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return pointCount <= DistanceMatrix.MAX_POINTS && 2 * DistanceMatrix.byteSize(pointCount) <= freeMemory;
+    }
+
+    /**
+     * Looks through all clusters and finds the clusters with the closest data points. Large searches are split into
+     * ranges of rows which are searched on separate threads, and the closest pair of each range is compared in row
+     * order, so ties go to the same pair as a search on one thread.
      *
      * @param clusters the collection of clusters in the dataset
      * @return returns the indexes of the two clusters which are to be merged
      */
     public int[] findMergeCandidates(ArrayList<Cluster> clusters, DistanceAlgorithm distanceAlgorithm) {
-        double smallestPairDistance = Double.MAX_VALUE;
-        int clusterCandidate1 = 0;
-        int clusterCandidate2 = 1;
+        int[] rowBoundaries = splitRows(clusters);
+        MergeCandidate closest;
+        if (rowBoundaries.length == 2) {
+            closest = findMergeCandidate(clusters, distanceAlgorithm, 0, clusters.size());
+        } else {
+            ArrayList<Callable<MergeCandidate>> tasks = new ArrayList<>();
+            for (int i = 0; i < rowBoundaries.length - 1; i++) {
+                int rowStart = rowBoundaries[i];
+                int rowEnd = rowBoundaries[i + 1];
+                tasks.add(() -> findMergeCandidate(clusters, distanceAlgorithm, rowStart, rowEnd));
+            }
 
-        for (int i = 0; i < clusters.size(); i++) {
+            List<Future<MergeCandidate>> futures = ForkJoinPool.commonPool().invokeAll(tasks);
+            closest = new MergeCandidate();
+            try {
+                for (Future<MergeCandidate> future : futures) {
+                    // only a strictly closer pair replaces one from an earlier range
+                    MergeCandidate candidate = future.get();
+                    if (candidate.distance < closest.distance) {
+                        closest = candidate;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("The search for the closest clusters was interrupted");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to search for the closest clusters", e.getCause());
+            }
+        }
+
+        int[] clustersToBeMerged = {closest.cluster1, closest.cluster2};
+        return clustersToBeMerged;
+    }
+
+    /**
+     * Finds the closest pair of clusters whose first cluster is in a range of rows.
+     *
+     * @param clusters the collection of clusters in the dataset
+     * @param rowStart the first cluster to search from
+     * @param rowEnd   the cluster after the last one to search from
+     * @return the closest pair, the earliest one if several are as close
+     */
+    private MergeCandidate findMergeCandidate(ArrayList<Cluster> clusters, DistanceAlgorithm distanceAlgorithm, int rowStart, int rowEnd) {
+        MergeCandidate closest = new MergeCandidate();
+
+        for (int i = rowStart; i < rowEnd; i++) {
             for (int j = i + 1; j < clusters.size(); j++) {
                 // find min distance between the two clusters
-                double minDistance = findMinDistance(clusters.get(i), clusters.get(j), distanceAlgorithm);
+                double minDistance = findMinComparisonDistance(clusters.get(i), clusters.get(j), distanceAlgorithm, closest.distance);
 
                 // if this distance is the smallest distance found between clusters, update cluster index's and smallest distance value
-                if (minDistance < smallestPairDistance) {
-                    smallestPairDistance = minDistance;
-                    clusterCandidate1 = i;
-                    clusterCandidate2 = j;
+                if (minDistance < closest.distance) {
+                    closest.distance = minDistance;
+                    closest.cluster1 = i;
+                    closest.cluster2 = j;
                 }
             }
         }
+        return closest;
+    }
 
-        int[] clustersToBeMerged = {clusterCandidate1, clusterCandidate2};
-        return clustersToBeMerged;
+    /**
+     * Splits the rows of the search into ranges with roughly the same number of pairs of data points, rows near the
+     * start are paired with more clusters so they hold more pairs.
+     *
+     * @param clusters the collection of clusters in the dataset
+     * @return the first row of each range followed by the number of clusters, only the start and end if the search is
+     * too small to split
+     */
+    private static int[] splitRows(ArrayList<Cluster> clusters) {
+        int n = clusters.size();
+        long[] rowPairs = new long[n];
+        long totalPairs = 0;
+        long pointsAfter = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            rowPairs[i] = clusters.get(i).size() * pointsAfter;
+            pointsAfter += clusters.get(i).size();
+            totalPairs += rowPairs[i];
+        }
+        if (totalPairs < PARALLEL_MIN_PAIRS) {
+            return new int[]{0, n};
+        }
+
+        int chunkCount = Math.max(1, ForkJoinPool.getCommonPoolParallelism()) * CHUNKS_PER_THREAD;
+        ArrayList<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+        long pairsSoFar = 0;
+        for (int i = 0; i < n - 1 && boundaries.size() < chunkCount; i++) {
+            pairsSoFar += rowPairs[i];
+            if (pairsSoFar * chunkCount >= totalPairs * boundaries.size()) {
+                boundaries.add(i + 1);
+            }
+        }
+        boundaries.add(n);
+        return boundaries.stream().mapToInt(Integer::intValue).toArray();
     }
 
     /**
@@ -92,13 +290,31 @@ public class AgglomerativeAlgorithm implements ClusterAlgorithm {
      * @return returns the smallest distance between the two clusters
      */
     public double findMinDistance(Cluster cluster1, Cluster cluster2, DistanceAlgorithm distanceAlgorithm) {
-        //smallestDistance set to max int so any calculated distance will always be smaller
-        double smallestPairDistance = Double.MAX_VALUE;
+        double smallestComparisonDistance = findMinComparisonDistance(cluster1, cluster2, distanceAlgorithm, Double.MAX_VALUE);
+        // an empty cluster leaves the starting value which is not a measured distance so it is returned unchanged
+        if (smallestComparisonDistance == Double.MAX_VALUE) {
+            return smallestComparisonDistance;
+        }
+        return distanceAlgorithm.toDistance(smallestComparisonDistance);
+    }
+
+    /**
+     * Finds the smallest comparison distance between two datapoints in a cluster, this is only used to find which
+     * clusters are closest so the true distance does not need to be worked out.
+     *
+     * @param cluster1   the first cluster we are comparing
+     * @param cluster2   the second cluster we are comparing
+     * @param upperBound pairs further apart than this are not measured exactly, as they cannot be merged
+     * @return returns the smaller of the bound and the smallest comparison distance between the two clusters
+     */
+    public double findMinComparisonDistance(Cluster cluster1, Cluster cluster2, DistanceAlgorithm distanceAlgorithm, double upperBound) {
+        // smallestDistance starts at the bound so only pairs closer than it need to be measured exactly
+        double smallestPairDistance = upperBound;
         // loop through all the values in the first cluster
         for (int i = 0; i < cluster1.size(); i++) {
             // loop through the second cluster and compare a value in the first cluster to all values in the second
             for (int j = 0; j < cluster2.size(); j++) {
-                double distance = distanceAlgorithm.measureDistance(cluster1.get(i), cluster2.get(j));
+                double distance = distanceAlgorithm.measureComparisonDistance(cluster1.get(i), cluster2.get(j), smallestPairDistance);
 
                 if (smallestPairDistance > distance) {
                     smallestPairDistance = distance;
@@ -163,15 +379,30 @@ public class AgglomerativeAlgorithm implements ClusterAlgorithm {
         Label roundLabel = new Label("Number of rounds:");
         TextField roundInput = new TextField();
 
+        Label linkageLabel = new Label("Linkage:");
+        ChoiceBox<Linkage> linkageInput = new ChoiceBox<>();
+        linkageInput.getItems().addAll(Linkage.values());
+        linkageInput.setValue(linkage);
+
+        Label diskLabel = new Label("Keep distances on disk:");
+        CheckBox diskInput = new CheckBox();
+        diskInput.setSelected(distancesOnDisk);
+
         GridPane dialogContent = new GridPane();
         dialogContent.add(roundLabel, 1, 1);
         dialogContent.add(roundInput, 2, 1);
+        dialogContent.add(linkageLabel, 1, 2);
+        dialogContent.add(linkageInput, 2, 2);
+        dialogContent.add(diskLabel, 1, 3);
+        dialogContent.add(diskInput, 2, 3);
 
         ButtonType confirmButton = new ButtonType("Submit", ButtonBar.ButtonData.OK_DONE);
         clusterSettingsPopup.getDialogPane().getButtonTypes().add(confirmButton);
         clusterSettingsPopup.getDialogPane().setContent(dialogContent);
 
         clusterSettingsPopup.showAndWait();
+        linkage = linkageInput.getValue();
+        distancesOnDisk = diskInput.isSelected();
 
         // read the user inputs, they are not valid then display a warning and to get inputs again
         try {
@@ -203,4 +434,30 @@ public class AgglomerativeAlgorithm implements ClusterAlgorithm {
     public void setRoundLimit(int roundLimit) {
         this.roundLimit = roundLimit;
     }
+
+    public Linkage getLinkage() {
+        return linkage;
+    }
+
+    public void setLinkage(Linkage linkage) {
+        this.linkage = linkage;
+    }
+
+    public boolean isDistancesOnDisk() {
+        return distancesOnDisk;
+    }
+
+    public void setDistancesOnDisk(boolean distancesOnDisk) {
+        this.distancesOnDisk = distancesOnDisk;
+    }
+
+    /**
+     * The closest pair of clusters found by a search, the first two clusters until a pair closer than the largest
+     * value is found.
+     */
+    private static class MergeCandidate {
+        private double distance = Double.MAX_VALUE;
+        private int cluster1 = 0;
+        private int cluster2 = 1;
+    }
 }
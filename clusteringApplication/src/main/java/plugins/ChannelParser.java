@@ -0,0 +1,957 @@
+package plugins;
+
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+import kernel.CompressedInput;
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.DatasetCache;
+import kernel.FeatureMatrix;
+import kernel.FileScanner;
+import kernel.FileSummary;
+import kernel.HeapFeatureMatrix;
+import kernel.MappedFeatureMatrix;
+import spi.FileParser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parser which reads the database through a memory-mapped file channel. The delimiter is worked out once from the
+ * first line and numbers are parsed straight from the file bytes, so no string is created for numerical features.
+ */
+public class ChannelParser implements FileParser {
+    // files smaller than this are parsed on a single thread
+    private static final long PARALLEL_MIN_BYTES = 8L << 20;
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // files larger than this fraction of the maximum heap size have their features stored off the heap
+    private static final int OFF_HEAP_HEAP_FRACTION = 4;
+
+    // used to mark a file where any run of spaces or tabs separates the features
+    private static final byte WHITESPACE_DELIMITER = ' ';
+
+    private static final byte[] DELIMITER_CANDIDATES = {',', '\t', ';', ':'};
+
+    // powers of ten which can be represented exactly as a double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private File dbFile;
+    private String fileName;
+    private int numberOfLines;
+    private int featureNumber;
+    private boolean offHeap;
+    private boolean leanMode;
+
+    public String getName() {
+        return "Fast (NIO)";
+    }
+
+    /**
+     * Sets the database which is to be read, the file is not opened until it is read.
+     *
+     * @param dbFile the file to read
+     * @throws FileNotFoundException thrown if the file does not exist
+     */
+    @Override
+    public void setDatabase(File dbFile) throws FileNotFoundException {
+        if (!dbFile.isFile()) {
+            throw new FileNotFoundException(dbFile.getPath() + " (No such file or directory)");
+        }
+        this.dbFile = dbFile;
+        fileName = dbFile.getName();
+
+        // parsed features take up several times the space of their text, so large files are kept in a mapped file
+        offHeap = dbFile.length() > Runtime.getRuntime().maxMemory() / OFF_HEAP_HEAP_FRACTION;
+    }
+
+    /**
+     * Lean mode keeps only the position of each line in the file rather than its text, and reads the line back from
+     * the file when it is needed. This saves the memory of the line text for wide files. Compressed files always keep
+     * their text, as a position in the decompressed text cannot be read back directly.
+     *
+     * @param leanMode true if the text of each line should not be kept
+     */
+    public void setLeanMode(boolean leanMode) {
+        this.leanMode = leanMode;
+    }
+
+    /**
+     * Allows the user to choose a file based on a given type which is defined within this method.
+     *
+     * @param stage the stage used to display the file picker
+     * @return the file which has been selected
+     */
+    @Override
+    public File chooseFile(Stage stage) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select File to cluster");
+        fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Text Files", "*.txt", "*.data", "*.csv"),
+                new FileChooser.ExtensionFilter("Compressed Files", "*.gz", "*.zip"));
+        return fileChooser.showOpenDialog(stage);
+    }
+
+    /**
+     * Reads every line of the database into a dataset. Like the default parser, reading stops at the first empty line
+     * and lines with a different number of features to the first line are skipped. Large files are split into
+     * sections which are parsed at the same time on the common fork/join pool, and then joined back together in the
+     * order they appear in the file.
+     *
+     * @return the data points of the database
+     * @throws IOException thrown if the file cannot be read
+     */
+    @Override
+    public ArrayList<DataPoint> readDB() throws IOException {
+        // large databases keep a binary copy next to them, which is used whenever it is still up to date
+        DatasetCache cache = DatasetCache.isWorthCaching(dbFile) ? new DatasetCache(dbFile, getName()) : null;
+        Dataset dataset = cache == null ? null : cache.load(offHeap);
+        if (dataset != null) {
+            featureNumber = dataset.getNumericalCount() + dataset.getCategoricalCount();
+            numberOfLines = dataset.size();
+            return dataset.getDataPoints();
+        }
+        if (CompressedInput.isCompressed(dbFile)) {
+            // compressed files cannot be mapped, so they are parsed a block at a time as they are decompressed
+            try (InputStream in = CompressedInput.open(dbFile)) {
+                dataset = readStream(in);
+            }
+        } else {
+            dataset = readMapped();
+        }
+        int featureNum = dataset == null ? 0 : dataset.getNumericalCount() + dataset.getCategoricalCount();
+
+        featureNumber = featureNum;
+        numberOfLines = dataset == null ? 0 : dataset.size();
+        if (dataset == null) {
+            return new ArrayList<DataPoint>();
+        }
+        dataset.trimToSize();
+        if (cache != null) {
+            cache.save(dataset);
+        }
+        return dataset.getDataPoints();
+    }
+
+    /**
+     * Reads the database by mapping the file, splitting large files into sections which are parsed in parallel.
+     *
+     * @return the dataset, or null if the database is empty
+     * @throws IOException thrown if the file cannot be read
+     */
+    private Dataset readMapped() throws IOException {
+        try (FileChannel channel = FileChannel.open(dbFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            byte delimiter = detectDelimiter(channel);
+
+            // the first line sets the layout which every other line is checked against
+            LineTokenizer tokenizer = new LineTokenizer(delimiter);
+            if (!tokenizeFirstLine(channel, fileSize, tokenizer)) {
+                return null;
+            }
+            Dataset dataset = createDataset(tokenizer.getNumericalCount(), tokenizer.getCategoricalCount(), leanMode);
+
+            long[] boundaries = splitIntoChunks(channel, fileSize, chooseChunkCount(fileSize));
+            int chunkCount = boundaries.length - 1;
+            ChunkJoiner joiner = new ChunkJoiner(dataset);
+
+            // only one section per thread is held on the heap at a time, the rest of the file is parsed once they are joined
+            int groupSize = ForkJoinPool.getCommonPoolParallelism();
+            for (int first = 0; first < chunkCount; first += groupSize) {
+                int last = Math.min(first + groupSize, chunkCount);
+                ChunkResult[] results = parseChunks(channel, boundaries, first, last, delimiter, dataset.getNumericalCount(), dataset.getCategoricalCount());
+                if (!joiner.addAll(results)) {
+                    break;
+                }
+            }
+            return dataset;
+        }
+    }
+
+    /**
+     * Counts the lines of the database and takes the layout of the features from its first line, which is the line
+     * every other line is checked against when the database is read.
+     *
+     * @return the details of the connected database
+     * @throws IOException thrown if the file cannot be read
+     */
+    @Override
+    public FileSummary scanFile() throws IOException {
+        if (CompressedInput.isCompressed(dbFile)) {
+            return scanStream();
+        }
+        try (FileChannel channel = FileChannel.open(dbFile.toPath(), StandardOpenOption.READ)) {
+            LineTokenizer tokenizer = new LineTokenizer(detectDelimiter(channel));
+            if (!tokenizeFirstLine(channel, channel.size(), tokenizer)) {
+                return new FileSummary(0, 0, 0);
+            }
+            return new FileSummary(FileScanner.countLines(dbFile), tokenizer.getNumericalCount(), tokenizer.getCategoricalCount());
+        }
+    }
+
+    /**
+     * Splits the first line of the file into features.
+     *
+     * @param channel   the channel of the database file
+     * @param fileSize  the size of the file
+     * @param tokenizer the tokenizer which is left holding the features of the first line
+     * @return false if the file is empty or starts with an empty line
+     * @throws IOException thrown if the file cannot be read
+     */
+    private static boolean tokenizeFirstLine(FileChannel channel, long fileSize, LineTokenizer tokenizer) throws IOException {
+        long firstLineEnd = nextLineStart(channel, 1, fileSize);
+        if (firstLineEnd <= 0) {
+            return false;
+        }
+        MappedByteBuffer firstLine = channel.map(FileChannel.MapMode.READ_ONLY, 0, firstLineEnd);
+        return tokenizeFirstLine(firstLine, (int) firstLineEnd, tokenizer);
+    }
+
+    /**
+     * Splits the first line held in a buffer into features.
+     *
+     * @param buffer    the buffer which starts with the first line of the file
+     * @param length    the number of bytes held in the buffer
+     * @param tokenizer the tokenizer which is left holding the features of the first line
+     * @return false if the buffer is empty or starts with an empty line
+     */
+    private static boolean tokenizeFirstLine(ByteBuffer buffer, int length, LineTokenizer tokenizer) {
+        int lineEnd = indexOf(buffer, (byte) '\n', 0, length);
+        int contentEnd = trimLineEnding(buffer, 0, lineEnd < 0 ? length : lineEnd);
+        if (contentEnd == 0) {
+            return false;
+        }
+        tokenizer.tokenize(buffer, 0, contentEnd);
+        return true;
+    }
+
+    /**
+     * Reads a database from a stream a block at a time, each block ending at the end of a line. The blocks are parsed
+     * in the same way as the sections of a mapped file.
+     *
+     * @param in the stream holding the database
+     * @return the dataset, or null if the database is empty
+     * @throws IOException thrown if the stream cannot be read
+     */
+    private Dataset readStream(InputStream in) throws IOException {
+        byte[] block = new byte[(int) MIN_CHUNK_BYTES];
+        Dataset dataset = null;
+        ChunkJoiner joiner = null;
+        byte delimiter = WHITESPACE_DELIMITER;
+        int carried = 0;
+
+        while (true) {
+            int length = carried + in.readNBytes(block, carried, block.length - carried);
+            boolean finished = length < block.length;
+            int parseEnd = finished ? length : lastIndexOf(block, (byte) '\n', length) + 1;
+            if (parseEnd == 0 && !finished) {
+                // a single line fills the block so the block has to grow before the line can be parsed
+                block = Arrays.copyOf(block, block.length * 2);
+                carried = length;
+                continue;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(block, 0, parseEnd);
+            if (dataset == null) {
+                delimiter = detectDelimiter(buffer, parseEnd);
+                LineTokenizer tokenizer = new LineTokenizer(delimiter);
+                if (!tokenizeFirstLine(buffer, parseEnd, tokenizer)) {
+                    return null;
+                }
+                dataset = createDataset(tokenizer.getNumericalCount(), tokenizer.getCategoricalCount(), false);
+                joiner = new ChunkJoiner(dataset);
+            }
+
+            // each block is joined as soon as it is parsed so only one block of rows is held on the heap
+            ChunkResult result = new ChunkResult(dataset.getNumericalCount(), dataset.getCategoricalCount(), false);
+            parseLines(buffer, parseEnd, 0, delimiter, result);
+            if (!joiner.add(result) || finished) {
+                break;
+            }
+
+            // the start of the next line is moved to the front of the block
+            carried = length - parseEnd;
+            System.arraycopy(block, parseEnd, block, 0, carried);
+        }
+        return dataset;
+    }
+
+    /**
+     * Scans a compressed database, which has to be decompressed to count its lines.
+     *
+     * @return the details of the database
+     * @throws IOException thrown if the file cannot be read
+     */
+    private FileSummary scanStream() throws IOException {
+        LineTokenizer tokenizer;
+        try (InputStream in = CompressedInput.open(dbFile)) {
+            byte[] firstBytes = in.readNBytes(64 * 1024);
+            ByteBuffer buffer = ByteBuffer.wrap(firstBytes);
+            tokenizer = new LineTokenizer(detectDelimiter(buffer, firstBytes.length));
+            if (!tokenizeFirstLine(buffer, firstBytes.length, tokenizer)) {
+                return new FileSummary(0, 0, 0);
+            }
+        }
+        try (InputStream in = CompressedInput.open(dbFile)) {
+            return new FileSummary(FileScanner.countLines(in), tokenizer.getNumericalCount(), tokenizer.getCategoricalCount());
+        }
+    }
+
+    /**
+     * Parses a run of sections of the file, using the fork/join pool when there is more than one section.
+     *
+     * @param channel          the channel of the database file
+     * @param boundaries       the start of every section followed by the end of the file
+     * @param first            the index of the first section to parse
+     * @param last             the index after the last section to parse
+     * @param delimiter        the delimiter used by the file
+     * @param numericalCount   the number of numerical features every line should have
+     * @param categoricalCount the number of categorical features every line should have
+     * @return the parsed sections in file order
+     * @throws IOException thrown if the file cannot be read
+     */
+    private ChunkResult[] parseChunks(FileChannel channel, long[] boundaries, int first, int last, byte delimiter, int numericalCount,
+                                      int categoricalCount) throws IOException {
+        ChunkResult[] results = new ChunkResult[last - first];
+        if (results.length == 1) {
+            results[0] = parseChunk(channel, boundaries[first], boundaries[first + 1], delimiter, numericalCount, categoricalCount, leanMode);
+            return results;
+        }
+
+        ArrayList<Callable<ChunkResult>> tasks = new ArrayList<>();
+        for (int i = first; i < last; i++) {
+            long start = boundaries[i];
+            long end = boundaries[i + 1];
+            tasks.add(() -> parseChunk(channel, start, end, delimiter, numericalCount, categoricalCount, leanMode));
+        }
+
+        List<Future<ChunkResult>> futures = ForkJoinPool.commonPool().invokeAll(tasks);
+        try {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading the database was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to parse the database", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Parses every complete line in a section of the file.
+     *
+     * @return the rows which were read from the section along with any lines which were rejected
+     * @throws IOException thrown if the section cannot be mapped
+     */
+    private static ChunkResult parseChunk(FileChannel channel, long start, long end, byte delimiter, int numericalCount, int categoricalCount,
+                                          boolean lean) throws IOException {
+        ChunkResult result = new ChunkResult(numericalCount, categoricalCount, lean);
+        int chunkLength = (int) (end - start);
+        if (chunkLength > 0) {
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, chunkLength);
+            parseLines(chunk, chunkLength, start, delimiter, result);
+        }
+        return result;
+    }
+
+    /**
+     * Parses every line held in a buffer.
+     *
+     * @param chunk       the buffer holding the lines
+     * @param chunkLength the number of bytes held in the buffer
+     * @param chunkStart  the position in the file of the start of the buffer
+     * @param delimiter   the delimiter used by the file
+     * @param result      collects the rows which were read along with any lines which were rejected
+     */
+    private static void parseLines(ByteBuffer chunk, int chunkLength, long chunkStart, byte delimiter, ChunkResult result) {
+        int numericalCount = result.numericalCount;
+        int categoricalCount = result.categoricalCount;
+        LineTokenizer tokenizer = new LineTokenizer(delimiter);
+
+        int lineStart = 0;
+        while (lineStart < chunkLength) {
+            int lineEnd = indexOf(chunk, (byte) '\n', lineStart, chunkLength);
+            if (lineEnd < 0) {
+                // the last line of the file may not end with a new line
+                lineEnd = chunkLength;
+            }
+            int contentEnd = trimLineEnding(chunk, lineStart, lineEnd);
+            if (contentEnd == lineStart) {
+                result.endedEarly = true;
+                break;
+            }
+
+            tokenizer.tokenize(chunk, lineStart, contentEnd);
+            if (tokenizer.getNumericalCount() != numericalCount || tokenizer.getCategoricalCount() != categoricalCount) {
+                result.addRejectedLine(tokenizer.decode(chunk, lineStart, contentEnd));
+            } else if (result.lineStarts != null) {
+                // lean rows only need the position of the line, so its text is never decoded
+                result.addRow(chunkStart + lineStart, contentEnd - lineStart, tokenizer.getNumericalValues(), tokenizer.getCategoricalValues());
+            } else {
+                result.addRow(tokenizer.decode(chunk, lineStart, contentEnd), tokenizer.getNumericalValues(), tokenizer.getCategoricalValues());
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    /**
+     * Decides how many sections a file should be split into, small files are not worth splitting.
+     *
+     * @param fileSize the size of the file in bytes
+     * @return the number of sections to parse
+     */
+    private static int chooseChunkCount(long fileSize) {
+        int chunkCount = 1;
+        if (fileSize >= PARALLEL_MIN_BYTES) {
+            chunkCount = (int) Math.min(ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD, fileSize / MIN_CHUNK_BYTES);
+        }
+        // each section is mapped in one go so it has to fit in a single buffer
+        return (int) Math.max(chunkCount, (fileSize + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+    }
+
+    /**
+     * Splits the file into sections of roughly equal size which always start at the beginning of a line.
+     *
+     * @param channel    the channel of the database file
+     * @param fileSize   the size of the file
+     * @param chunkCount the number of sections to create
+     * @return the start of each section followed by the end of the file
+     * @throws IOException thrown if the file cannot be read
+     */
+    static long[] splitIntoChunks(FileChannel channel, long fileSize, int chunkCount) throws IOException {
+        long[] boundaries = new long[chunkCount + 1];
+        for (int i = 1; i < chunkCount; i++) {
+            long target = fileSize * i / chunkCount;
+            boundaries[i] = Math.max(boundaries[i - 1], nextLineStart(channel, target, fileSize));
+        }
+        boundaries[chunkCount] = fileSize;
+        return boundaries;
+    }
+
+    /**
+     * Finds the start of the first line which begins at or after the given position.
+     *
+     * @return the position of the start of the line, or the file size if there are no more lines
+     */
+    private static long nextLineStart(FileChannel channel, long position, long fileSize) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        // a line starts at the position if the byte before it ends the previous line
+        long searchPosition = position - 1;
+        while (searchPosition < fileSize) {
+            buffer.clear();
+            int read = channel.read(buffer, searchPosition);
+            if (read <= 0) {
+                break;
+            }
+            int newLine = indexOf(buffer, (byte) '\n', 0, read);
+            if (newLine >= 0) {
+                return searchPosition + newLine + 1;
+            }
+            searchPosition += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * @return the end of the line once any carriage return has been removed
+     */
+    private static int trimLineEnding(ByteBuffer buffer, int lineStart, int lineEnd) {
+        if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+            return lineEnd - 1;
+        }
+        return lineEnd;
+    }
+
+    /**
+     * Works out which delimiter separates the features by looking at the first line of the file. The most common of
+     * the known delimiters is used, if none of them appear the features are assumed to be separated by whitespace.
+     *
+     * @param channel the channel of the database file
+     * @return the delimiter used by the file
+     * @throws IOException thrown if the file cannot be read
+     */
+    static byte detectDelimiter(FileChannel channel) throws IOException {
+        ByteBuffer firstBytes = ByteBuffer.allocate((int) Math.min(64 * 1024, channel.size()));
+        channel.read(firstBytes, 0);
+        return detectDelimiter(firstBytes, firstBytes.position());
+    }
+
+    static byte detectDelimiter(ByteBuffer firstBytes, int length) {
+        int[] counts = new int[DELIMITER_CANDIDATES.length];
+        for (int i = 0; i < length; i++) {
+            byte b = firstBytes.get(i);
+            if (b == '\n') {
+                break;
+            }
+            for (int j = 0; j < DELIMITER_CANDIDATES.length; j++) {
+                if (b == DELIMITER_CANDIDATES[j]) {
+                    counts[j]++;
+                }
+            }
+        }
+
+        byte delimiter = WHITESPACE_DELIMITER;
+        int highestCount = 0;
+        for (int j = 0; j < DELIMITER_CANDIDATES.length; j++) {
+            // tabs are treated in the same way as spaces
+            if (counts[j] > highestCount && DELIMITER_CANDIDATES[j] != '\t') {
+                highestCount = counts[j];
+                delimiter = DELIMITER_CANDIDATES[j];
+            }
+        }
+        return delimiter;
+    }
+
+    private static int lastIndexOf(byte[] bytes, byte value, int to) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Dataset createDataset(int numericalCount, int categoricalCount, boolean lean) throws IOException {
+        FeatureMatrix numericalFeatures;
+        FeatureMatrix originalNumericalFeatures;
+        if (offHeap) {
+            numericalFeatures = new MappedFeatureMatrix(numericalCount);
+            originalNumericalFeatures = new MappedFeatureMatrix(numericalCount);
+        } else {
+            numericalFeatures = new HeapFeatureMatrix(numericalCount);
+            originalNumericalFeatures = new HeapFeatureMatrix(numericalCount);
+        }
+        if (lean) {
+            return new Dataset(numericalFeatures, originalNumericalFeatures, categoricalCount, dbFile);
+        }
+        return new Dataset(numericalFeatures, originalNumericalFeatures, categoricalCount);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getNumberOfLines() {
+        return numberOfLines;
+    }
+
+    public int getFeatureNumber() {
+        return featureNumber;
+    }
+
+    /**
+     * The rows read from one section of the file. Rejected lines are stored with their index within the section so
+     * their true line number can be worked out once the sections before them are known.
+     */
+    static class ChunkResult {
+        private int numericalCount;
+        private int categoricalCount;
+
+        private double[] numerical;
+        private String[] categorical;
+        private String[] lines;
+        private int rowCount;
+
+        // used instead of the lines in lean mode
+        private long[] lineStarts;
+        private int[] lineLengths;
+
+        private ArrayList<String> rejectedLines = new ArrayList<>();
+        private ArrayList<Integer> rejectedLineIndexes = new ArrayList<>();
+
+        // the number of lines in the section which were read, including rejected lines
+        private int lineCount;
+        // set when an empty line was found, nothing after it is part of the database
+        private boolean endedEarly;
+
+        ChunkResult(int numericalCount, int categoricalCount, boolean lean) {
+            this.numericalCount = numericalCount;
+            this.categoricalCount = categoricalCount;
+            numerical = new double[numericalCount * 64];
+            categorical = new String[categoricalCount * 64];
+            if (lean) {
+                lineStarts = new long[64];
+                lineLengths = new int[64];
+            } else {
+                lines = new String[64];
+            }
+        }
+
+        void addRow(String line, double[] numericalValues, String[] categoricalValues) {
+            addFeatures(numericalValues, categoricalValues);
+            lines[rowCount++] = line;
+            lineCount++;
+        }
+
+        void addRow(long lineStart, int lineLength, double[] numericalValues, String[] categoricalValues) {
+            addFeatures(numericalValues, categoricalValues);
+            lineStarts[rowCount] = lineStart;
+            lineLengths[rowCount++] = lineLength;
+            lineCount++;
+        }
+
+        private void addFeatures(double[] numericalValues, String[] categoricalValues) {
+            if (isFull()) {
+                int capacity = rowCount * 2;
+                numerical = Arrays.copyOf(numerical, capacity * numericalCount);
+                categorical = Arrays.copyOf(categorical, capacity * categoricalCount);
+                if (lines != null) {
+                    lines = Arrays.copyOf(lines, capacity);
+                } else {
+                    lineStarts = Arrays.copyOf(lineStarts, capacity);
+                    lineLengths = Arrays.copyOf(lineLengths, capacity);
+                }
+            }
+            System.arraycopy(numericalValues, 0, numerical, rowCount * numericalCount, numericalCount);
+            System.arraycopy(categoricalValues, 0, categorical, rowCount * categoricalCount, categoricalCount);
+        }
+
+        private boolean isFull() {
+            return rowCount == (lines != null ? lines.length : lineStarts.length);
+        }
+
+        void addRejectedLine(String line) {
+            rejectedLines.add(line);
+            rejectedLineIndexes.add(lineCount++);
+        }
+    }
+
+    /**
+     * Joins parsed sections into the dataset in file order, reporting rejected lines with their line number in the
+     * file. Sections are released once they are joined so their memory can be reclaimed while the rest are parsed.
+     */
+    private static class ChunkJoiner {
+        private Dataset dataset;
+        private double[] numericalRow;
+        private String[] categoricalRow;
+
+        // the number of lines in the sections joined so far
+        private int linesBefore;
+
+        ChunkJoiner(Dataset dataset) {
+            this.dataset = dataset;
+            numericalRow = new double[dataset.getNumericalCount()];
+            categoricalRow = new String[dataset.getCategoricalCount()];
+        }
+
+        /**
+         * Joins a run of sections, clearing each one from the array once it has been copied.
+         *
+         * @param results the parsed sections in file order
+         * @return false if the database ended within the sections, so nothing after them should be read
+         */
+        boolean addAll(ChunkResult[] results) {
+            for (int i = 0; i < results.length; i++) {
+                ChunkResult result = results[i];
+                results[i] = null;
+                if (!add(result)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Joins the next section of the file.
+         *
+         * @param result the parsed section
+         * @return false if the database ended within the section, so nothing after it should be read
+         */
+        boolean add(ChunkResult result) {
+            int numericalCount = numericalRow.length;
+            int categoricalCount = categoricalRow.length;
+            for (int j = 0; j < result.rejectedLines.size(); j++) {
+                int lineNumber = linesBefore + result.rejectedLineIndexes.get(j) + 1;
+                System.err.println("Failed to read line " + lineNumber + ": " + result.rejectedLines.get(j) + " due to incorrect feature size");
+            }
+            for (int row = 0; row < result.rowCount; row++) {
+                System.arraycopy(result.numerical, row * numericalCount, numericalRow, 0, numericalCount);
+                System.arraycopy(result.categorical, row * categoricalCount, categoricalRow, 0, categoricalCount);
+                if (result.lineStarts != null) {
+                    dataset.addRow(result.lineStarts[row], result.lineLengths[row], numericalRow, categoricalRow);
+                } else {
+                    dataset.addRow(result.lines[row], numericalRow, categoricalRow);
+                }
+            }
+            linesBefore += result.lineCount;
+            return !result.endedEarly;
+        }
+    }
+
+    /**
+     * Splits a line held in a byte buffer into its numerical and categorical features. The buffers used to return the
+     * features are reused for every line.
+     */
+    static class LineTokenizer {
+        private byte delimiter;
+
+        private double[] numericalValues = new double[16];
+        private int numericalCount;
+        private String[] categoricalValues = new String[4];
+        private int categoricalCount;
+
+        // empty tokens are only kept if a non empty token follows them, matching String.split
+        private int pendingEmptyTokens;
+
+        private byte[] decodeBuffer = new byte[256];
+        private double parsedNumber;
+
+        LineTokenizer(byte delimiter) {
+            this.delimiter = delimiter;
+        }
+
+        /**
+         * Splits the bytes of a single line into features.
+         *
+         * @param buffer the buffer holding the line
+         * @param start  the position of the first byte of the line
+         * @param end    the position after the last byte of the line
+         */
+        void tokenize(ByteBuffer buffer, int start, int end) {
+            numericalCount = 0;
+            categoricalCount = 0;
+            pendingEmptyTokens = 0;
+
+            int i = start;
+            if (delimiter == WHITESPACE_DELIMITER) {
+                while (i < end) {
+                    // skip the run of whitespace before the token
+                    while (i < end && isWhitespace(buffer.get(i))) {
+                        i++;
+                    }
+                    int tokenStart = i;
+                    while (i < end && !isWhitespace(buffer.get(i))) {
+                        i++;
+                    }
+                    if (i > tokenStart) {
+                        addToken(buffer, tokenStart, i);
+                    }
+                }
+            } else {
+                while (i <= end) {
+                    int tokenEnd = i;
+                    while (tokenEnd < end && buffer.get(tokenEnd) != delimiter) {
+                        tokenEnd++;
+                    }
+                    // ignore whitespace around the token
+                    int tokenStart = i;
+                    int trimmedEnd = tokenEnd;
+                    while (tokenStart < trimmedEnd && isWhitespace(buffer.get(tokenStart))) {
+                        tokenStart++;
+                    }
+                    while (trimmedEnd > tokenStart && isWhitespace(buffer.get(trimmedEnd - 1))) {
+                        trimmedEnd--;
+                    }
+                    if (trimmedEnd == tokenStart) {
+                        pendingEmptyTokens++;
+                    } else {
+                        addToken(buffer, tokenStart, trimmedEnd);
+                    }
+                    i = tokenEnd + 1;
+                }
+            }
+        }
+
+        private void addToken(ByteBuffer buffer, int start, int end) {
+            for (; pendingEmptyTokens > 0; pendingEmptyTokens--) {
+                addCategorical("");
+            }
+            if (parseNumber(buffer, start, end)) {
+                if (numericalCount == numericalValues.length) {
+                    numericalValues = Arrays.copyOf(numericalValues, numericalCount * 2);
+                }
+                numericalValues[numericalCount++] = parsedNumber;
+            } else {
+                addCategorical(decode(buffer, start, end));
+            }
+        }
+
+        private void addCategorical(String value) {
+            if (categoricalCount == categoricalValues.length) {
+                categoricalValues = Arrays.copyOf(categoricalValues, categoricalCount * 2);
+            }
+            categoricalValues[categoricalCount++] = value;
+        }
+
+        /**
+         * Attempts to read a decimal number from the bytes of a token, the result is left in parsedNumber. Tokens
+         * which are not plain decimal numbers are passed on to parseOtherNumber.
+         *
+         * @return true if the token was a number
+         */
+        boolean parseNumber(ByteBuffer buffer, int start, int end) {
+            int i = start;
+            boolean negative = false;
+            if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negative = buffer.get(i) == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            int exponent = 0;
+            boolean anyDigits = false;
+            // set when digits did not fit in the mantissa, in which case the slow but exact parser is used
+            boolean truncated = false;
+
+            while (i < end && isDigit(buffer.get(i))) {
+                if (mantissa < 100_000_000_000_000_000L) {
+                    mantissa = mantissa * 10 + (buffer.get(i) - '0');
+                } else {
+                    exponent++;
+                    truncated = true;
+                }
+                anyDigits = true;
+                i++;
+            }
+            if (i < end && buffer.get(i) == '.') {
+                i++;
+                while (i < end && isDigit(buffer.get(i))) {
+                    if (mantissa < 100_000_000_000_000_000L) {
+                        mantissa = mantissa * 10 + (buffer.get(i) - '0');
+                        exponent--;
+                    } else {
+                        truncated = true;
+                    }
+                    anyDigits = true;
+                    i++;
+                }
+            }
+            if (!anyDigits) {
+                return parseOtherNumber(buffer, start, end);
+            }
+
+            if (i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+                i++;
+                boolean negativeExponent = false;
+                if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                    negativeExponent = buffer.get(i) == '-';
+                    i++;
+                }
+                if (i == end) {
+                    return parseOtherNumber(buffer, start, end);
+                }
+                int explicitExponent = 0;
+                while (i < end && isDigit(buffer.get(i))) {
+                    explicitExponent = Math.min(100_000, explicitExponent * 10 + (buffer.get(i) - '0'));
+                    i++;
+                }
+                exponent += negativeExponent ? -explicitExponent : explicitExponent;
+            }
+            if (i != end) {
+                return parseOtherNumber(buffer, start, end);
+            }
+
+            double value;
+            if (!truncated && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+                // both parts are exact doubles so a single operation gives the correctly rounded result
+                value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+                value = negative ? -value : value;
+            } else {
+                // the token has already been checked so this cannot throw
+                value = Double.parseDouble(decode(buffer, start, end));
+            }
+            parsedNumber = value;
+            return true;
+        }
+
+        /**
+         * Reads the numbers which Double.parseDouble accepts but the decimal parser does not, such as NaN, Infinity,
+         * hex floats and numbers with a type suffix, so tokens are typed the same as by the default parser. Only tokens
+         * ending in a character those numbers can end with are tried, so most categorical values are rejected without
+         * an exception being thrown.
+         *
+         * @return true if the token was a number
+         */
+        private boolean parseOtherNumber(ByteBuffer buffer, int start, int end) {
+            if (start == end) {
+                return false;
+            }
+            byte last = buffer.get(end - 1);
+            if (!isDigit(last) && last != '.' && last != 'f' && last != 'F' && last != 'd' && last != 'D' && last != 'N'
+                    && last != 'y' && last > ' ') {
+                return false;
+            }
+            try {
+                parsedNumber = Double.parseDouble(decode(buffer, start, end));
+                return true;
+            } catch (NumberFormatException notANumber) {
+                return false;
+            }
+        }
+
+        /**
+         * Turns a section of the buffer into a string using the platforms default character set.
+         */
+        String decode(ByteBuffer buffer, int start, int end) {
+            int length = end - start;
+            if (length > decodeBuffer.length) {
+                decodeBuffer = new byte[Math.max(length, decodeBuffer.length * 2)];
+            }
+            buffer.get(start, decodeBuffer, 0, length);
+            return new String(decodeBuffer, 0, length, Charset.defaultCharset());
+        }
+
+        double[] getNumericalValues() {
+            return numericalValues;
+        }
+
+        int getNumericalCount() {
+            return numericalCount;
+        }
+
+        /**
+         * @return the categorical values of the last line, the array may be longer than the number of values
+         */
+        String[] getCategoricalValues() {
+            return categoricalValues;
+        }
+
+        int getCategoricalCount() {
+            return categoricalCount;
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+    }
+}
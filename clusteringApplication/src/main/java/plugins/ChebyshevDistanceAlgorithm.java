@@ -0,0 +1,69 @@
+package plugins;
+
+import kernel.DataPoint;
+import kernel.DistanceKernel;
+import kernel.FeatureMatrix;
+import spi.DistanceAlgorithm;
+
+/**
+ * Class used to determine the chebyshev distance between two given datapoints, which is the largest difference
+ * between any one of their features.
+ */
+public class ChebyshevDistanceAlgorithm implements DistanceAlgorithm {
+
+    /**
+     * Measure the Chebyshev distance between two datapoints.
+     *
+     * @param datapoint1 the first datapoint which we are measuring from
+     * @param datapoint2 the datapoint we are measuring to
+     * @return returns the distance between the two datapoints
+     */
+    @Override
+    public double measureDistance(DataPoint datapoint1, DataPoint datapoint2) {
+        return measureComparisonDistance(datapoint1, datapoint2, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Measures the Chebyshev distance between two datapoints, stopping as soon as a single feature is further apart
+     * than the bound. The edit distance of each categorical feature is treated as the difference of that feature.
+     *
+     * @param datapoint1 the first datapoint which we are measuring from
+     * @param datapoint2 the datapoint we are measuring to
+     * @param upperBound the largest distance which needs to be measured exactly
+     * @return the distance when it is no larger than the bound, otherwise some value larger than the bound
+     */
+    @Override
+    public double measureComparisonDistance(DataPoint datapoint1, DataPoint datapoint2, double upperBound) {
+        int featureCount = datapoint1.sizeNumerical();
+        FeatureMatrix features1 = datapoint1.getDataset().getNumericalFeatures();
+        FeatureMatrix features2 = datapoint2.getDataset().getNumericalFeatures();
+        double[] values1 = features1.getArray();
+        double[] values2 = features2.getArray();
+
+        double largestDistance;
+        if (values1 != null && values2 != null) {
+            largestDistance = DistanceKernel.chebyshevDistance(values1, features1.getRowOffset(datapoint1.getRow()),
+                    values2, features2.getRowOffset(datapoint2.getRow()), featureCount, upperBound);
+        } else {
+            largestDistance = 0;
+            for (int i = 0; i < featureCount && largestDistance <= upperBound; i++) {
+                largestDistance = Math.max(largestDistance, Math.abs(datapoint1.getNumericalValue(i) - datapoint2.getNumericalValue(i)));
+            }
+        }
+
+        for (int i = 0; i < datapoint1.sizeCategorical() && largestDistance <= upperBound; i++) {
+            largestDistance = Math.max(largestDistance, DistanceKernel.categoricalDistance(datapoint1, datapoint2, i));
+        }
+        return largestDistance;
+    }
+
+    @Override
+    public String getName() {
+        return "Chebyshev Distance";
+    }
+
+    @Override
+    public boolean satisfiesTriangleInequality() {
+        return true;
+    }
+}
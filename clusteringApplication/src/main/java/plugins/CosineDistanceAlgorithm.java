@@ -0,0 +1,172 @@
+package plugins;
+
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.DistanceKernel;
+import kernel.FeatureMatrix;
+import spi.DistanceAlgorithm;
+
+import java.util.List;
+
+/**
+ * Class used to determine the cosine distance between two given datapoints, which depends only on the angle between
+ * their numerical features and not on their length. Categorical features are not used by this distance.
+ * <p>
+ * The length of every row of the dataset being clustered is worked out once when the algorithm is prepared, so each
+ * pair then only needs a dot product.
+ */
+public class CosineDistanceAlgorithm implements DistanceAlgorithm {
+    // the lengths of the rows of the most recently prepared dataset, set together so they are always consistent
+    private volatile PreparedNorms preparedNorms;
+
+    /**
+     * Measure the cosine distance between two datapoints.
+     *
+     * @param datapoint1 the first datapoint which we are measuring from
+     * @param datapoint2 the datapoint we are measuring to
+     * @return returns one minus the cosine of the angle between the two datapoints, from 0 when they point the same
+     * way to 2 when they point in opposite directions
+     */
+    @Override
+    public double measureDistance(DataPoint datapoint1, DataPoint datapoint2) {
+        PreparedNorms norms = preparedNorms;
+        return cosineDistance(datapoint1, norm(datapoint1, norms), datapoint2, norm(datapoint2, norms));
+    }
+
+    /**
+     * Measures the cosine distance from one data point to many, the length of the query is only worked out once.
+     *
+     * @param query     the data point which is measured from
+     * @param points    the data points which are measured to
+     * @param distances filled with the distance to each point, in the same order as the points
+     */
+    @Override
+    public void measureDistances(DataPoint query, List<DataPoint> points, double[] distances) {
+        PreparedNorms norms = preparedNorms;
+        double queryNorm = norm(query, norms);
+        for (int i = 0; i < points.size(); i++) {
+            DataPoint dp = points.get(i);
+            distances[i] = cosineDistance(query, queryNorm, dp, norm(dp, norms));
+        }
+    }
+
+    @Override
+    public void measureComparisonDistances(DataPoint query, List<DataPoint> points, double[] distances) {
+        measureDistances(query, points, distances);
+    }
+
+    /**
+     * Measures the cosine distance from each of a block of data points to each centroid, the lengths of the centroids
+     * are only worked out once for the whole block.
+     *
+     * @param points    the data points which are measured from
+     * @param centroids the centroids which are measured to
+     * @param distances filled row by row, the distance from point i to centroid j is at i * centroids.length + j
+     */
+    @Override
+    public void measureDistances(List<DataPoint> points, DataPoint[] centroids, double[] distances) {
+        PreparedNorms norms = preparedNorms;
+        double[] centroidNorms = new double[centroids.length];
+        for (int j = 0; j < centroids.length; j++) {
+            centroidNorms[j] = norm(centroids[j], norms);
+        }
+        for (int i = 0; i < points.size(); i++) {
+            DataPoint dp = points.get(i);
+            double pointNorm = norm(dp, norms);
+            for (int j = 0; j < centroids.length; j++) {
+                distances[i * centroids.length + j] = cosineDistance(dp, pointNorm, centroids[j], centroidNorms[j]);
+            }
+        }
+    }
+
+    @Override
+    public void measureComparisonDistances(List<DataPoint> points, DataPoint[] centroids, double[] distances) {
+        measureDistances(points, centroids, distances);
+    }
+
+    /**
+     * Works out the length of every data point up front. Only the most recently prepared dataset is remembered, and
+     * its lengths are no longer used once any of its features change.
+     *
+     * @param points the data points which are about to be clustered
+     */
+    @Override
+    public void prepare(List<DataPoint> points) {
+        if (points.isEmpty()) {
+            return;
+        }
+        Dataset dataset = points.get(0).getDataset();
+        double[] norms = new double[dataset.size()];
+        for (int row = 0; row < norms.length; row++) {
+            norms[row] = Math.sqrt(squaredLength(dataset, row));
+        }
+        preparedNorms = new PreparedNorms(dataset, dataset.getVersion(), norms);
+    }
+
+    @Override
+    public String getName() {
+        return "Cosine Distance";
+    }
+
+    private static double cosineDistance(DataPoint datapoint1, double norm1, DataPoint datapoint2, double norm2) {
+        if (norm1 == 0 || norm2 == 0) {
+            // a point with no length has no direction, so it is only close to another point with no length
+            return norm1 == norm2 ? 0 : 1;
+        }
+
+        int featureCount = datapoint1.sizeNumerical();
+        FeatureMatrix features1 = datapoint1.getDataset().getNumericalFeatures();
+        FeatureMatrix features2 = datapoint2.getDataset().getNumericalFeatures();
+        double[] values1 = features1.getArray();
+        double[] values2 = features2.getArray();
+
+        double dotProduct;
+        if (values1 != null && values2 != null) {
+            dotProduct = DistanceKernel.dotProduct(values1, features1.getRowOffset(datapoint1.getRow()),
+                    values2, features2.getRowOffset(datapoint2.getRow()), featureCount);
+        } else {
+            dotProduct = 0;
+            for (int i = 0; i < featureCount; i++) {
+                dotProduct += datapoint1.getNumericalValue(i) * datapoint2.getNumericalValue(i);
+            }
+        }
+        // rounding can take the cosine just outside of its range for points which point the same way
+        double cosine = Math.max(-1, Math.min(1, dotProduct / (norm1 * norm2)));
+        return 1 - cosine;
+    }
+
+    private static double norm(DataPoint dp, PreparedNorms norms) {
+        Dataset dataset = dp.getDataset();
+        if (norms != null && norms.dataset == dataset && norms.version == dataset.getVersion()) {
+            return norms.norms[dp.getRow()];
+        }
+        return Math.sqrt(squaredLength(dataset, dp.getRow()));
+    }
+
+    private static double squaredLength(Dataset dataset, int row) {
+        FeatureMatrix features = dataset.getNumericalFeatures();
+        double[] values = features.getArray();
+        if (values != null) {
+            int offset = features.getRowOffset(row);
+            return DistanceKernel.dotProduct(values, offset, values, offset, features.getColumnCount());
+        }
+        double total = 0;
+        for (int i = 0; i < features.getColumnCount(); i++) {
+            double value = features.get(row, i);
+            total += value * value;
+        }
+        return total;
+    }
+
+    private static class PreparedNorms {
+        private Dataset dataset;
+        private int version;
+        private double[] norms;
+
+        private PreparedNorms(Dataset dataset, int version, double[] norms) {
+            this.dataset = dataset;
+            this.version = version;
+            this.norms = norms;
+        }
+    }
+}
@@ -2,40 +2,74 @@ package plugins;
 
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import kernel.CompressedInput;
 import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.DatasetCache;
+import kernel.FileScanner;
+import kernel.FileSummary;
+import kernel.MappedFeatureMatrix;
+import kernel.PrefetchingBatchReader;
+import spi.BatchReader;
 import spi.FileParser;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Parses the requested database into a cluster ready state.
  */
 public class DefaultParser implements FileParser {
+    // common DB delimiters found during research
+    private static final String DELIMITERS = ",|\\s+|\\t+|;|:";
 
-    private InputStream iStream;
-    private InputStreamReader streamReader;
+    // files larger than this fraction of the maximum heap size have their features stored off the heap
+    private static final int OFF_HEAP_HEAP_FRACTION = 4;
+
+    // opened when the database is first read, so connecting a file which is then read from its cache holds nothing open
     private BufferedReader bufferReader;
 
+    private File dbFile;
     private String fileName;
-    private int numberOfLines;
-    private int featureNumber;
+    // volatile as batches are read on a background thread while these may be read on the GUI thread
+    private volatile int numberOfLines;
+    private volatile int featureNumber;
+
+    private boolean offHeapRequested;
+    private boolean offHeap;
 
     public String getName(){
         return "Default";
     }
 
     /**
-     * sets the data base which is to be used within the application.
+     * sets the data base which is to be used within the application. Compressed files are decompressed as they are read.
      * @param dbFile
-     * @throws FileNotFoundException
+     * @throws IOException
      */
     @Override
-    public void setDatabase(File dbFile) throws FileNotFoundException {
-        iStream = new FileInputStream(dbFile);
-        streamReader = new InputStreamReader(iStream);
-        bufferReader = new BufferedReader(streamReader);
+    public void setDatabase(File dbFile) throws IOException {
+        if (!dbFile.isFile()) {
+            throw new FileNotFoundException(dbFile.getPath() + " (No such file or directory)");
+        }
+        closeReader();
+        this.dbFile = dbFile;
         fileName = dbFile.getName();
+
+        // parsed features take up several times the space of their text, so large files are kept in a mapped file
+        offHeap = offHeapRequested || dbFile.length() > Runtime.getRuntime().maxMemory() / OFF_HEAP_HEAP_FRACTION;
+    }
+
+    /**
+     * Forces the numerical features of the next database read to be stored in a memory-mapped file rather than on the
+     * heap. Large files are always stored off the heap regardless of this setting.
+     *
+     * @param offHeap true if the features should be kept off the heap
+     */
+    public void setOffHeap(boolean offHeap) {
+        this.offHeapRequested = offHeap;
+        this.offHeap = offHeap;
     }
 
     /**
@@ -48,7 +82,8 @@ public class DefaultParser implements FileParser {
         // create a new file chooser which will allow the user to select the file they want to cluster
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Select File to cluster");
-        fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Text Files", "*.txt", "*.data", "*.csv"));
+        fileChooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Text Files", "*.txt", "*.data", "*.csv"),
+                new FileChooser.ExtensionFilter("Compressed Files", "*.gz", "*.zip"));
 
         // Ensure that old file remains if new file is not selected
         File newFile = fileChooser.showOpenDialog(stage);
@@ -62,7 +97,7 @@ public class DefaultParser implements FileParser {
      * @throws IOException the exception that is thrown if the database cannot be accessed
      */
     public String readLine() throws IOException {
-        return bufferReader.readLine();
+        return openReader().readLine();
     }
 
     /**
@@ -72,32 +107,134 @@ public class DefaultParser implements FileParser {
      * @throws IOException
      */
     public ArrayList<DataPoint> readDB() throws IOException {
-        ArrayList<DataPoint> database = new ArrayList<DataPoint>();
+        // large databases keep a binary copy next to them, which is used whenever it is still up to date
+        DatasetCache cache = DatasetCache.isWorthCaching(dbFile) ? new DatasetCache(dbFile, getName()) : null;
+        Dataset dataset = cache == null ? null : cache.load(offHeap);
+        if (dataset != null) {
+            closeReader();
+            featureNumber = dataset.getNumericalCount() + dataset.getCategoricalCount();
+            numberOfLines = dataset.size();
+            return dataset.getDataPoints();
+        }
 
         String DBline;
-        int lineNumber = 0;
         int featureNum = 0;
+        LineSplitter splitter = new LineSplitter();
+        BufferedReader bufferReader = openReader();
         // read until all lines in the DB
         while ((DBline = bufferReader.readLine()) != null && DBline.length() > 0) {
-            // Split line from DB and add to the array
-            DataPoint dp = seperateData(DBline);
+            // Split line from DB and sort the features by type
+            splitter.split(DBline);
 
             if (featureNum == 0) {
-                featureNum = dp.sizeTotal();
-                database.add(dp);
-                lineNumber++;
-            } else {
-                if (dp.sizeTotal() != featureNum) {
-                    System.err.println("Failed to read: " + dp.toString() + " due to incorrect feature size");
-                } else {
-                    database.add(dp);
-                    lineNumber++;
-                }
+                featureNum = splitter.getFeatureCount();
+                dataset = createDataset(splitter.numericalCount, splitter.categoricalValues.size());
+                splitter.fixLayout();
+            } else if (splitter.getFeatureCount() != featureNum || splitter.numericalCount != dataset.getNumericalCount()) {
+                // every row has to match the layout of the first so it can be stored in the same feature matrix
+                System.err.println("Failed to read: " + DBline + " due to incorrect feature size");
+                continue;
             }
+            dataset.addRow(DBline, splitter.numericalValues, splitter.getCategoricalValues());
         }
+        closeReader();
         featureNumber = featureNum;
-        numberOfLines = lineNumber;
-        return database;
+        numberOfLines = dataset == null ? 0 : dataset.size();
+
+        if (dataset == null) {
+            return new ArrayList<DataPoint>();
+        }
+        dataset.trimToSize();
+        if (cache != null) {
+            cache.save(dataset);
+        }
+        return dataset.getDataPoints();
+    }
+
+    /**
+     * Counts the lines of the database and takes the layout of the features from its first line, which is the line
+     * every other line is checked against when the database is read.
+     *
+     * @return the details of the connected database
+     * @throws IOException thrown if the database cannot be read
+     */
+    @Override
+    public FileSummary scanFile() throws IOException {
+        String firstLine;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(CompressedInput.open(dbFile)))) {
+            firstLine = reader.readLine();
+        }
+        if (firstLine == null || firstLine.length() == 0) {
+            return new FileSummary(0, 0, 0);
+        }
+        LineSplitter splitter = new LineSplitter();
+        splitter.split(firstLine);
+
+        long lineCount;
+        if (CompressedInput.isCompressed(dbFile)) {
+            try (InputStream in = CompressedInput.open(dbFile)) {
+                lineCount = FileScanner.countLines(in);
+            }
+        } else {
+            lineCount = FileScanner.countLines(dbFile);
+        }
+        return new FileSummary(lineCount, splitter.numericalCount, splitter.categoricalValues.size());
+    }
+
+    /**
+     * Reads the database a batch at a time. Each batch is held in a small dataset of its own so batches which have been
+     * used can be released, and the next batch is read on a background thread while the current one is being used.
+     *
+     * @param batchSize the number of rows in each batch
+     * @return the reader which returns the batches in file order
+     */
+    @Override
+    public BatchReader readBatches(int batchSize) {
+        featureNumber = 0;
+        numberOfLines = 0;
+        return new PrefetchingBatchReader(new StreamingBatchReader(batchSize));
+    }
+
+    /**
+     * Opens the connected database if it is not already being read. A compressed database starts decompressing here.
+     *
+     * @return the reader of the connected database
+     * @throws IOException thrown if the database cannot be opened
+     */
+    private BufferedReader openReader() throws IOException {
+        if (bufferReader == null) {
+            bufferReader = new BufferedReader(new InputStreamReader(CompressedInput.open(dbFile)));
+        }
+        return bufferReader;
+    }
+
+    /**
+     * Closes the connected database if it is being read, which also stops decompressing it.
+     *
+     * @throws IOException thrown if the database cannot be closed
+     */
+    private void closeReader() throws IOException {
+        if (bufferReader != null) {
+            BufferedReader reader = bufferReader;
+            bufferReader = null;
+            reader.close();
+        }
+    }
+
+    /**
+     * Creates the dataset which the parsed samples are stored in, using mapped storage if the file is too large for
+     * the heap.
+     *
+     * @param numericalCount   the number of numerical features in each sample
+     * @param categoricalCount the number of categorical features in each sample
+     * @return the empty dataset
+     * @throws IOException thrown if the mapped storage cannot be created
+     */
+    private Dataset createDataset(int numericalCount, int categoricalCount) throws IOException {
+        if (offHeap) {
+            return new Dataset(new MappedFeatureMatrix(numericalCount), new MappedFeatureMatrix(numericalCount), categoricalCount);
+        }
+        return new Dataset(numericalCount, categoricalCount);
     }
 
     /**
@@ -109,7 +246,7 @@ public class DefaultParser implements FileParser {
     public DataPoint seperateData(String DBline) {
 
         // Splits string based on common DB delimiters found during research
-        String[] dataPointAsString = DBline.split(",|\\s+|\\t+|;|:");
+        String[] dataPointAsString = DBline.split(DELIMITERS);
 
 
         DataPoint dp = new DataPoint(DBline);
@@ -125,6 +262,114 @@ public class DefaultParser implements FileParser {
         return dp;
     }
 
+    /**
+     * Reads lines from the connected database until a batch is full. Lines are checked against the layout of the first
+     * line in the same way as when the whole database is read.
+     */
+    private class StreamingBatchReader implements BatchReader {
+        private int batchSize;
+        private boolean finished;
+
+        // the reader runs on the prefetching thread, so it keeps its own buffers and layout and only publishes the counts
+        private LineSplitter splitter = new LineSplitter();
+        private int layoutFeatureCount;
+        private int layoutNumericalCount;
+        private int lineCount;
+
+        StreamingBatchReader(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public ArrayList<DataPoint> nextBatch() throws IOException {
+            Dataset batch = null;
+            String DBline;
+            while (!finished && (batch == null || batch.size() < batchSize)) {
+                DBline = openReader().readLine();
+                if (DBline == null || DBline.length() == 0) {
+                    finished = true;
+                    break;
+                }
+                splitter.split(DBline);
+
+                if (layoutFeatureCount == 0) {
+                    layoutFeatureCount = splitter.getFeatureCount();
+                    layoutNumericalCount = splitter.numericalCount;
+                    splitter.fixLayout();
+                    featureNumber = layoutFeatureCount;
+                } else if (splitter.getFeatureCount() != layoutFeatureCount || splitter.numericalCount != layoutNumericalCount) {
+                    System.err.println("Failed to read: " + DBline + " due to incorrect feature size");
+                    continue;
+                }
+                if (batch == null) {
+                    batch = new Dataset(layoutNumericalCount, layoutFeatureCount - layoutNumericalCount);
+                }
+                batch.addRow(DBline, splitter.numericalValues, splitter.getCategoricalValues());
+            }
+
+            if (batch == null) {
+                return null;
+            }
+            lineCount += batch.size();
+            numberOfLines = lineCount;
+            return batch.getDataPoints();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeReader();
+        }
+    }
+
+    /**
+     * Splits lines of the database into numerical and categorical features. The buffers are reused for every line, as
+     * the dataset copies the values into its own storage, so each reader of the database needs a splitter of its own.
+     */
+    private static class LineSplitter {
+        private double[] numericalValues = new double[16];
+        private int numericalCount;
+        private ArrayList<String> categoricalValues = new ArrayList<>();
+        private String[] categoricalArray = new String[0];
+
+        /**
+         * Splits a line of the database into the numerical and categorical buffers.
+         *
+         * @param DBline the line which is to be split
+         */
+        void split(String DBline) {
+            String[] dataPointAsString = DBline.split(DELIMITERS);
+            numericalCount = 0;
+            categoricalValues.clear();
+            for (int i = 0; i < dataPointAsString.length; i++) {
+                //try and parse as a number, if that fails, assume its categorical
+                try {
+                    double d = Double.parseDouble(dataPointAsString[i]);
+                    if (numericalCount == numericalValues.length) {
+                        numericalValues = Arrays.copyOf(numericalValues, numericalCount * 2);
+                    }
+                    numericalValues[numericalCount++] = d;
+                } catch (NumberFormatException failedToParseAsDouble) {
+                    categoricalValues.add(dataPointAsString[i]);
+                }
+            }
+        }
+
+        /**
+         * Sizes the categorical array to the layout of the last line split, which every later line has to match.
+         */
+        void fixLayout() {
+            categoricalArray = new String[categoricalValues.size()];
+        }
+
+        int getFeatureCount() {
+            return numericalCount + categoricalValues.size();
+        }
+
+        String[] getCategoricalValues() {
+            return categoricalValues.toArray(categoricalArray);
+        }
+    }
+
     public String getFileName() {
         return fileName;
     }
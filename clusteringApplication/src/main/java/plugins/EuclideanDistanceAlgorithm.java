@@ -1,11 +1,14 @@
 package plugins;
 
+import kernel.CategoricalColumn;
 import kernel.Cluster;
 import kernel.DataPoint;
-import org.apache.commons.text.similarity.LevenshteinDistance;
+import kernel.DistanceKernel;
+import kernel.FeatureMatrix;
 import spi.DistanceAlgorithm;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Classed used to determine the euclidean distance between two given datapoints.
@@ -20,23 +23,220 @@ public class EuclideanDistanceAlgorithm implements DistanceAlgorithm {
      * @return returns the distance between the two datapoints
      */
     public double measureDistance(DataPoint datapoint1, DataPoint datapoint2) {
-        double squaredTotalDistance = 0;
+        // squire root is applied before returning so that proper distance measurement is returned
+        return Math.sqrt(measureComparisonDistance(datapoint1, datapoint2));
+    }
 
-        // for each dimension find the squired distance between the two dimensions and add it to the total sum
-        // start by calculating distance between numerical values
-        for (int i = 0; i < datapoint1.sizeNumerical(); i++) {
-            squaredTotalDistance += Math.pow((datapoint1.getNumerical(i) - datapoint2.getNumerical(i)), 2);
+    /**
+     * Measures the squared Euclidean distance between two datapoints. This orders pairs in the same way as the
+     * distance but does not need a square root, so it is used when searching for the closest datapoint.
+     *
+     * @param datapoint1 the first datapoint which we are measuring from
+     * @param datapoint2 the datapoint we are measuring to
+     * @return returns the squared distance between the two datapoints
+     */
+    @Override
+    public double measureComparisonDistance(DataPoint datapoint1, DataPoint datapoint2) {
+        return measureComparisonDistance(datapoint1, datapoint2, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Measures the squared Euclidean distance between two datapoints, stopping as soon as it is known to be larger than
+     * the bound. Categorical features are compared last, as their edit distance is the most expensive part.
+     *
+     * @param datapoint1 the first datapoint which we are measuring from
+     * @param datapoint2 the datapoint we are measuring to
+     * @param upperBound the largest squared distance which needs to be measured exactly
+     * @return the squared distance when it is no larger than the bound, otherwise some value larger than the bound
+     */
+    @Override
+    public double measureComparisonDistance(DataPoint datapoint1, DataPoint datapoint2, double upperBound) {
+        int featureCount = datapoint1.sizeNumerical();
+
+        // the features are read straight from the dataset arrays when they are held on the heap
+        FeatureMatrix features1 = datapoint1.getDataset().getNumericalFeatures();
+        double[] values1 = features1.getArray();
+        int offset1 = 0;
+        if (values1 == null) {
+            values1 = DistanceKernel.copyNumericalValues(datapoint1, DistanceKernel.scratchRow(0, featureCount));
+        } else {
+            offset1 = features1.getRowOffset(datapoint1.getRow());
         }
+        FeatureMatrix features2 = datapoint2.getDataset().getNumericalFeatures();
+        double[] values2 = features2.getArray();
+        int offset2 = 0;
+        if (values2 == null) {
+            values2 = DistanceKernel.copyNumericalValues(datapoint2, DistanceKernel.scratchRow(1, featureCount));
+        } else {
+            offset2 = features2.getRowOffset(datapoint2.getRow());
+        }
+
+        // start by calculating the squared distance between numerical values
+        double squaredTotalDistance;
+        if (upperBound == Double.POSITIVE_INFINITY) {
+            squaredTotalDistance = DistanceKernel.squaredDistance(values1, offset1, values2, offset2, featureCount);
+        } else {
+            squaredTotalDistance = DistanceKernel.squaredDistance(values1, offset1, values2, offset2, featureCount, upperBound);
+            if (squaredTotalDistance > upperBound) {
+                return squaredTotalDistance;
+            }
+        }
+        return addCategoricalDistance(datapoint1, datapoint2, squaredTotalDistance, upperBound);
+    }
 
+    /**
+     * @param comparisonDistance the squared distance between two datapoints
+     * @return the distance between the two datapoints
+     */
+    @Override
+    public double toDistance(double comparisonDistance) {
+        return Math.sqrt(comparisonDistance);
+    }
+
+    /**
+     * Measures the distance from one data point to many. The features of the query are read once, and the features
+     * of each point are read straight from the array of its dataset when it is held on the heap.
+     *
+     * @param query     the data point which is measured from
+     * @param points    the data points which are measured to
+     * @param distances filled with the distance to each point, in the same order as the points
+     */
+    @Override
+    public void measureDistances(DataPoint query, List<DataPoint> points, double[] distances) {
+        measureComparisonDistances(query, points, distances);
+        for (int i = 0; i < points.size(); i++) {
+            distances[i] = Math.sqrt(distances[i]);
+        }
+    }
+
+    /**
+     * Measures the squared distance from one data point to many.
+     *
+     * @param query     the data point which is measured from
+     * @param points    the data points which are measured to
+     * @param distances filled with the squared distance to each point, in the same order as the points
+     */
+    @Override
+    public void measureComparisonDistances(DataPoint query, List<DataPoint> points, double[] distances) {
+        int featureCount = query.sizeNumerical();
+        double[] queryValues = DistanceKernel.copyNumericalValues(query, new double[featureCount]);
+        double[] pointValues = new double[featureCount];
+
+        for (int i = 0; i < points.size(); i++) {
+            DataPoint dp = points.get(i);
+            FeatureMatrix features = dp.getDataset().getNumericalFeatures();
+            double[] values = features.getArray();
+            int offset = 0;
+            if (values == null) {
+                values = DistanceKernel.copyNumericalValues(dp, pointValues);
+            } else {
+                offset = features.getRowOffset(dp.getRow());
+            }
+            double squaredTotalDistance = DistanceKernel.squaredDistance(queryValues, 0, values, offset, featureCount);
+            distances[i] = addCategoricalDistance(query, dp, squaredTotalDistance, Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Measures the distance from each of a block of data points to each centroid. The centroid features are read once
+     * for the whole block, and the features of each point are only looked up once for all of the centroids.
+     *
+     * @param points    the data points which are measured from
+     * @param centroids the centroids which are measured to
+     * @param distances filled row by row, the distance from point i to centroid j is at i * centroids.length + j
+     */
+    @Override
+    public void measureDistances(List<DataPoint> points, DataPoint[] centroids, double[] distances) {
+        measureComparisonDistances(points, centroids, distances);
+        for (int i = 0; i < points.size() * centroids.length; i++) {
+            distances[i] = Math.sqrt(distances[i]);
+        }
+    }
+
+    /**
+     * Measures the squared distance from each of a block of data points to each centroid.
+     *
+     * @param points    the data points which are measured from
+     * @param centroids the centroids which are measured to
+     * @param distances filled row by row, the squared distance from point i to centroid j is at
+     *                  i * centroids.length + j
+     */
+    @Override
+    public void measureComparisonDistances(List<DataPoint> points, DataPoint[] centroids, double[] distances) {
+        if (points.isEmpty()) {
+            return;
+        }
+        int featureCount = points.get(0).sizeNumerical();
+        double[][] centroidValues = new double[centroids.length][];
+        for (int j = 0; j < centroids.length; j++) {
+            centroidValues[j] = DistanceKernel.copyNumericalValues(centroids[j], new double[featureCount]);
+        }
+        double[] pointValues = new double[featureCount];
+
+        for (int i = 0; i < points.size(); i++) {
+            DataPoint dp = points.get(i);
+            FeatureMatrix features = dp.getDataset().getNumericalFeatures();
+            double[] values = features.getArray();
+            int offset = 0;
+            if (values == null) {
+                values = DistanceKernel.copyNumericalValues(dp, pointValues);
+            } else {
+                offset = features.getRowOffset(dp.getRow());
+            }
+
+            int rowStart = i * centroids.length;
+            for (int j = 0; j < centroids.length; j++) {
+                double squaredTotalDistance = DistanceKernel.squaredDistance(values, offset, centroidValues[j], 0, featureCount);
+                distances[rowStart + j] = addCategoricalDistance(dp, centroids[j], squaredTotalDistance, Double.POSITIVE_INFINITY);
+            }
+        }
+    }
+
+    /**
+     * Adds the squared edit distance of each categorical feature to a running total. Each edit distance needs at least
+     * as many edits as the difference in length of the two values, so values which would take the total over the bound
+     * are skipped without working out their edit distance.
+     *
+     * @param datapoint1           the first datapoint which we are measuring from
+     * @param datapoint2           the datapoint we are measuring to
+     * @param squaredTotalDistance the squared distance of the numerical features
+     * @param upperBound           the largest squared distance which needs to be measured exactly
+     * @return the squared distance of every feature, or some value larger than the bound
+     */
+    private static double addCategoricalDistance(DataPoint datapoint1, DataPoint datapoint2, double squaredTotalDistance, double upperBound) {
         // calculate difference between categorical data and add to total distance
-        LevenshteinDistance distance = new LevenshteinDistance();
         for (int i = 0; i < datapoint1.sizeCategorical(); i++) {
-            int diff = distance.apply(datapoint1.getCategorical(i), datapoint2.getCategorical(i));
-            squaredTotalDistance += Math.pow((diff), 2);
+            String value1 = datapoint1.getCategorical(i);
+            String value2 = datapoint2.getCategorical(i);
+            if (upperBound != Double.POSITIVE_INFINITY) {
+                int lengthDifference = Math.abs(value1.length() - value2.length());
+                double lowerBound = squaredTotalDistance + lengthDifference * lengthDifference;
+                if (lowerBound > upperBound) {
+                    return lowerBound;
+                }
+            }
+
+            CategoricalColumn column = datapoint1.getCategoricalColumn(i);
+            int diff;
+            if (column == datapoint2.getCategoricalColumn(i)) {
+                // both values are from the same dataset so the distance can be looked up from their codes
+                diff = column.distance(datapoint1.getCategoricalCode(i), datapoint2.getCategoricalCode(i));
+            } else {
+                diff = CategoricalColumn.measureEditDistance(value1, value2);
+            }
+            squaredTotalDistance += diff * diff;
         }
+        return squaredTotalDistance;
+    }
 
-        // squire root is applied before returning so that proper distance measurement is returned
-        return Math.sqrt(squaredTotalDistance);
+    @Override
+    public boolean isPlainEuclidean() {
+        return true;
+    }
+
+    @Override
+    public boolean satisfiesTriangleInequality() {
+        return true;
     }
 
     @Override
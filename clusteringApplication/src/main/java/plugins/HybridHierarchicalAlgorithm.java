@@ -0,0 +1,312 @@
+package plugins;
+
+import com.google.auto.service.AutoService;
+import javafx.scene.control.*;
+import javafx.scene.layout.GridPane;
+import kernel.Cluster;
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.DistanceBlocks;
+import kernel.DistanceMatrix;
+import kernel.Linkage;
+import kernel.MeanNormalization;
+import kernel.MergeTree;
+import kernel.NearestNeighborChain;
+import spi.ClusterAlgorithm;
+import spi.DistanceAlgorithm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Hierarchical clustering for datasets too large for a distance matrix between every pair of data points. The data
+ * points are first compressed into micro-clusters with k-means, and the micro-clusters are then clustered
+ * hierarchically by their centroids, with the number of data points in each micro-cluster used as its size by the
+ * linkage. Every data point ends up in the final cluster of its micro-cluster.
+ * <p>
+ * Only the micro-clusters need a distance matrix, so the memory used grows with the square of the number of
+ * micro-clusters rather than the number of data points. Datasets with no more data points than micro-clusters are
+ * clustered exactly, with each data point as its own micro-cluster. Fewer micro-clusters are used when their distance
+ * matrix would not fit in the free memory.
+ */
+@AutoService(ClusterAlgorithm.class)
+public class HybridHierarchicalAlgorithm implements ClusterAlgorithm {
+    private static final int DEFAULT_MICRO_CLUSTERS = 2000;
+    // the distance matrix of this many micro-clusters, and the copy changed by the linkage, take 800MB
+    private static final int MAX_MICRO_CLUSTERS = 10000;
+
+    // k-means only needs to spread the micro-clusters over the data, so a few rounds are enough
+    private static final int MICRO_CLUSTER_ROUNDS = 5;
+
+    private int clusterCount;
+    private int microClusterCount = DEFAULT_MICRO_CLUSTERS;
+    private Linkage linkage = Linkage.WARD;
+
+    /**
+     * The method which implements the bulk of the clustering algorithm.
+     *
+     * @param inputData         the collection of data which is to be clustered
+     * @param distanceAlgorithm the subroutine used to measure the distance between data points and micro-clusters
+     * @return an array representing a cluster of datapoints
+     */
+    @Override
+    public Cluster[] clusterData(ArrayList<DataPoint> inputData, DistanceAlgorithm distanceAlgorithm) {
+        if (inputData.isEmpty()) {
+            return new Cluster[0];
+        }
+        MeanNormalization scaler = new MeanNormalization();
+        inputData = scaler.scaleDataset(inputData);
+        distanceAlgorithm.prepare(inputData);
+
+        ArrayList<Cluster> microClusters = compress(inputData, distanceAlgorithm);
+        ArrayList<DataPoint> centroids = calculateCentroids(microClusters);
+        int[] weights = new int[microClusters.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = microClusters.get(i).size();
+        }
+
+        distanceAlgorithm.prepare(centroids);
+        MergeTree mergeTree = clusterMicroClusters(centroids, weights, distanceAlgorithm);
+
+        // every data point joins the final cluster of its micro-cluster, in the order the centroids are cut
+        int finalClusterCount = Math.max(1, Math.min(clusterCount, microClusters.size()));
+        Cluster[] centroidClusters = mergeTree.cutToCount(centroids, finalClusterCount);
+        Cluster[] outputClusters = new Cluster[centroidClusters.length];
+        for (int i = 0; i < centroidClusters.length; i++) {
+            outputClusters[i] = new Cluster();
+            for (int j = 0; j < centroidClusters[i].size(); j++) {
+                Cluster microCluster = microClusters.get(centroidClusters[i].get(j).getRow());
+                for (int k = 0; k < microCluster.size(); k++) {
+                    outputClusters[i].add(microCluster.get(k));
+                }
+            }
+        }
+        return outputClusters;
+    }
+
+    /**
+     * Compresses the data points into micro-clusters with k-means, or gives each data point its own micro-cluster if
+     * there are no more data points than micro-clusters.
+     *
+     * @param inputData         the scaled data points
+     * @param distanceAlgorithm the subroutine used to find the closest micro-cluster of each data point
+     * @return the micro-clusters, none of which are empty
+     */
+    public ArrayList<Cluster> compress(ArrayList<DataPoint> inputData, DistanceAlgorithm distanceAlgorithm) {
+        // fewer micro-clusters are used when the memory is too low for the distance matrix of the chosen number
+        int targetCount = Math.min(microClusterCount, MAX_MICRO_CLUSTERS);
+        while (!fitsInMemory(targetCount) && targetCount / 2 >= Math.max(clusterCount, 1)) {
+            targetCount /= 2;
+        }
+
+        ArrayList<Cluster> microClusters = new ArrayList<>();
+        if (inputData.size() <= targetCount) {
+            for (DataPoint dp : inputData) {
+                microClusters.add(new Cluster(dp));
+            }
+            return microClusters;
+        }
+
+        // the rounds are driven here rather than by k-means itself so the centroids keep their categorical features
+        KMeansAlgorithm kMeans = new KMeansAlgorithm();
+        kMeans.setkClusters(targetCount);
+        DataPoint[] centroids = kMeans.chooseInitalCentroids(inputData);
+        DistanceBlocks pointBlocks = DistanceBlocks.canMeasure(distanceAlgorithm, inputData) ? new DistanceBlocks(inputData) : null;
+        for (int round = 0; ; round++) {
+            microClusters.clear();
+            for (Cluster cluster : kMeans.clusterRound(inputData, centroids, distanceAlgorithm, pointBlocks)) {
+                // a centroid can lose every data point to an identical centroid
+                if (cluster.size() > 0) {
+                    microClusters.add(cluster);
+                }
+            }
+            if (round == MICRO_CLUSTER_ROUNDS - 1) {
+                break;
+            }
+            centroids = calculateCentroids(microClusters).toArray(new DataPoint[0]);
+        }
+        return microClusters;
+    }
+
+    /**
+     * Works out the centroid of each micro-cluster, using the mean of each numerical feature and the most common value
+     * of each categorical feature. The centroids are held in a single dataset so they can be measured like any other
+     * data points.
+     *
+     * @param microClusters the micro-clusters, none of which are empty
+     * @return the centroid of each micro-cluster in the same order
+     */
+    public ArrayList<DataPoint> calculateCentroids(ArrayList<Cluster> microClusters) {
+        DataPoint sample = microClusters.get(0).get(0);
+        int numericalCount = sample.sizeNumerical();
+        int categoricalCount = sample.sizeCategorical();
+        Dataset centroids = new Dataset(numericalCount, categoricalCount);
+
+        double[] numericalData = new double[numericalCount];
+        String[] categoricalData = new String[categoricalCount];
+        for (Cluster cluster : microClusters) {
+            for (int k = 0; k < numericalCount; k++) {
+                double total = 0;
+                for (int j = 0; j < cluster.size(); j++) {
+                    total += cluster.get(j).getNumericalValue(k);
+                }
+                numericalData[k] = total / cluster.size();
+            }
+            for (int k = 0; k < categoricalCount; k++) {
+                HashMap<String, Integer> counts = new HashMap<>();
+                int bestCount = 0;
+                for (int j = 0; j < cluster.size(); j++) {
+                    String value = cluster.get(j).getCategorical(k);
+                    int count = counts.merge(value, 1, Integer::sum);
+                    if (count > bestCount) {
+                        bestCount = count;
+                        categoricalData[k] = value;
+                    }
+                }
+            }
+            centroids.addRow(null, numericalData, categoricalData);
+        }
+        return centroids.getDataPoints();
+    }
+
+    /**
+     * Builds the hierarchy of the micro-clusters. The starting distance between two micro-clusters is the distance
+     * between their centroids, or for ward linkage the increase in squared distances to the centroid from merging
+     * them, so micro-clusters holding many data points are kept apart just as those data points would be.
+     *
+     * @param centroids         the centroids of the micro-clusters
+     * @param weights           the number of data points in each micro-cluster
+     * @param distanceAlgorithm the subroutine used to measure the distance between centroids
+     * @return every merge in the order it is made
+     * @throws IllegalStateException thrown if the distance matrix of the micro-clusters would not fit in memory
+     */
+    public MergeTree clusterMicroClusters(ArrayList<DataPoint> centroids, int[] weights, DistanceAlgorithm distanceAlgorithm) {
+        if (!fitsInMemory(centroids.size())) {
+            throw new IllegalStateException("There is not enough memory for the distances between " + centroids.size() + " micro-clusters");
+        }
+        double[] distances = DistanceMatrix.compute(centroids, distanceAlgorithm).toArray();
+        int index = 0;
+        for (int i = 0; i < weights.length; i++) {
+            for (int j = i + 1; j < weights.length; j++) {
+                double distance = distanceAlgorithm.toDistance(distances[index]);
+                if (linkage == Linkage.WARD) {
+                    distance = 2.0 * weights[i] * weights[j] / (weights[i] + weights[j]) * distance * distance;
+                } else if (linkage.usesSquaredDistances()) {
+                    distance = distance * distance;
+                }
+                distances[index++] = distance;
+            }
+        }
+        return NearestNeighborChain.cluster(distances, weights, linkage);
+    }
+
+    /**
+     * Checks whether a distance matrix and the copy changed by the linkage would both fit in the free memory.
+     *
+     * @param pointCount the number of micro-clusters
+     * @return true if the micro-clusters can be clustered in memory
+     */
+    private static boolean fitsInMemory(int pointCount) {
+        Runtime runtime = Runtime.getRuntime();
+        long freeMemory = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return pointCount <= DistanceMatrix.MAX_POINTS && 2 * DistanceMatrix.byteSize(pointCount) <= freeMemory;
+    }
+
+    /**
+     * Returns the name of the algorithm so it can be displayed as an option in the GUI
+     *
+     * @return the name of the algorithm
+     */
+    @Override
+    public String getName() {
+        return "Hybrid Hierarchical";
+    }
+
+    /**
+     * Displays the user settings that will be used within the algorithm.
+     */
+    @Override
+    public void displaySettingsPopup(ArrayList<DataPoint> inputData) {
+        Dialog<String[]> clusterSettingsPopup = new Dialog<>();
+        clusterSettingsPopup.setTitle("Cluster Settings");
+        clusterSettingsPopup.setHeaderText("Please select the following algorithm settings");
+
+        Label clusterNumberLabel = new Label("Number of clusters: ");
+        TextField clusterNumberInput = new TextField();
+        Label microClusterLabel = new Label("Number of micro-clusters: ");
+        TextField microClusterInput = new TextField(String.valueOf(microClusterCount));
+        Label linkageLabel = new Label("Linkage:");
+        ChoiceBox<Linkage> linkageInput = new ChoiceBox<>();
+        linkageInput.getItems().addAll(Linkage.values());
+        linkageInput.setValue(linkage);
+
+        GridPane dialogContent = new GridPane();
+        dialogContent.add(clusterNumberLabel, 1, 1);
+        dialogContent.add(clusterNumberInput, 2, 1);
+        dialogContent.add(microClusterLabel, 1, 2);
+        dialogContent.add(microClusterInput, 2, 2);
+        dialogContent.add(linkageLabel, 1, 3);
+        dialogContent.add(linkageInput, 2, 3);
+
+        ButtonType confirmButton = new ButtonType("Submit", ButtonBar.ButtonData.OK_DONE);
+        clusterSettingsPopup.getDialogPane().getButtonTypes().add(confirmButton);
+        clusterSettingsPopup.getDialogPane().setContent(dialogContent);
+
+        clusterSettingsPopup.showAndWait();
+        linkage = linkageInput.getValue();
+
+        // try to read the user input as a number, if this fails then print an error and try again
+        try {
+            int clusterChoice = Integer.valueOf(clusterNumberInput.getText());
+            int microClusterChoice = Integer.valueOf(microClusterInput.getText());
+            if (clusterChoice <= 0 || clusterChoice >= inputData.size() || microClusterChoice < clusterChoice
+                    || microClusterChoice > MAX_MICRO_CLUSTERS) {
+                invalidSettingInputs(inputData);
+            } else {
+                clusterCount = clusterChoice;
+                microClusterCount = microClusterChoice;
+            }
+        } catch (NumberFormatException e) {
+            invalidSettingInputs(inputData);
+        }
+    }
+
+    /**
+     * Displays a warning to the user when invalid inputs are provided at the cluster setting screen
+     */
+    public void invalidSettingInputs(ArrayList<DataPoint> inputData) {
+        Alert nonRoundValue = new Alert(Alert.AlertType.ERROR);
+        nonRoundValue.setTitle("Error!");
+        nonRoundValue.setHeaderText("Warning: Invalid inputs");
+        nonRoundValue.setContentText("The cluster number must be greater than 0 and less than the number of samples, " +
+                "and there must be at least as many micro-clusters as clusters and at most " + MAX_MICRO_CLUSTERS + " micro-clusters");
+
+        nonRoundValue.showAndWait();
+
+        displaySettingsPopup(inputData);
+    }
+
+    public int getClusterCount() {
+        return clusterCount;
+    }
+
+    public void setClusterCount(int clusterCount) {
+        this.clusterCount = clusterCount;
+    }
+
+    public int getMicroClusterCount() {
+        return microClusterCount;
+    }
+
+    public void setMicroClusterCount(int microClusterCount) {
+        this.microClusterCount = microClusterCount;
+    }
+
+    public Linkage getLinkage() {
+        return linkage;
+    }
+
+    public void setLinkage(Linkage linkage) {
+        this.linkage = linkage;
+    }
+}
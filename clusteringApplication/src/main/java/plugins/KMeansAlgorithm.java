@@ -3,13 +3,20 @@ package plugins;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
 import kernel.Cluster;
+import kernel.DistanceBlocks;
+import kernel.FeatureStatistics;
 import kernel.MeanNormalization;
+import spi.BatchReader;
 import spi.ClusterAlgorithm;
 import kernel.DataPoint;
 import com.google.auto.service.AutoService;
 import spi.DistanceAlgorithm;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -17,9 +24,19 @@ import java.util.Random;
  */
 @AutoService(ClusterAlgorithm.class)
 public class KMeansAlgorithm implements ClusterAlgorithm {
+    // the number of data points whose distances to the centroids are measured together
+    private static final int BLOCK_SIZE = 1024;
+
+    // bounds which are further apart than this fraction of their size are not put down to rounding
+    private static final double BOUND_TOLERANCE = 1e-9;
 
     private int kClusters;
     private int numberOfRounds;
+    private boolean elkan;
+
+    // the distances from data points to centroids measured and skipped by the last call to clusterData
+    private long distancesMeasured;
+    private long distancesSkipped;
 
 
     /**
@@ -45,29 +62,25 @@ public class KMeansAlgorithm implements ClusterAlgorithm {
 
         MeanNormalization scaler = new MeanNormalization();
         inputData = scaler.scaleDataset(inputData);
+        distanceAlgorithm.prepare(inputData);
         DataPoint[] centroidPositions = chooseInitalCentroids(inputData);
+        distancesMeasured = 0;
+        distancesSkipped = 0;
 
-        for (DataPoint dp : inputData) {
-            double minDistance = Double.MAX_VALUE;
-            for (DataPoint centroid : centroidPositions) {
-                //check to see if datapoint is already in the same position as the centroid to prevent performing unnecessary distance calculations
-                if (centroid.equals(dp)) {
-                    minDistance = 0;
-                } else {
-                    double distance = distanceAlgorithm.measureDistance(dp, centroid);
-                    if (distance < minDistance) {
-                        minDistance = distance;
-                    }
-                }
-            }
+        // the features of the data points are prepared once and used for every round
+        DistanceBlocks pointBlocks = DistanceBlocks.canMeasure(distanceAlgorithm, inputData) ? new DistanceBlocks(inputData) : null;
+
+        if (elkan && canKeepBounds(inputData.size(), distanceAlgorithm)) {
+            outputClusters = clusterElkan(inputData, centroidPositions, distanceAlgorithm, pointBlocks);
+            return outputClusters;
         }
 
-        outputClusters = clusterRound(inputData, centroidPositions, distanceAlgorithm);
+        outputClusters = clusterRound(inputData, centroidPositions, distanceAlgorithm, pointBlocks);
         for (int i = 0; i < numberOfRounds; i++) {
-            DataPoint[] newCentroidPositions = calculateNewCentroids(outputClusters);
+            DataPoint[] newCentroidPositions = calculateNewCentroids(outputClusters, centroidPositions);
             if (checkForUpdatedCentroids(centroidPositions, newCentroidPositions)) {
                 centroidPositions = newCentroidPositions;
-                clusterRound(inputData, centroidPositions, distanceAlgorithm);
+                outputClusters = clusterRound(inputData, centroidPositions, distanceAlgorithm, pointBlocks);
             } else {
                 return outputClusters;
             }
@@ -76,6 +89,258 @@ public class KMeansAlgorithm implements ClusterAlgorithm {
         return outputClusters;
     }
 
+    /**
+     * Runs the same rounds as clusterData with Elkan's method. An upper bound on the distance from each data point to
+     * its centroid and a lower bound on its distance to every other centroid are kept, and when the centroids move the
+     * bounds are loosened by how far they moved instead of being measured again. A centroid is then only measured when
+     * neither its lower bound nor half its distance from the current centroid shows that it is further away. Ties are
+     * broken as in clusterRound, so the clusters are the same as when every distance is measured.
+     *
+     * @param inputData         the scaled data points
+     * @param centroidPositions the starting centroids
+     * @param distanceAlgorithm method for determining distance, which must satisfy the triangle inequality
+     * @param pointBlocks       the features of the data points for the block engine, or null if it cannot be used
+     * @return the data points grouped into k clusters
+     */
+    private Cluster[] clusterElkan(ArrayList<DataPoint> inputData, DataPoint[] centroidPositions, DistanceAlgorithm distanceAlgorithm,
+                                   DistanceBlocks pointBlocks) {
+        int n = inputData.size();
+        int k = centroidPositions.length;
+        int[] assignments = new int[n];
+        double[] upperBounds = new double[n];
+        double[] lowerBounds = new double[n * k];
+
+        // the first round measures every distance just as clusterRound does, which sets every bound exactly
+        double[] distances = new double[Math.min(BLOCK_SIZE, n) * k];
+        DistanceBlocks centroidBlocks = prepareCentroids(centroidPositions, distanceAlgorithm, pointBlocks);
+        for (int blockStart = 0; blockStart < n; blockStart += BLOCK_SIZE) {
+            int blockEnd = Math.min(blockStart + BLOCK_SIZE, n);
+            measureBlock(inputData, blockStart, blockEnd, centroidPositions, distanceAlgorithm, pointBlocks, centroidBlocks, distances);
+            for (int i = blockStart; i < blockEnd; i++) {
+                int offset = (i - blockStart) * k;
+                for (int c = 0; c < k; c++) {
+                    lowerBounds[i * k + c] = distanceAlgorithm.toDistance(distances[offset + c]);
+                }
+                assignments[i] = closestCentroid(inputData.get(i), centroidPositions, distances, offset);
+                upperBounds[i] = lowerBounds[i * k + assignments[i]];
+            }
+        }
+        distancesMeasured += (long) n * k;
+        Cluster[] clusters = groupByCentroid(inputData, assignments, k);
+
+        for (int round = 0; round < numberOfRounds; round++) {
+            DataPoint[] newCentroidPositions = calculateNewCentroids(clusters, centroidPositions);
+            if (!checkForUpdatedCentroids(centroidPositions, newCentroidPositions)) {
+                break;
+            }
+
+            // the bounds of each data point are loosened by how far each centroid moved
+            double[] movements = new double[k];
+            for (int c = 0; c < k; c++) {
+                if (newCentroidPositions[c] != centroidPositions[c]) {
+                    movements[c] = distanceAlgorithm.toDistance(
+                            distanceAlgorithm.measureComparisonDistance(centroidPositions[c], newCentroidPositions[c]));
+                }
+            }
+            centroidPositions = newCentroidPositions;
+
+            // a data point within half the distance between two centroids of one of them is closer to it than the other
+            double[] halfGaps = new double[k * k];
+            double[] nearestHalfGaps = new double[k];
+            Arrays.fill(nearestHalfGaps, Double.POSITIVE_INFINITY);
+            for (int a = 0; a < k; a++) {
+                for (int b = a + 1; b < k; b++) {
+                    double halfGap = distanceAlgorithm.toDistance(
+                            distanceAlgorithm.measureComparisonDistance(centroidPositions[a], centroidPositions[b])) / 2;
+                    halfGaps[a * k + b] = halfGap;
+                    halfGaps[b * k + a] = halfGap;
+                    nearestHalfGaps[a] = Math.min(nearestHalfGaps[a], halfGap);
+                    nearestHalfGaps[b] = Math.min(nearestHalfGaps[b], halfGap);
+                }
+            }
+
+            // clusterRound always puts a data point with a centroid which is that data point
+            IdentityHashMap<DataPoint, Integer> centroidPoints = new IdentityHashMap<>();
+            for (int c = k - 1; c >= 0; c--) {
+                centroidPoints.put(centroidPositions[c], c);
+            }
+
+            long measuredBefore = distancesMeasured;
+            for (int i = 0; i < n; i++) {
+                DataPoint dp = inputData.get(i);
+                int offset = i * k;
+                upperBounds[i] += movements[assignments[i]];
+                for (int c = 0; c < k; c++) {
+                    lowerBounds[offset + c] = Math.max(0, lowerBounds[offset + c] - movements[c]);
+                }
+
+                Integer samePoint = centroidPoints.get(dp);
+                if (samePoint != null) {
+                    assignments[i] = samePoint;
+                    upperBounds[i] = 0;
+                    lowerBounds[offset + samePoint] = 0;
+                    continue;
+                }
+
+                int assigned = assignments[i];
+                if (isFurther(nearestHalfGaps[assigned], upperBounds[i])) {
+                    // every other centroid is further away than the current one
+                    continue;
+                }
+                boolean upperBoundExact = false;
+                double assignedDistance = 0;
+                for (int c = 0; c < k; c++) {
+                    if (c == assigned || isFurther(lowerBounds[offset + c], upperBounds[i])
+                            || isFurther(halfGaps[assigned * k + c], upperBounds[i])) {
+                        continue;
+                    }
+                    if (!upperBoundExact) {
+                        // measuring the current centroid may be enough to rule this one out
+                        assignedDistance = distanceAlgorithm.measureComparisonDistance(dp, centroidPositions[assigned]);
+                        upperBounds[i] = distanceAlgorithm.toDistance(assignedDistance);
+                        lowerBounds[offset + assigned] = upperBounds[i];
+                        upperBoundExact = true;
+                        distancesMeasured++;
+                        if (isFurther(lowerBounds[offset + c], upperBounds[i]) || isFurther(halfGaps[assigned * k + c], upperBounds[i])) {
+                            continue;
+                        }
+                    }
+
+                    double distance = distanceAlgorithm.measureComparisonDistance(dp, centroidPositions[c]);
+                    lowerBounds[offset + c] = distanceAlgorithm.toDistance(distance);
+                    distancesMeasured++;
+                    // the earliest of two equally close centroids is kept, as it is by clusterRound
+                    if (distance < assignedDistance || (distance == assignedDistance && c < assigned)) {
+                        assigned = c;
+                        assignedDistance = distance;
+                        upperBounds[i] = lowerBounds[offset + c];
+                    }
+                }
+                assignments[i] = assigned;
+            }
+            distancesSkipped += (long) n * k - (distancesMeasured - measuredBefore);
+            clusters = groupByCentroid(inputData, assignments, k);
+        }
+        return clusters;
+    }
+
+    /**
+     * Checks whether a lower bound on the distance to one centroid shows that it is further away than the upper bound
+     * on the distance to another. The bounds are built up from many measured distances, so bounds which are only
+     * apart by rounding are not trusted.
+     *
+     * @param lowerBound the lower bound on the distance to a centroid
+     * @param upperBound the upper bound on the distance to the closest centroid so far
+     * @return true if the centroid is certainly further away
+     */
+    private static boolean isFurther(double lowerBound, double upperBound) {
+        return lowerBound - upperBound > BOUND_TOLERANCE * (lowerBound + upperBound);
+    }
+
+    /**
+     * Checks whether the bounds for Elkan's method can be used, which needs the triangle inequality and a lower bound
+     * for every data point and centroid in memory.
+     *
+     * @param pointCount        the number of data points
+     * @param distanceAlgorithm method for determining distance
+     * @return true if the bounds can be kept
+     */
+    private boolean canKeepBounds(int pointCount, DistanceAlgorithm distanceAlgorithm) {
+        long boundCount = (long) pointCount * kClusters;
+        return distanceAlgorithm.satisfiesTriangleInequality() && boundCount <= Integer.MAX_VALUE
+                && boundCount * Double.BYTES <= Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Puts each data point into the cluster of its centroid, keeping the data points in order.
+     *
+     * @param inputData   the data points
+     * @param assignments the centroid of each data point
+     * @param k           the number of centroids
+     * @return one cluster for each centroid
+     */
+    private static Cluster[] groupByCentroid(ArrayList<DataPoint> inputData, int[] assignments, int k) {
+        Cluster[] clusters = new Cluster[k];
+        for (int c = 0; c < k; c++) {
+            clusters[c] = new Cluster();
+        }
+        for (int i = 0; i < inputData.size(); i++) {
+            clusters[assignments[i]].add(inputData.get(i));
+        }
+        return clusters;
+    }
+
+    /**
+     * Clusters a database in a single pass as it is read, using sequential k-means. The first k data points are used
+     * as the starting centroids, and every following data point is added to its closest centroid which is then moved
+     * towards it. Batches are only read as they are needed, so reading the file overlaps with clustering.
+     *
+     * @param batches           the reader which supplies the database in batches
+     * @param distanceAlgorithm the subroutine used to determine which centroid is closest
+     * @param statistics        the statistics used to scale each batch before it is clustered, or null to leave the
+     *                          data unscaled
+     * @return an array representing a cluster of datapoints
+     * @throws IOException thrown if the database cannot be read
+     */
+    public Cluster[] clusterBatches(BatchReader batches, DistanceAlgorithm distanceAlgorithm, FeatureStatistics statistics) throws IOException {
+        MeanNormalization scaler = new MeanNormalization();
+        ArrayList<Cluster> clusters = new ArrayList<>();
+        ArrayList<DataPoint> centroids = new ArrayList<>();
+
+        ArrayList<DataPoint> batch;
+        while ((batch = batches.nextBatch()) != null) {
+            if (statistics != null) {
+                scaler.scaleBatch(batch, statistics);
+            }
+            distanceAlgorithm.prepare(batch);
+            for (DataPoint dp : batch) {
+                if (centroids.size() < kClusters) {
+                    centroids.add(copyDataPoint(dp));
+                    clusters.add(new Cluster(dp));
+                    continue;
+                }
+
+                double minDistance = Double.MAX_VALUE;
+                int centroidCandidate = 0;
+                for (int i = 0; i < centroids.size(); i++) {
+                    double distance = distanceAlgorithm.measureComparisonDistance(dp, centroids.get(i), minDistance);
+                    if (distance < minDistance) {
+                        minDistance = distance;
+                        centroidCandidate = i;
+                    }
+                }
+                Cluster cluster = clusters.get(centroidCandidate);
+                cluster.add(dp);
+
+                // move the centroid so that it remains the mean of every data point added to the cluster
+                DataPoint centroid = centroids.get(centroidCandidate);
+                for (int k = 0; k < centroid.sizeNumerical(); k++) {
+                    double value = centroid.getNumericalValue(k);
+                    centroid.setNumerical(k, value + (dp.getNumericalValue(k) - value) / cluster.size());
+                }
+            }
+        }
+        return clusters.toArray(new Cluster[0]);
+    }
+
+    /**
+     * Creates a standalone copy of a data point which can be moved without changing the dataset it came from.
+     *
+     * @param dp the data point to copy
+     * @return the copy
+     */
+    private DataPoint copyDataPoint(DataPoint dp) {
+        double[] numericalData = new double[dp.sizeNumerical()];
+        for (int k = 0; k < numericalData.length; k++) {
+            numericalData[k] = dp.getNumericalValue(k);
+        }
+        String[] categoricalData = new String[dp.sizeCategorical()];
+        for (int k = 0; k < categoricalData.length; k++) {
+            categoricalData[k] = dp.getCategorical(k);
+        }
+        return new DataPoint(null, categoricalData, numericalData);
+    }
+
     /**
      * Returns the name of the algorithm so it can be displayed as an option in the GUI
      *
@@ -95,38 +360,120 @@ public class KMeansAlgorithm implements ClusterAlgorithm {
      * @return returns the data points grouped into k clusters
      */
     public Cluster[] clusterRound(ArrayList<DataPoint> inputData, DataPoint[] centroidPositions, DistanceAlgorithm distanceAlgorithm) {
+        DistanceBlocks pointBlocks = DistanceBlocks.canMeasure(distanceAlgorithm, inputData) ? new DistanceBlocks(inputData) : null;
+        return clusterRound(inputData, centroidPositions, distanceAlgorithm, pointBlocks);
+    }
+
+    /**
+     * Represents a single round of K means clustering, where the features of the data points may have already been
+     * prepared so that the distances to the centroids can be measured by the block engine. Callers running several
+     * rounds over the same data points should prepare them once and pass them to every round.
+     *
+     * @param inputData         the collection of data that is to be clustered
+     * @param centroidPositions the cluster centroids
+     * @param distanceAlgorithm method for determining distance
+     * @param pointBlocks       the features of the data points for the block engine, or null if it cannot be used
+     * @return returns the data points grouped into k clusters
+     */
+    public Cluster[] clusterRound(ArrayList<DataPoint> inputData, DataPoint[] centroidPositions, DistanceAlgorithm distanceAlgorithm,
+                                  DistanceBlocks pointBlocks) {
         Cluster[] clusters = new Cluster[centroidPositions.length];
         //initialise array of clusters
         for (int i = 0; i < centroidPositions.length; i++) {
             clusters[i] = new Cluster();
         }
 
-        // for ever data point, find the closest centroid
-        for (DataPoint dp : inputData) {
-            double minDistance = Double.MAX_VALUE;
-            int centroidCandidate = 0;
-            //compare distance for all centroids
-            for (int i = 0; i < centroidPositions.length; i++) {
-                //check to see if datapoint is already in the same position as the centroid to prevent performing unnecessary distance calculations
-                if (centroidPositions[i].equals(dp)) {
-                    minDistance = 0;
-                    centroidCandidate = i;
-                    // centroid and data point are in the same position and thus no other centroid can be closer so move onto next datapoint
-                    break;
-                } else {
-                    double distance = distanceAlgorithm.measureDistance(dp, centroidPositions[i]);
-                    //if the distance is smaller than the previous min distance, update min distance to reflect the closest centroid found so far
-                    if (distance < minDistance) {
-                        minDistance = distance;
-                        centroidCandidate = i;
-                    }
-                }
+        // only the closest centroid is needed so comparison distances are used, they are measured for a block of data
+        // points at a time so the centroids are only prepared once per block
+        int k = centroidPositions.length;
+        double[] distances = new double[Math.min(BLOCK_SIZE, inputData.size()) * k];
+        DistanceBlocks centroidBlocks = prepareCentroids(centroidPositions, distanceAlgorithm, pointBlocks);
+        for (int blockStart = 0; blockStart < inputData.size(); blockStart += BLOCK_SIZE) {
+            int blockEnd = Math.min(blockStart + BLOCK_SIZE, inputData.size());
+            measureBlock(inputData, blockStart, blockEnd, centroidPositions, distanceAlgorithm, pointBlocks, centroidBlocks, distances);
+
+            // for ever data point, find the closest centroid
+            for (int i = blockStart; i < blockEnd; i++) {
+                DataPoint dp = inputData.get(i);
+                clusters[closestCentroid(dp, centroidPositions, distances, (i - blockStart) * k)].add(dp);
             }
-            clusters[centroidCandidate].add(dp);
         }
+        distancesMeasured += (long) inputData.size() * k;
         return clusters;
     }
 
+    /**
+     * Packs the features of the centroids for the block engine, if the data points are measured with it and there are
+     * few enough centroids to be copied.
+     *
+     * @param centroidPositions the cluster centroids
+     * @param distanceAlgorithm method for determining distance
+     * @param pointBlocks       the features of the data points, or null if the block engine cannot be used
+     * @return the packed features of the centroids, or null if the block engine cannot be used
+     */
+    private static DistanceBlocks prepareCentroids(DataPoint[] centroidPositions, DistanceAlgorithm distanceAlgorithm,
+                                                   DistanceBlocks pointBlocks) {
+        List<DataPoint> centroids = Arrays.asList(centroidPositions);
+        if (pointBlocks == null || !DistanceBlocks.canMeasure(distanceAlgorithm, centroids)) {
+            return null;
+        }
+        return new DistanceBlocks(centroids);
+    }
+
+    /**
+     * Measures the comparison distance from each of a block of data points to each centroid.
+     *
+     * @param inputData         the collection of data that is to be clustered
+     * @param blockStart        the first data point of the block
+     * @param blockEnd          the data point after the last one in the block
+     * @param centroidPositions the cluster centroids
+     * @param distanceAlgorithm method for determining distance
+     * @param pointBlocks       the features of the data points for the block engine, or null if it cannot be used
+     * @param centroidBlocks    the packed features of the centroids, or null if the block engine cannot be used
+     * @param distances         filled row by row, the distance from the i-th point of the block to centroid j is at
+     *                          i * centroidPositions.length + j
+     */
+    private void measureBlock(ArrayList<DataPoint> inputData, int blockStart, int blockEnd, DataPoint[] centroidPositions,
+                              DistanceAlgorithm distanceAlgorithm, DistanceBlocks pointBlocks, DistanceBlocks centroidBlocks,
+                              double[] distances) {
+        int k = centroidPositions.length;
+        if (centroidBlocks != null) {
+            pointBlocks.squaredDistances(blockStart, blockEnd, centroidBlocks, 0, k, distances, 0, k);
+        } else {
+            distanceAlgorithm.measureComparisonDistances(inputData.subList(blockStart, blockEnd), centroidPositions, distances);
+        }
+    }
+
+    /**
+     * Finds the closest centroid to a data point from its measured distances, the earliest centroid of any which are
+     * equally close.
+     *
+     * @param dp                the data point
+     * @param centroidPositions the cluster centroids
+     * @param distances         the comparison distances measured by measureBlock
+     * @param offset            the position of the distance from the data point to the first centroid
+     * @return the index of the closest centroid
+     */
+    private static int closestCentroid(DataPoint dp, DataPoint[] centroidPositions, double[] distances, int offset) {
+        double minDistance = Double.MAX_VALUE;
+        int centroidCandidate = 0;
+        //compare distance for all centroids
+        for (int i = 0; i < centroidPositions.length; i++) {
+            //check to see if datapoint is already in the same position as the centroid
+            if (centroidPositions[i].equals(dp)) {
+                // centroid and data point are in the same position and thus no other centroid can be closer so move onto next datapoint
+                return i;
+            }
+            double distance = distances[offset + i];
+            //if the distance is smaller than the previous min distance, update min distance to reflect the closest centroid found so far
+            if (distance < minDistance) {
+                minDistance = distance;
+                centroidCandidate = i;
+            }
+        }
+        return centroidCandidate;
+    }
+
     /**
      * Method for randomly choosing the initial centroid positions from the list of data points
      *
@@ -164,22 +511,41 @@ public class KMeansAlgorithm implements ClusterAlgorithm {
      * @return returns an array of data points which represent the new centroid positions
      */
     public DataPoint[] calculateNewCentroids(Cluster[] clusters) {
+        return calculateNewCentroids(clusters, null);
+    }
+
+    /**
+     * Calculate new centroids based on the mean values of a given cluster, where a cluster which has lost every data
+     * point keeps its old centroid.
+     *
+     * @param clusters     groups of data points belonging to a cluster
+     * @param oldCentroids the centroid of each cluster in the last round
+     * @return returns an array of data points which represent the new centroid positions
+     */
+    public DataPoint[] calculateNewCentroids(Cluster[] clusters, DataPoint[] oldCentroids) {
         DataPoint[] newCentroids = new DataPoint[clusters.length];
+        String[] noCategoricalData = new String[0];
 
         // for each cluster
         for (int i = 0; i < clusters.length; i++) {
             // sum up features for all data points in cluster
             if (clusters[i].size() > 1) {
-                newCentroids[i] = sumFeaturesValues(clusters[i].get(0), clusters[i].get(1));
-                for (int j = 2; j < clusters[i].size(); j++) {
-                    newCentroids[i] = sumFeaturesValues(newCentroids[i], clusters[i].get(j));
+                int featureCount = clusters[i].get(0).sizeNumerical();
+                double[] featureTotals = new double[featureCount];
+                for (int j = 0; j < clusters[i].size(); j++) {
+                    DataPoint dp = clusters[i].get(j);
+                    for (int k = 0; k < featureCount; k++) {
+                        featureTotals[k] += dp.getNumericalValue(k);
+                    }
                 }
                 // divide by number of data points to get the mean
-                for (int k = 0; k < clusters[i].get(0).sizeNumerical(); k++) {
-                    double meanFeatureValue = newCentroids[i].getNumerical(k) / clusters[i].size();
-                    newCentroids[i].setNumerical(k, meanFeatureValue);
+                for (int k = 0; k < featureCount; k++) {
+                    featureTotals[k] = featureTotals[k] / clusters[i].size();
                 }
+                newCentroids[i] = new DataPoint(null, noCategoricalData, featureTotals);
                 // only one datapoint in cluster so centroid remains the same
+            } else if (clusters[i].size() == 0 && oldCentroids != null) {
+                newCentroids[i] = oldCentroids[i];
             } else {
                 newCentroids[i] = clusters[i].get(0);
             }
@@ -197,7 +563,7 @@ public class KMeansAlgorithm implements ClusterAlgorithm {
     public DataPoint sumFeaturesValues(DataPoint centroid, DataPoint dataPoint) {
         DataPoint newCentroidValue = new DataPoint();
         for (int i = 0; i < centroid.sizeNumerical(); i++) {
-            double newValue = centroid.getNumerical(i) + dataPoint.getNumerical(i);
+            double newValue = centroid.getNumericalValue(i) + dataPoint.getNumericalValue(i);
             newCentroidValue.addNumerical(newValue);
         }
         return newCentroidValue;
@@ -232,6 +598,9 @@ public class KMeansAlgorithm implements ClusterAlgorithm {
         Label clusterNumberLabel = new Label("Number of clusters: ");
         TextField roundInput = new TextField();
         TextField clusterNumberInput = new TextField();
+        Label elkanLabel = new Label("Skip distances with bounds (Elkan):");
+        CheckBox elkanInput = new CheckBox();
+        elkanInput.setSelected(elkan);
 
         GridPane dialogContent = new GridPane();
         dialogContent.add(roundLabel, 1, 1);
@@ -240,12 +609,16 @@ public class KMeansAlgorithm implements ClusterAlgorithm {
         dialogContent.add(clusterNumberLabel, 1, 2);
         dialogContent.add(clusterNumberInput, 2, 2);
 
+        dialogContent.add(elkanLabel, 1, 3);
+        dialogContent.add(elkanInput, 2, 3);
+
         ButtonType confirmButton = new ButtonType("Submit", ButtonBar.ButtonData.OK_DONE);
         clusterSettingsPopup.getDialogPane().getButtonTypes().add(confirmButton);
         clusterSettingsPopup.getDialogPane().setContent(dialogContent);
 
 
         clusterSettingsPopup.showAndWait();
+        elkan = elkanInput.isSelected();
 
 
         // try to read the user input as a number, if this fails then print an error and try again
@@ -293,5 +666,43 @@ public class KMeansAlgorithm implements ClusterAlgorithm {
         this.numberOfRounds = numberOfRounds;
     }
 
+    public boolean isElkan() {
+        return elkan;
+    }
+
+    public void setElkan(boolean elkan) {
+        this.elkan = elkan;
+    }
+
+    /**
+     * @return the number of distances from data points to centroids measured by the last call to clusterData
+     */
+    public long getDistancesMeasured() {
+        return distancesMeasured;
+    }
+
+    /**
+     * @return the number of distances from data points to centroids which the last call to clusterData did not need
+     * to measure, which is only ever more than zero with Elkan's method
+     */
+    public long getDistancesSkipped() {
+        return distancesSkipped;
+    }
+
+    /**
+     * Reports how many distances Elkan's method skipped in the last call to clusterData.
+     *
+     * @return the number of distances skipped out of the total, or null if the bounds were not used
+     */
+    @Override
+    public String getRunSummary() {
+        if (!elkan) {
+            return null;
+        }
+        long total = distancesMeasured + distancesSkipped;
+        double percent = total == 0 ? 0 : 100.0 * distancesSkipped / total;
+        return String.format("Elkan's bounds skipped %,d of %,d distances (%.1f%%)", distancesSkipped, total, percent);
+    }
+
 
 }
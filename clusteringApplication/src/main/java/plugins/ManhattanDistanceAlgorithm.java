@@ -0,0 +1,69 @@
+package plugins;
+
+import kernel.DataPoint;
+import kernel.DistanceKernel;
+import kernel.FeatureMatrix;
+import spi.DistanceAlgorithm;
+
+/**
+ * Class used to determine the manhattan distance between two given datapoints, which is the sum of the differences of
+ * each feature. It is less affected than the euclidean distance by a single feature with a very large difference.
+ */
+public class ManhattanDistanceAlgorithm implements DistanceAlgorithm {
+
+    /**
+     * Measure the Manhattan distance between two datapoints.
+     *
+     * @param datapoint1 the first datapoint which we are measuring from
+     * @param datapoint2 the datapoint we are measuring to
+     * @return returns the distance between the two datapoints
+     */
+    @Override
+    public double measureDistance(DataPoint datapoint1, DataPoint datapoint2) {
+        return measureComparisonDistance(datapoint1, datapoint2, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Measures the Manhattan distance between two datapoints, stopping as soon as it is known to be larger than the
+     * bound. The edit distance of each categorical feature is added to the total.
+     *
+     * @param datapoint1 the first datapoint which we are measuring from
+     * @param datapoint2 the datapoint we are measuring to
+     * @param upperBound the largest distance which needs to be measured exactly
+     * @return the distance when it is no larger than the bound, otherwise some value larger than the bound
+     */
+    @Override
+    public double measureComparisonDistance(DataPoint datapoint1, DataPoint datapoint2, double upperBound) {
+        int featureCount = datapoint1.sizeNumerical();
+        FeatureMatrix features1 = datapoint1.getDataset().getNumericalFeatures();
+        FeatureMatrix features2 = datapoint2.getDataset().getNumericalFeatures();
+        double[] values1 = features1.getArray();
+        double[] values2 = features2.getArray();
+
+        double totalDistance;
+        if (values1 != null && values2 != null) {
+            totalDistance = DistanceKernel.manhattanDistance(values1, features1.getRowOffset(datapoint1.getRow()),
+                    values2, features2.getRowOffset(datapoint2.getRow()), featureCount, upperBound);
+        } else {
+            totalDistance = 0;
+            for (int i = 0; i < featureCount && totalDistance <= upperBound; i++) {
+                totalDistance += Math.abs(datapoint1.getNumericalValue(i) - datapoint2.getNumericalValue(i));
+            }
+        }
+
+        for (int i = 0; i < datapoint1.sizeCategorical() && totalDistance <= upperBound; i++) {
+            totalDistance += DistanceKernel.categoricalDistance(datapoint1, datapoint2, i);
+        }
+        return totalDistance;
+    }
+
+    @Override
+    public String getName() {
+        return "Manhattan Distance";
+    }
+
+    @Override
+    public boolean satisfiesTriangleInequality() {
+        return true;
+    }
+}
@@ -43,8 +43,8 @@ public class ScatterGraph implements ClusterOutput {
             XYChart.Series clusterSeries = new XYChart.Series();
             clusterSeries.setName("Cluster " + (i + 1));
             for (int j = 0; j < clusters[i].size(); j++) {
-                double feature1 = clusters[i].get(j).getOriginalNumerical(0);
-                double feature2 = clusters[i].get(j).getOriginalNumerical(1);
+                double feature1 = clusters[i].get(j).getOriginalNumericalValue(0);
+                double feature2 = clusters[i].get(j).getOriginalNumericalValue(1);
                 clusterSeries.getData().add(new XYChart.Data(feature1, feature2));
             }
             scatterChart.getData().add(clusterSeries);
@@ -0,0 +1,369 @@
+package plugins;
+
+import com.google.auto.service.AutoService;
+import javafx.scene.control.*;
+import javafx.scene.layout.GridPane;
+import kernel.Cluster;
+import kernel.DataPoint;
+import kernel.MeanNormalization;
+import kernel.MergeTree;
+import kernel.MergeTreeCache;
+import spi.ClusterAlgorithm;
+import spi.DistanceAlgorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * Single linkage agglomerative clustering which gives the same clusters as the agglomerative algorithm, but measures
+ * every pair of data points only once.
+ * <p>
+ * Merging the two closest clusters over and over, where clusters are as close as their closest pair of data points,
+ * merges along the edges of the minimum spanning tree of the data points from shortest to longest. The tree is built
+ * with Prim's algorithm, which needs O(n^2) distance measurements and O(n) memory, and the shortest edges are then
+ * used as the merges of each round. The tree is kept in the shared merge tree cache, so a different number of rounds
+ * only needs it to be cut again.
+ * <p>
+ * When several edges are the same length the tree is only one of the trees which could have been built, so the
+ * clusters those edges join are measured against each other again to find every pair at that distance, and the merges
+ * are made in the order the agglomerative algorithm makes them.
+ */
+@AutoService(ClusterAlgorithm.class)
+public class SingleLinkageAlgorithm implements ClusterAlgorithm {
+    private int roundLimit;
+
+    /**
+     * The method which implements the bulk of the clustering algorithm.
+     *
+     * @param inputData         the array of singleton data which is to be clustered
+     * @param distanceAlgorithm the subroutine used to determine which clusters should be merged
+     * @return an array representing a cluster of datapoints
+     */
+    @Override
+    public Cluster[] clusterData(ArrayList<DataPoint> inputData, DistanceAlgorithm distanceAlgorithm) {
+        if (inputData.isEmpty()) {
+            return new Cluster[0];
+        }
+        MeanNormalization scaler = new MeanNormalization();
+        inputData = scaler.scaleDataset(inputData);
+        distanceAlgorithm.prepare(inputData);
+
+        MergeTree mergeTree = MergeTreeCache.getShared().get(inputData, distanceAlgorithm, getName());
+        if (mergeTree == null) {
+            mergeTree = buildSpanningTree(inputData, distanceAlgorithm);
+            MergeTreeCache.getShared().put(inputData, distanceAlgorithm, getName(), mergeTree);
+        }
+        return mergeTree.cut(inputData, roundLimit);
+    }
+
+    /**
+     * Builds the minimum spanning tree of the data points with Prim's algorithm. The tree is grown one data point at a
+     * time, always adding the data point closest to the tree, and only the closest tree point of every remaining data
+     * point is remembered.
+     *
+     * @param inputData         the data points
+     * @param distanceAlgorithm the subroutine used to measure the distance between data points
+     * @return the merges along the edges of the tree, from the shortest edge to the longest
+     */
+    public MergeTree buildSpanningTree(ArrayList<DataPoint> inputData, DistanceAlgorithm distanceAlgorithm) {
+        int n = inputData.size();
+        int edgeCount = Math.max(0, n - 1);
+        int[] edgeStarts = new int[edgeCount];
+        int[] edgeEnds = new int[edgeCount];
+        double[] edgeDistances = new double[edgeCount];
+
+        // the data points not yet in the tree are kept at the front of the array, with the closest distance to the tree
+        int[] remaining = new int[n];
+        double[] closestDistance = new double[n];
+        int[] closestTreePoint = new int[n];
+        for (int i = 0; i < n; i++) {
+            remaining[i] = i;
+        }
+        Arrays.fill(closestDistance, Double.POSITIVE_INFINITY);
+
+        // start the tree with the first data point
+        int remainingCount = n - 1;
+        remaining[0] = remaining[remainingCount];
+        int added = 0;
+
+        for (int edge = 0; edge < edgeCount; edge++) {
+            DataPoint addedPoint = inputData.get(added);
+            int nearest = 0;
+            for (int r = 0; r < remainingCount; r++) {
+                // only a distance shorter than the current closest one matters, so the measurement can stop early
+                double distance = distanceAlgorithm.measureComparisonDistance(addedPoint, inputData.get(remaining[r]), closestDistance[r]);
+                if (distance < closestDistance[r]) {
+                    closestDistance[r] = distance;
+                    closestTreePoint[r] = added;
+                }
+                if (closestDistance[r] < closestDistance[nearest]
+                        || (closestDistance[r] == closestDistance[nearest] && remaining[r] < remaining[nearest])) {
+                    nearest = r;
+                }
+            }
+
+            added = remaining[nearest];
+            edgeStarts[edge] = Math.min(closestTreePoint[nearest], added);
+            edgeEnds[edge] = Math.max(closestTreePoint[nearest], added);
+            edgeDistances[edge] = closestDistance[nearest];
+
+            // move the last remaining data point into the space left by the one added to the tree
+            remainingCount--;
+            remaining[nearest] = remaining[remainingCount];
+            closestDistance[nearest] = closestDistance[remainingCount];
+            closestTreePoint[nearest] = closestTreePoint[remainingCount];
+        }
+
+        // merges happen from the shortest edge to the longest
+        Integer[] order = IntStream.range(0, edgeCount).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, (a, b) -> Double.compare(edgeDistances[a], edgeDistances[b]));
+
+        Merges merges = new Merges(n);
+        int runStart = 0;
+        while (runStart < edgeCount) {
+            int runEnd = runStart + 1;
+            while (runEnd < edgeCount && edgeDistances[order[runEnd]] == edgeDistances[order[runStart]]) {
+                runEnd++;
+            }
+            double distance = edgeDistances[order[runStart]];
+            if (runEnd - runStart == 1) {
+                // a single merge at this distance can only join the two clusters at the ends of the edge
+                merges.merge(edgeStarts[order[runStart]], edgeEnds[order[runStart]], distanceAlgorithm.toDistance(distance));
+            } else {
+                mergeEqualRun(inputData, distanceAlgorithm, merges, order, runStart, runEnd, edgeStarts, edgeEnds, distance);
+            }
+            runStart = runEnd;
+        }
+        return MergeTree.fromMerges(n, merges.pointsA, merges.pointsB, merges.heights);
+    }
+
+    /**
+     * Makes the merges of a run of tree edges of equal length in the order the agglomerative algorithm makes them. Its
+     * clusters are listed by their first data point and the earliest pair in the list at the smallest distance is
+     * merged first. Any pair of the clusters the run joins may be at the same distance, not only those joined by the
+     * tree, so the earliest cluster with a neighbour at that distance takes in its neighbours from the earliest on,
+     * followed by any neighbours of the clusters it has taken in, before the next cluster is looked at. Each cluster is
+     * only checked against the clusters of the run which have not been reached yet, so every pair of data points in the
+     * run is measured at most once.
+     *
+     * @param inputData         the data points
+     * @param distanceAlgorithm the subroutine used to measure the distance between data points
+     * @param merges            the merges made so far, added to
+     * @param order             the edges sorted by length
+     * @param runStart          the position in the order of the first edge of the run
+     * @param runEnd            the position in the order after the last edge of the run
+     * @param edgeStarts        a data point at one end of each edge
+     * @param edgeEnds          the data point at the other end of each edge
+     * @param distance          the comparison distance shared by the edges of the run
+     */
+    private static void mergeEqualRun(ArrayList<DataPoint> inputData, DistanceAlgorithm distanceAlgorithm, Merges merges,
+                                      Integer[] order, int runStart, int runEnd, int[] edgeStarts, int[] edgeEnds,
+                                      double distance) {
+        // the first data point of each cluster joined by the run, in order
+        TreeSet<Integer> firstPoints = new TreeSet<>();
+        for (int k = runStart; k < runEnd; k++) {
+            firstPoints.add(merges.firstPoint(edgeStarts[order[k]]));
+            firstPoints.add(merges.firstPoint(edgeEnds[order[k]]));
+        }
+        int[] clusters = firstPoints.stream().mapToInt(Integer::intValue).toArray();
+        int[][] clusterPoints = new int[clusters.length][];
+        for (int c = 0; c < clusters.length; c++) {
+            clusterPoints[c] = merges.pointsOf(clusters[c]);
+        }
+        boolean[] reached = new boolean[clusters.length];
+        double height = distanceAlgorithm.toDistance(distance);
+
+        // clusters are held by their position in the list, which is also the order of their first data points
+        PriorityQueue<Integer> neighbours = new PriorityQueue<>();
+        for (int c = 0; c < clusters.length; c++) {
+            if (reached[c]) {
+                continue;
+            }
+            reached[c] = true;
+            addNeighbours(inputData, distanceAlgorithm, clusterPoints, reached, c, distance, neighbours);
+            while (!neighbours.isEmpty()) {
+                int neighbour = neighbours.poll();
+                merges.merge(clusters[c], clusters[neighbour], height);
+                addNeighbours(inputData, distanceAlgorithm, clusterPoints, reached, neighbour, distance, neighbours);
+            }
+        }
+    }
+
+    /**
+     * Finds the clusters of a run which have not been reached yet and are at the distance of the run from a cluster.
+     *
+     * @param inputData         the data points
+     * @param distanceAlgorithm the subroutine used to measure the distance between data points
+     * @param clusterPoints     the data points of each cluster of the run
+     * @param reached           marks the clusters already taken in or waiting to be, updated for the neighbours found
+     * @param cluster           the position of the cluster to measure from
+     * @param distance          the comparison distance of the run
+     * @param neighbours        the positions of the clusters found are added here
+     */
+    private static void addNeighbours(ArrayList<DataPoint> inputData, DistanceAlgorithm distanceAlgorithm, int[][] clusterPoints,
+                                      boolean[] reached, int cluster, double distance, PriorityQueue<Integer> neighbours) {
+        for (int other = 0; other < clusterPoints.length; other++) {
+            if (!reached[other] && isWithin(inputData, distanceAlgorithm, clusterPoints[cluster], clusterPoints[other], distance)) {
+                reached[other] = true;
+                neighbours.add(other);
+            }
+        }
+    }
+
+    /**
+     * Checks whether any data point of one group is no further than a distance from any data point of another. The
+     * distance is never less than the distance of the run, as closer pairs were merged by earlier runs.
+     */
+    private static boolean isWithin(ArrayList<DataPoint> inputData, DistanceAlgorithm distanceAlgorithm, int[] pointsA,
+                                    int[] pointsB, double distance) {
+        for (int i : pointsA) {
+            DataPoint dp = inputData.get(i);
+            for (int j : pointsB) {
+                if (distanceAlgorithm.measureComparisonDistance(dp, inputData.get(j), distance) <= distance) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The merges made so far. Each cluster is found by following parents up to a root, which holds the first data
+     * point of the cluster and starts a linked list of its data points.
+     */
+    private static class Merges {
+        private int[] parent;
+        private int[] firstPoints;
+        private int[] nextPoints;
+        private int[] lastPoints;
+
+        private int[] pointsA;
+        private int[] pointsB;
+        private double[] heights;
+        private int mergeCount;
+
+        private Merges(int n) {
+            parent = new int[n];
+            firstPoints = new int[n];
+            nextPoints = new int[n];
+            lastPoints = new int[n];
+            for (int i = 0; i < n; i++) {
+                parent[i] = i;
+                firstPoints[i] = i;
+                nextPoints[i] = -1;
+                lastPoints[i] = i;
+            }
+            int mergeTotal = Math.max(0, n - 1);
+            pointsA = new int[mergeTotal];
+            pointsB = new int[mergeTotal];
+            heights = new double[mergeTotal];
+        }
+
+        private int findRoot(int i) {
+            while (parent[i] != i) {
+                // point part of the way up the tree on the way, which keeps the paths short
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        private int firstPoint(int i) {
+            return firstPoints[findRoot(i)];
+        }
+
+        private void merge(int pointA, int pointB, double height) {
+            pointsA[mergeCount] = pointA;
+            pointsB[mergeCount] = pointB;
+            heights[mergeCount] = height;
+            mergeCount++;
+
+            int rootA = findRoot(pointA);
+            int rootB = findRoot(pointB);
+            nextPoints[lastPoints[rootA]] = rootB;
+            lastPoints[rootA] = lastPoints[rootB];
+            parent[rootB] = rootA;
+            firstPoints[rootA] = Math.min(firstPoints[rootA], firstPoints[rootB]);
+        }
+
+        private int[] pointsOf(int point) {
+            int root = findRoot(point);
+            int count = 0;
+            for (int i = root; i != -1; i = nextPoints[i]) {
+                count++;
+            }
+            int[] points = new int[count];
+            count = 0;
+            for (int i = root; i != -1; i = nextPoints[i]) {
+                points[count++] = i;
+            }
+            return points;
+        }
+    }
+
+    /**
+     * Returns the name of the algorithm so it can be displayed as an option in the GUI
+     *
+     * @return the name of the algorithm
+     */
+    @Override
+    public String getName() {
+        return "Single Linkage (Prim MST)";
+    }
+
+    /**
+     * Displays the user settings that will be used within the algorithm.
+     */
+    @Override
+    public void displaySettingsPopup(ArrayList<DataPoint> inputData) {
+        Dialog<String[]> clusterSettingsPopup = new Dialog<>();
+        clusterSettingsPopup.setTitle("Cluster Settings");
+        clusterSettingsPopup.setHeaderText("Please select the following algorithm settings");
+
+        Label roundLabel = new Label("Number of rounds:");
+        TextField roundInput = new TextField();
+
+        GridPane dialogContent = new GridPane();
+        dialogContent.add(roundLabel, 1, 1);
+        dialogContent.add(roundInput, 2, 1);
+
+        ButtonType confirmButton = new ButtonType("Submit", ButtonBar.ButtonData.OK_DONE);
+        clusterSettingsPopup.getDialogPane().getButtonTypes().add(confirmButton);
+        clusterSettingsPopup.getDialogPane().setContent(dialogContent);
+
+        clusterSettingsPopup.showAndWait();
+
+        // read the user inputs, they are not valid then display a warning and to get inputs again
+        try {
+            int userInput = Integer.valueOf(roundInput.getText());
+            if (userInput == 0 || userInput >= inputData.size()) {
+                invalidSettingInputs(inputData);
+            } else {
+                roundLimit = userInput;
+            }
+        } catch (NumberFormatException e) {
+            invalidSettingInputs(inputData);
+        }
+    }
+
+    /**
+     * Displays a warning to the user when invalid inputs are provided at the cluster setting screen
+     */
+    public void invalidSettingInputs(ArrayList<DataPoint> inputData) {
+        Alert nonRoundValue = new Alert(Alert.AlertType.ERROR);
+        nonRoundValue.setTitle("Error!");
+        nonRoundValue.setHeaderText("Warning: invalid input");
+        nonRoundValue.setContentText("Round rounder must be a number greater than 0 and less than the total number of samples");
+
+        nonRoundValue.showAndWait();
+
+        displaySettingsPopup(inputData);
+    }
+
+    public void setRoundLimit(int roundLimit) {
+        this.roundLimit = roundLimit;
+    }
+}
@@ -0,0 +1,22 @@
+package spi;
+
+import kernel.DataPoint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Reads a database a fixed number of rows at a time, so work can start on the first rows before the rest of the file
+ * has been read, and rows which have already been used do not need to be kept in memory.
+ */
+public interface BatchReader extends Closeable {
+
+    /**
+     * Reads the next rows of the database.
+     *
+     * @return up to the batch size of data points in file order, or null once every row has been read
+     * @throws IOException thrown if the database cannot be read
+     */
+    public ArrayList<DataPoint> nextBatch() throws IOException;
+}
@@ -26,4 +26,13 @@ public interface ClusterAlgorithm {
     public String getName();
 
     public void displaySettingsPopup(ArrayList<DataPoint> inputData);
+
+    /**
+     * Describes how the last call to clusterData went, so it can be displayed alongside the results in the GUI.
+     *
+     * @return the description, or null if the algorithm has nothing to report
+     */
+    public default String getRunSummary() {
+        return null;
+    }
 }
@@ -1,10 +1,142 @@
 package spi;
 import kernel.DataPoint;
 
+import java.util.List;
+
 /**
  * Interface used to standardise the various distance algorithms that may be used within the project.
  */
 public interface DistanceAlgorithm {
     public double measureDistance(DataPoint datapoint1, DataPoint datapoint2);
     public String getName();
+
+    /**
+     * Called by the cluster algorithms once the data has been scaled and before any distance is measured, so the
+     * distance algorithm can work out anything it needs for every data point up front, such as the length of each row.
+     * Data points which were not prepared, such as centroids, must still be measured correctly.
+     *
+     * @param points the data points which are about to be clustered
+     */
+    public default void prepare(List<DataPoint> points) {
+    }
+
+    /**
+     * Measures the distance from one data point to each of a group of data points. Algorithms can override this to
+     * prepare the query once rather than for every pair.
+     *
+     * @param query     the data point which is measured from
+     * @param points    the data points which are measured to
+     * @param distances filled with the distance to each point, in the same order as the points
+     */
+    public default void measureDistances(DataPoint query, List<DataPoint> points, double[] distances) {
+        for (int i = 0; i < points.size(); i++) {
+            distances[i] = measureDistance(query, points.get(i));
+        }
+    }
+
+    /**
+     * Measures the distance from each of a block of data points to each centroid. Algorithms can override this to
+     * prepare the centroids once for the whole block.
+     *
+     * @param points    the data points which are measured from
+     * @param centroids the centroids which are measured to
+     * @param distances filled row by row, the distance from point i to centroid j is at i * centroids.length + j
+     */
+    public default void measureDistances(List<DataPoint> points, DataPoint[] centroids, double[] distances) {
+        for (int i = 0; i < points.size(); i++) {
+            DataPoint dp = points.get(i);
+            for (int j = 0; j < centroids.length; j++) {
+                distances[i * centroids.length + j] = measureDistance(dp, centroids[j]);
+            }
+        }
+    }
+
+    /**
+     * Measures a value which orders pairs of data points in the same way as measureDistance, but may be cheaper to
+     * work out, such as the squared euclidean distance. Algorithms should use this whenever they only need to find the
+     * closest data point, and convert the value with toDistance when the distance itself is reported.
+     *
+     * @param datapoint1 the first datapoint which we are measuring from
+     * @param datapoint2 the datapoint we are measuring to
+     * @return a value which is smaller for closer pairs of data points
+     */
+    public default double measureComparisonDistance(DataPoint datapoint1, DataPoint datapoint2) {
+        return measureDistance(datapoint1, datapoint2);
+    }
+
+    /**
+     * Measures the comparison distance between two data points when it is no larger than a bound. Searches for the
+     * closest data point pass the closest comparison distance found so far, so algorithms can stop measuring as soon as
+     * they know a pair is further away than that.
+     *
+     * @param datapoint1 the first datapoint which we are measuring from
+     * @param datapoint2 the datapoint we are measuring to
+     * @param upperBound the largest comparison distance which needs to be measured exactly
+     * @return the comparison distance when it is no larger than the bound, otherwise some value larger than the bound
+     */
+    public default double measureComparisonDistance(DataPoint datapoint1, DataPoint datapoint2, double upperBound) {
+        return measureComparisonDistance(datapoint1, datapoint2);
+    }
+
+    /**
+     * Declares that, for data points without categorical features, the comparison distance is exactly the squared
+     * euclidean distance between the numerical features. Algorithms can then measure many pairs at once with the block
+     * engine in the kernel rather than through this plugin.
+     *
+     * @return true if the comparison distance is the plain squared euclidean distance
+     */
+    public default boolean isPlainEuclidean() {
+        return false;
+    }
+
+    /**
+     * Declares that the distance satisfies the triangle inequality, so the distance between two data points is never
+     * more than the distance from one of them to a third data point and on to the other. Algorithms can then rule out
+     * data points which must be further away than one already measured, without measuring them.
+     *
+     * @return true if measureDistance never breaks the triangle inequality
+     */
+    public default boolean satisfiesTriangleInequality() {
+        return false;
+    }
+
+    /**
+     * Converts a value from measureComparisonDistance into the distance measureDistance would have returned.
+     *
+     * @param comparisonDistance the value from measureComparisonDistance
+     * @return the distance between the data points
+     */
+    public default double toDistance(double comparisonDistance) {
+        return comparisonDistance;
+    }
+
+    /**
+     * The batched form of measureComparisonDistance from one data point to each of a group of data points.
+     *
+     * @param query     the data point which is measured from
+     * @param points    the data points which are measured to
+     * @param distances filled with the comparison distance to each point, in the same order as the points
+     */
+    public default void measureComparisonDistances(DataPoint query, List<DataPoint> points, double[] distances) {
+        for (int i = 0; i < points.size(); i++) {
+            distances[i] = measureComparisonDistance(query, points.get(i));
+        }
+    }
+
+    /**
+     * The batched form of measureComparisonDistance from each of a block of data points to each centroid.
+     *
+     * @param points    the data points which are measured from
+     * @param centroids the centroids which are measured to
+     * @param distances filled row by row, the comparison distance from point i to centroid j is at
+     *                  i * centroids.length + j
+     */
+    public default void measureComparisonDistances(List<DataPoint> points, DataPoint[] centroids, double[] distances) {
+        for (int i = 0; i < points.size(); i++) {
+            DataPoint dp = points.get(i);
+            for (int j = 0; j < centroids.length; j++) {
+                distances[i * centroids.length + j] = measureComparisonDistance(dp, centroids[j]);
+            }
+        }
+    }
 }
@@ -2,16 +2,64 @@ package spi;
 
 import javafx.stage.Stage;
 import kernel.DataPoint;
+import kernel.FileSummary;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 public interface FileParser {
     public ArrayList<DataPoint> readDB() throws IOException;
+
+    /**
+     * Reads the database as a series of batches. Parsers which can read a file a piece at a time should override this,
+     * by default the whole database is read and then handed out in batches.
+     *
+     * @param batchSize the number of rows in each batch
+     * @return the reader which returns the batches in file order
+     * @throws IOException thrown if the database cannot be read
+     */
+    public default BatchReader readBatches(int batchSize) throws IOException {
+        ArrayList<DataPoint> data = readDB();
+        return new BatchReader() {
+            private int position;
+
+            @Override
+            public ArrayList<DataPoint> nextBatch() {
+                if (position >= data.size()) {
+                    return null;
+                }
+                List<DataPoint> batch = data.subList(position, Math.min(data.size(), position + batchSize));
+                position += batch.size();
+                return new ArrayList<>(batch);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Finds the number of lines and the layout of the features without holding the parsed database, so the details of
+     * a file can be shown quickly. Parsers which can scan a file should override this, by default the whole database
+     * is read and then released, which uses up the database so {@link #setDatabase(File)} has to be called again
+     * before it is read.
+     *
+     * @return the details of the connected database
+     * @throws IOException thrown if the database cannot be read
+     */
+    public default FileSummary scanFile() throws IOException {
+        ArrayList<DataPoint> data = readDB();
+        if (data.isEmpty()) {
+            return new FileSummary(0, 0, 0);
+        }
+        return new FileSummary(getNumberOfLines(), data.get(0).sizeNumerical(), data.get(0).sizeCategorical());
+    }
+
     public String getName();
-    public void setDatabase(File file) throws FileNotFoundException;
+    public void setDatabase(File file) throws IOException;
     public File chooseFile(Stage stage);
 
     public String getFileName();
@@ -9,6 +9,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -265,4 +266,39 @@ public class TestAgglomerativeAlgorithm {
         System.out.println(clusteredDB[0].size());
         assertTrue(clusteredDB[0].size() == 53, "there are 106 samples, thus the final cluster should have 106 datapoints");
     }
+
+    // test 12
+    @Test
+    void testParallelMergeCandidatesMatchSerialSearch() {
+        // large enough for the search to be split, with repeated points so many pairs tie
+        Random random = new Random(12);
+        ArrayList<Cluster> clusters = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Cluster cluster = new Cluster();
+            for (int j = 0; j <= i % 3; j++) {
+                Double[] input = {(double) random.nextInt(20), (double) random.nextInt(20)};
+                cluster.add(new DataPoint("", catData, input));
+            }
+            clusters.add(cluster);
+        }
+
+        for (int round = 0; round < 5; round++) {
+            double smallest = Double.MAX_VALUE;
+            int[] expected = {0, 1};
+            for (int i = 0; i < clusters.size(); i++) {
+                for (int j = i + 1; j < clusters.size(); j++) {
+                    double distance = aggCluster.findMinComparisonDistance(clusters.get(i), clusters.get(j), euclideanDistance, Double.MAX_VALUE);
+                    if (distance < smallest) {
+                        smallest = distance;
+                        expected = new int[]{i, j};
+                    }
+                }
+            }
+
+            int[] actual = aggCluster.findMergeCandidates(clusters, euclideanDistance);
+            assertTrue(Arrays.equals(expected, actual), "The split search should pick the same pair as a single search, " +
+                    "expected " + Arrays.toString(expected) + " but was " + Arrays.toString(actual));
+            aggCluster.mergeClusters(actual[0], actual[1], clusters);
+        }
+    }
 }
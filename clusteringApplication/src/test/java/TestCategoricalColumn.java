@@ -0,0 +1,43 @@
+import kernel.CategoricalColumn;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCategoricalColumn {
+
+    // test 1
+    @Test
+    void testRepeatedValuesShareCode() {
+        CategoricalColumn column = new CategoricalColumn();
+        column.addValue("MIT");
+        column.addValue("NUC");
+        column.addValue("MIT");
+
+        assertTrue(column.getCategoryCount() == 2 && column.getCode(0) == column.getCode(2) && column.getValue(2).equals("MIT"),
+                "Only the two distinct values should be stored, with repeated values sharing a code");
+    }
+
+    // test 2
+    @Test
+    void testTableDistance() {
+        CategoricalColumn column = new CategoricalColumn();
+        column.addValue("MIT");
+        column.addValue("NUC");
+
+        assertEquals(3, column.distance(column.getCode(0), column.getCode(1)), "Three substitutions are needed to turn MIT to NUC");
+        assertEquals(3, column.distance(column.getCode(1), column.getCode(0)), "The stored distance should be the same in both directions");
+    }
+
+    // test 3
+    @Test
+    void testNewValueAfterLookup() {
+        CategoricalColumn column = new CategoricalColumn();
+        column.addValue("CAT");
+        column.addValue("RAT");
+        column.distance(0, 1);
+        column.setValue(1, "S");
+
+        assertEquals(3, column.distance(column.getCode(0), column.getCode(1)), "Values added after the table was built should still be measured");
+    }
+}
@@ -0,0 +1,165 @@
+import kernel.DataPoint;
+import kernel.DatasetCache;
+import kernel.FileSummary;
+import org.junit.jupiter.api.Test;
+import plugins.ChannelParser;
+import plugins.DefaultParser;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestChannelParser {
+    ChannelParser DBparser = new ChannelParser();
+    File ecoli = new File("src/main/resources/ecoli.data");
+    File yeast = new File("src/main/resources/yeast.data");
+
+    // test 1
+    @Test
+    void testLineNumber() throws IOException {
+        DBparser.setDatabase(ecoli);
+        DBparser.readDB();
+        assertTrue(DBparser.getNumberOfLines() == 336 && DBparser.getFeatureNumber() == 7, "The ecoli database has 336 samples with 7 features");
+    }
+
+    // test 2
+    @Test
+    void testMultiTypedData() throws IOException {
+        DBparser.setDatabase(yeast);
+        DataPoint dp = DBparser.readDB().get(0);
+        assertTrue(dp.toString().equals("ADT1_YEAST  0.58  0.61  0.47  0.13  0.50  0.00  0.48  0.22  MIT") && dp.sizeCategorical() == 2 && dp.sizeNumerical() == 8,
+                "The first line should be split into the same features as the default parser");
+    }
+
+    // test 3
+    @Test
+    void testMatchesDefaultParser() throws IOException {
+        DefaultParser defaultParser = new DefaultParser();
+        defaultParser.setDatabase(yeast);
+        ArrayList<DataPoint> expected = defaultParser.readDB();
+
+        DBparser.setDatabase(yeast);
+        ArrayList<DataPoint> actual = DBparser.readDB();
+
+        boolean matches = expected.size() == actual.size();
+        for (int i = 0; matches && i < expected.size(); i++) {
+            for (int j = 0; j < expected.get(i).sizeNumerical(); j++) {
+                matches &= expected.get(i).getNumericalValue(j) == actual.get(i).getNumericalValue(j);
+            }
+            matches &= expected.get(i).getCategorical(1).equals(actual.get(i).getCategorical(1));
+        }
+        assertTrue(matches, "Numbers parsed from the bytes of the file should exactly match those parsed by the default parser");
+    }
+
+    // test 4
+    @Test
+    void testGetName() throws IOException {
+        DBparser.setDatabase(yeast);
+        assertEquals("yeast.data", DBparser.getFileName(), "File name should match the name of the file given to the parser.");
+    }
+
+    // test 5
+    @Test
+    void testParallelReadKeepsOrder() throws IOException {
+        // large enough to be split into sections which are parsed in parallel
+        File file = File.createTempFile("parallel", ".data");
+        file.deleteOnExit();
+        new File(file.getPath() + DatasetCache.EXTENSION).deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            for (int i = 0; i < 300000; i++) {
+                if (i % 100000 == 50) {
+                    writer.println("1.0,short");
+                } else {
+                    writer.println(i + ",0.25,0.5,0.75,1.0,sample" + (i % 7));
+                }
+            }
+        }
+
+        DBparser.setDatabase(file);
+        ArrayList<DataPoint> database = DBparser.readDB();
+
+        boolean inOrder = database.size() == 299997;
+        double previous = -1;
+        for (int i = 0; inOrder && i < database.size(); i++) {
+            inOrder = database.get(i).getNumericalValue(0) > previous;
+            previous = database.get(i).getNumericalValue(0);
+        }
+        assertTrue(inOrder, "The three short lines should be rejected and the rest should stay in file order");
+    }
+
+    // test 6
+    @Test
+    void testScanFile() throws IOException {
+        DBparser.setDatabase(yeast);
+        FileSummary summary = DBparser.scanFile();
+        assertTrue(summary.getLineCount() == 1484 && summary.getNumericalCount() == 8 && summary.getCategoricalCount() == 2,
+                "Scanning should find the same details as reading the whole file");
+    }
+
+    // test 7
+    @Test
+    void testLeanMode() throws IOException {
+        DBparser.setDatabase(yeast);
+        ArrayList<DataPoint> database = DBparser.readDB();
+
+        ChannelParser leanParser = new ChannelParser();
+        leanParser.setLeanMode(true);
+        leanParser.setDatabase(yeast);
+        ArrayList<DataPoint> leanDatabase = leanParser.readDB();
+
+        boolean sameLines = leanDatabase.size() == database.size() && leanDatabase.get(0).getDataset().isLean();
+        for (int i = 0; sameLines && i < database.size(); i++) {
+            sameLines = leanDatabase.get(i).toString().equals(database.get(i).toString());
+        }
+        assertTrue(sameLines, "Lines read back from the file should match the lines which were kept in memory");
+    }
+
+    // test 8
+    @Test
+    void testLeanDatasetClosed() throws IOException {
+        ChannelParser leanParser = new ChannelParser();
+        leanParser.setLeanMode(true);
+        leanParser.setDatabase(yeast);
+        ArrayList<DataPoint> leanDatabase = leanParser.readDB();
+        String firstLine = leanDatabase.get(0).toString();
+
+        leanDatabase.get(0).getDataset().close();
+        assertThrows(UncheckedIOException.class, () -> leanDatabase.get(1).toString(),
+                "Lines should not be read once the dataset has closed the file");
+        assertTrue(firstLine.length() > 0, "Lines should be read while the dataset is open");
+    }
+
+    // test 9
+    @Test
+    void testJavaNumberFormats() throws IOException {
+        // every token Double.parseDouble accepts is numerical for the default parser, so it has to be here too
+        File file = File.createTempFile("formats", ".data");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("NaN,Infinity,-Infinity,1.5f,2d,0x1p3,red,1e5,bed");
+            writer.println("1,2,3,4,5,6,blue,7,sky");
+        }
+
+        DefaultParser defaultParser = new DefaultParser();
+        defaultParser.setDatabase(file);
+        DataPoint expected = defaultParser.readDB().get(0);
+
+        DBparser.setDatabase(file);
+        ArrayList<DataPoint> actual = DBparser.readDB();
+
+        assertTrue(actual.size() == 2, "Both lines should have the same layout");
+        assertTrue(actual.get(0).sizeNumerical() == expected.sizeNumerical() && actual.get(0).sizeCategorical() == expected.sizeCategorical(),
+                "The tokens should be typed the same as by the default parser");
+        for (int i = 0; i < expected.sizeNumerical(); i++) {
+            assertEquals(expected.getNumericalValue(i), actual.get(0).getNumericalValue(i), "The numbers should match those read by the default parser");
+        }
+        assertEquals("bed", actual.get(0).getCategorical(1), "Words ending like a number suffix should stay categorical");
+    }
+}
@@ -0,0 +1,30 @@
+import kernel.DataPoint;
+import org.junit.jupiter.api.Test;
+import plugins.ChebyshevDistanceAlgorithm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestChebyshevDistanceAlgorithm {
+    ChebyshevDistanceAlgorithm cDistance = new ChebyshevDistanceAlgorithm();
+    String[] catData = new String[0];
+
+    // test 1
+    @Test
+    void testNumericalChebyshevDistance() {
+        DataPoint dp1 = new DataPoint("", catData, new Double[]{2.0, 5.0, 1.0});
+        DataPoint dp2 = new DataPoint("", catData, new Double[]{5.0, 10.0, -6.0});
+
+        assertEquals(7.0, cDistance.measureDistance(dp1, dp2), "the largest difference is 7 in the third feature");
+    }
+
+    // test 2
+    @Test
+    void testCategoricalChebyshevDistance() {
+        DataPoint dp1 = new DataPoint("", new String[]{"MIT"}, new Double[]{4.0});
+        DataPoint dp2 = new DataPoint("", new String[]{"NUC"}, new Double[]{2.0});
+
+        assertEquals(3.0, cDistance.measureDistance(dp1, dp2), "the edit distance of 3 is larger than the difference of 2");
+        assertTrue(cDistance.measureComparisonDistance(dp1, dp2, 1.0) > 1.0, "a distance past the bound should be larger than it");
+    }
+}
@@ -0,0 +1,106 @@
+import kernel.CompressedInput;
+import org.junit.jupiter.api.Test;
+import plugins.ChannelParser;
+import plugins.DefaultParser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCompressedInput {
+    String contents = "1.0,2.0,a\n3.0,4.0,b\n5.0,6.0,c\n";
+
+    private File createGzipFile() throws IOException {
+        return createGzipFile(1);
+    }
+
+    private File createGzipFile(int copies) throws IOException {
+        File file = File.createTempFile("compressed", ".gz");
+        file.deleteOnExit();
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < copies; i++) {
+                out.write(contents.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return file;
+    }
+
+    // test 1
+    @Test
+    void testDetectFormat() throws IOException {
+        File zipFile = File.createTempFile("compressed", ".data");
+        zipFile.deleteOnExit();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile))) {
+            out.putNextEntry(new ZipEntry("inner.data"));
+            out.write(contents.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertTrue(CompressedInput.detect(createGzipFile()) == CompressedInput.Format.GZIP
+                        && CompressedInput.detect(zipFile) == CompressedInput.Format.ZIP
+                        && CompressedInput.detect(new File("src/main/resources/ecoli.data")) == CompressedInput.Format.NONE,
+                "The compression should be found from the first bytes of the file, whatever its name");
+    }
+
+    // test 2
+    @Test
+    void testStreamDecompressed() throws IOException {
+        String read;
+        try (InputStream in = CompressedInput.open(createGzipFile())) {
+            read = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertEquals(contents, read, "Reading a compressed file should return the original text");
+    }
+
+    // test 3
+    @Test
+    void testParseCompressed() throws IOException {
+        File file = createGzipFile();
+        DefaultParser defaultParser = new DefaultParser();
+        defaultParser.setDatabase(file);
+        ChannelParser channelParser = new ChannelParser();
+        channelParser.setDatabase(file);
+
+        assertTrue(defaultParser.readDB().get(2).toString().equals("5.0,6.0,c") && channelParser.readDB().size() == 3
+                        && channelParser.getFeatureNumber() == 3,
+                "Both parsers should read a compressed file without it being decompressed to disk first");
+    }
+
+    private long countDecompressors(long expected) throws InterruptedException {
+        // closed streams stop their decompressor straight away, but it may take a moment for the thread to finish
+        long count = 0;
+        for (int attempt = 0; attempt < 20; attempt++) {
+            count = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.isAlive() && thread.getName().equals("decompressor")).count();
+            if (count <= expected) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        return count;
+    }
+
+    // test 4
+    @Test
+    void testConnectWithoutReading() throws IOException, InterruptedException {
+        // more text than the decompressor can hold waiting to be read
+        File file = createGzipFile(100000);
+        long before = countDecompressors(0);
+        DefaultParser defaultParser = new DefaultParser();
+        for (int i = 0; i < 5; i++) {
+            defaultParser.setDatabase(file);
+            defaultParser.scanFile();
+        }
+        assertEquals(before, countDecompressors(before), "Connecting a compressed file should not start decompressing it until it is read");
+
+        assertEquals(300000, defaultParser.readDB().size(), "The last file connected should still be read in full");
+    }
+}
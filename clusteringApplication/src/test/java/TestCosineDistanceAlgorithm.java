@@ -0,0 +1,47 @@
+import kernel.DataPoint;
+import kernel.Dataset;
+import org.junit.jupiter.api.Test;
+import plugins.CosineDistanceAlgorithm;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestCosineDistanceAlgorithm {
+    CosineDistanceAlgorithm cDistance = new CosineDistanceAlgorithm();
+    String[] catData = new String[0];
+
+    // test 1
+    @Test
+    void testCosineDistance() {
+        DataPoint dp1 = new DataPoint("", catData, new Double[]{1.0, 0.0});
+        DataPoint dp2 = new DataPoint("", catData, new Double[]{0.0, 3.0});
+        DataPoint dp3 = new DataPoint("", catData, new Double[]{5.0, 0.0});
+        DataPoint dp4 = new DataPoint("", catData, new Double[]{-2.0, 0.0});
+
+        assertEquals(1.0, cDistance.measureDistance(dp1, dp2), 1e-12, "points at right angles should be 1 apart");
+        assertEquals(0.0, cDistance.measureDistance(dp1, dp3), 1e-12, "points in the same direction should be 0 apart whatever their length");
+        assertEquals(2.0, cDistance.measureDistance(dp1, dp4), 1e-12, "points in opposite directions should be 2 apart");
+    }
+
+    // test 2
+    @Test
+    void testPreparedMatchesUnprepared() {
+        Dataset dataset = new Dataset(3, 0);
+        for (int i = 0; i < 10; i++) {
+            dataset.addRow("", new double[]{i, 10 - i, i * i}, catData);
+        }
+        ArrayList<DataPoint> points = dataset.getDataPoints();
+        double unprepared = cDistance.measureDistance(points.get(2), points.get(7));
+
+        cDistance.prepare(points);
+        assertEquals(unprepared, cDistance.measureDistance(points.get(2), points.get(7)),
+                "preparing the lengths up front should not change the distance");
+
+        // changing a feature means the prepared lengths can no longer be used
+        points.get(2).setNumerical(0, 0.0);
+        DataPoint changed = new DataPoint("", catData, new Double[]{0.0, 8.0, 4.0});
+        assertEquals(cDistance.measureDistance(changed, points.get(7)), cDistance.measureDistance(points.get(2), points.get(7)), 1e-12,
+                "a changed data point should be measured with its new length");
+    }
+}
@@ -0,0 +1,36 @@
+import kernel.Dataset;
+
+import java.util.Random;
+
+/**
+ * Builds the random datasets shared by the tests. The random numbers are seeded with the number of rows so each test
+ * sees the same data every time it runs.
+ */
+public class TestData {
+
+    /**
+     * @param rows the number of samples
+     * @return a dataset of two numerical features and no categorical features
+     */
+    public static Dataset createDataset(int rows) {
+        return createDataset(rows, 0);
+    }
+
+    /**
+     * @param rows             the number of samples
+     * @param categoricalCount the number of categorical features, each taking one of three values
+     * @return a dataset of two numerical features and the given number of categorical features
+     */
+    public static Dataset createDataset(int rows, int categoricalCount) {
+        Dataset dataset = new Dataset(2, categoricalCount);
+        Random random = new Random(rows);
+        for (int i = 0; i < rows; i++) {
+            String[] categorical = new String[categoricalCount];
+            for (int j = 0; j < categoricalCount; j++) {
+                categorical[j] = "C" + random.nextInt(3);
+            }
+            dataset.addRow("", new double[]{random.nextDouble() * 10, random.nextGaussian()}, categorical);
+        }
+        return dataset;
+    }
+}
@@ -0,0 +1,57 @@
+import kernel.DataPoint;
+import kernel.Dataset;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDataset {
+
+    // test 1
+    @Test
+    void testRowsShareStorage() {
+        Dataset dataset = new Dataset(2, 1);
+        dataset.addRow("1.0 2.0 a", new double[]{1.0, 2.0}, new String[]{"a"});
+        dataset.addRow("3.0 4.0 b", new double[]{3.0, 4.0}, new String[]{"b"});
+
+        ArrayList<DataPoint> dataPoints = dataset.getDataPoints();
+        assertTrue(dataPoints.size() == 2 && dataPoints.get(1).getNumericalValue(0) == 3.0 && dataPoints.get(1).getCategorical(0).equals("b"),
+                "Each data point should read the features of its own row");
+    }
+
+    // test 2
+    @Test
+    void testOriginalValuesKept() {
+        Dataset dataset = new Dataset(1, 0);
+        dataset.addRow("5.0", new double[]{5.0}, new String[0]);
+        DataPoint dp = dataset.getDataPoints().get(0);
+        dp.setNumerical(0, 0.5);
+
+        assertTrue(dp.getNumericalValue(0) == 0.5 && dp.getOriginalNumericalValue(0) == 5.0,
+                "Updating a feature should not change the original value kept for displaying results");
+    }
+
+    // test 3
+    @Test
+    void testSameViewReturned() {
+        Dataset dataset = new Dataset(1, 0);
+        dataset.addRow("1.0", new double[]{1.0}, new String[0]);
+        DataPoint first = dataset.getDataPoints().get(0);
+        dataset.addRow("2.0", new double[]{2.0}, new String[0]);
+
+        assertTrue(dataset.getDataPoints().get(0) == first, "Rows should always be represented by the same data point object");
+    }
+
+    // test 4
+    @Test
+    void testGrowBeyondInitialCapacity() {
+        Dataset dataset = new Dataset(3, 0);
+        for (int i = 0; i < 1000; i++) {
+            dataset.addRow(String.valueOf(i), new double[]{i, i * 2, i * 3}, new String[0]);
+        }
+        dataset.trimToSize();
+        assertEquals(2997.0, dataset.getDataPoints().get(999).getNumericalValue(2), "Values should survive the storage being resized");
+    }
+}
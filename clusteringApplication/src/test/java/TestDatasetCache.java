@@ -0,0 +1,81 @@
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.DatasetCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDatasetCache {
+
+    private File createSource(String contents) throws IOException {
+        File source = File.createTempFile("cached", ".data");
+        source.deleteOnExit();
+        new File(source.getPath() + DatasetCache.EXTENSION).deleteOnExit();
+        try (FileWriter writer = new FileWriter(source)) {
+            writer.write(contents);
+        }
+        return source;
+    }
+
+    private Dataset createDataset() {
+        Dataset dataset = new Dataset(2, 1);
+        dataset.addRow("1.5 2.0 red", new double[]{1.5, 2.0}, new String[]{"red"});
+        dataset.addRow("3.0 4.5 blue", new double[]{3.0, 4.5}, new String[]{"blue"});
+        dataset.addRow("5.0 6.0 red", new double[]{5.0, 6.0}, new String[]{"red"});
+        return dataset;
+    }
+
+    // test 1
+    @Test
+    void testRoundTrip() throws IOException {
+        File source = createSource("1.5 2.0 red\n3.0 4.5 blue\n5.0 6.0 red\n");
+        DatasetCache cache = new DatasetCache(source, "Default");
+        assertTrue(cache.save(createDataset()), "The cache should be written next to the database");
+
+        for (boolean offHeap : new boolean[]{true, false}) {
+            Dataset loaded = cache.load(offHeap);
+            ArrayList<DataPoint> dataPoints = loaded.getDataPoints();
+            DataPoint dp = dataPoints.get(1);
+            assertTrue(dataPoints.size() == 3 && dp.getNumericalValue(1) == 4.5 && dp.getCategorical(0).equals("blue")
+                            && dp.toString().equals("3.0 4.5 blue") && dp.getCategoricalCode(0) != dataPoints.get(2).getCategoricalCode(0),
+                    "The loaded dataset should hold the same rows as the one which was saved");
+            assertTrue((loaded.getNumericalFeatures().getArray() == null) == offHeap,
+                    "The features should only be kept on the heap when they are not loaded off the heap");
+        }
+    }
+
+    // test 2
+    @Test
+    void testStaleCacheIgnored() throws IOException {
+        File source = createSource("1.5 2.0 red\n3.0 4.5 blue\n5.0 6.0 red\n");
+        DatasetCache cache = new DatasetCache(source, "Default");
+        cache.save(createDataset());
+
+        try (FileWriter writer = new FileWriter(source, true)) {
+            writer.write("7.0 8.0 green\n");
+        }
+        assertNull(cache.load(false), "A cache should not be used once the database has changed");
+        assertNull(new DatasetCache(source, "Fast (NIO)").load(false), "A cache should only be used by the parser which wrote it");
+    }
+
+    // test 3
+    @Test
+    void testCacheNotModified() throws IOException {
+        File source = createSource("1.5 2.0 red\n3.0 4.5 blue\n5.0 6.0 red\n");
+        DatasetCache cache = new DatasetCache(source, "Default");
+        cache.save(createDataset());
+
+        for (boolean offHeap : new boolean[]{true, false}) {
+            cache.load(offHeap).getDataPoints().get(0).setNumerical(0, 0.25);
+            DataPoint reloaded = cache.load(offHeap).getDataPoints().get(0);
+            assertEquals(1.5, reloaded.getNumericalValue(0), "Changes to the working copy of the features should not be written to the cache");
+        }
+    }
+}
@@ -1,5 +1,7 @@
 import plugins.DefaultParser;
 import kernel.DataPoint;
+import kernel.FileSummary;
+import spi.BatchReader;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
@@ -118,4 +120,35 @@ public class TestDefaultParser {
         ArrayList<DataPoint> database = DBparser.readDB();
         assertTrue(database.size() == 53 && database.get(0).sizeTotal() == 3, "There are a total of 53 lines, the parser should be able to read all of them");
     }
+
+    // Test 12
+    @Test
+    void testReadInBatches() throws IOException {
+        DBparser.setDatabase(ecoli);
+        ArrayList<DataPoint> database = DBparser.readDB();
+
+        DBparser.setDatabase(ecoli);
+        int rowsRead = 0;
+        boolean sameRows = true;
+        try (BatchReader batches = DBparser.readBatches(100)) {
+            ArrayList<DataPoint> batch;
+            while ((batch = batches.nextBatch()) != null) {
+                sameRows &= batch.size() <= 100;
+                for (DataPoint dp : batch) {
+                    sameRows &= dp.toString().equals(database.get(rowsRead++).toString());
+                }
+            }
+        }
+        assertTrue(sameRows && rowsRead == 336 && DBparser.getNumberOfLines() == 336,
+                "Reading in batches should return the same rows in the same order as reading the whole file");
+    }
+
+    // Test 13
+    @Test
+    void testScanFile() throws IOException {
+        DBparser.setDatabase(ecoli);
+        FileSummary summary = DBparser.scanFile();
+        assertTrue(summary.getLineCount() == 336 && summary.getFeatureNumber() == 7,
+                "Scanning should find the same details as reading the whole file");
+    }
 }
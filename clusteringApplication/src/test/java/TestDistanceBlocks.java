@@ -0,0 +1,131 @@
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.DistanceBlocks;
+import kernel.DistanceMatrix;
+import kernel.MappedFeatureMatrix;
+import org.junit.jupiter.api.Test;
+import plugins.EuclideanDistanceAlgorithm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDistanceBlocks {
+    EuclideanDistanceAlgorithm eDistance = new EuclideanDistanceAlgorithm();
+
+    private ArrayList<DataPoint> createPoints(int rows, int features, long seed) {
+        return createPoints(new Dataset(features, 0), rows, features, seed);
+    }
+
+    private ArrayList<DataPoint> createPoints(Dataset dataset, int rows, int features, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < rows; i++) {
+            double[] values = new double[features];
+            for (int k = 0; k < features; k++) {
+                values[k] = random.nextGaussian();
+            }
+            dataset.addRow("", values, new String[0]);
+        }
+        return dataset.getDataPoints();
+    }
+
+    // test 1
+    @Test
+    void testBlocksMatchPairDistances() {
+        // sizes which do not divide into whole tiles or pairs of rows
+        ArrayList<DataPoint> rows = createPoints(131, 7, 1);
+        ArrayList<DataPoint> columns = createPoints(67, 7, 2);
+        DistanceBlocks rowBlocks = new DistanceBlocks(rows);
+        DistanceBlocks columnBlocks = new DistanceBlocks(columns);
+
+        double[] distances = new double[rows.size() * columns.size()];
+        rowBlocks.squaredDistances(0, rows.size(), columnBlocks, 0, columns.size(), distances, 0, columns.size());
+
+        double largestError = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            for (int j = 0; j < columns.size(); j++) {
+                double expected = eDistance.measureComparisonDistance(rows.get(i), columns.get(j));
+                largestError = Math.max(largestError, Math.abs(distances[i * columns.size() + j] - expected));
+            }
+        }
+        assertTrue(largestError < 1e-9, "block distances should match the distance of each pair, largest error was " + largestError);
+    }
+
+    // test 2
+    @Test
+    void testIdenticalPointsAreExact() {
+        ArrayList<DataPoint> points = new ArrayList<>();
+        points.add(new DataPoint("", new String[0], new Double[]{1e6, 1e6 + 0.1, 3.0}));
+        points.add(new DataPoint("", new String[0], new Double[]{1e6, 1e6 + 0.1, 3.0}));
+        points.add(new DataPoint("", new String[0], new Double[]{1e6, 1e6 + 0.1, 3.5}));
+        DistanceBlocks blocks = new DistanceBlocks(points);
+
+        double[] distances = new double[9];
+        blocks.squaredDistances(0, 3, blocks, 0, 3, distances, 0, 3);
+        assertEquals(0.0, distances[1], "identical points far from the origin should be exactly zero apart");
+        assertEquals(0.25, distances[2], "close points should be measured without losing precision");
+    }
+
+    // test 3
+    @Test
+    void testMatrixFilledByBlocks() {
+        ArrayList<DataPoint> points = createPoints(150, 4, 3);
+        DistanceMatrix matrix = DistanceMatrix.compute(points, eDistance);
+
+        double largestError = 0;
+        for (int i = 0; i < points.size(); i++) {
+            for (int j = i + 1; j < points.size(); j++) {
+                double expected = eDistance.measureComparisonDistance(points.get(i), points.get(j));
+                largestError = Math.max(largestError, Math.abs(matrix.get(i, j) - expected));
+            }
+        }
+        assertTrue(largestError < 1e-9, "every pair of the matrix should be filled, largest error was " + largestError);
+    }
+
+    // test 4
+    @Test
+    void testOnlyUsedForNumericalData() {
+        ArrayList<DataPoint> points = new ArrayList<>();
+        points.add(new DataPoint("", new String[]{"MIT"}, new Double[]{1.0}));
+        assertFalse(DistanceBlocks.canMeasure(eDistance, points), "categorical features cannot be measured by the block engine");
+        assertTrue(DistanceBlocks.canMeasure(eDistance, createPoints(3, 2, 4)), "numerical data with euclidean distance should use the block engine");
+    }
+
+    // test 5
+    @Test
+    void testPointsReadWhereTheyAre() throws IOException {
+        // some rows of a dataset in a different order, which are read from the dataset rather than copied
+        ArrayList<DataPoint> rows = new ArrayList<>(createPoints(90, 5, 5).subList(10, 80));
+        Collections.shuffle(rows, new Random(6));
+        Dataset mapped = new Dataset(new MappedFeatureMatrix(5), new MappedFeatureMatrix(5), 0);
+        ArrayList<DataPoint> columns = createPoints(mapped, 40, 5, 7);
+
+        double[] distances = new double[rows.size() * columns.size()];
+        new DistanceBlocks(rows).squaredDistances(0, rows.size(), new DistanceBlocks(columns), 0, columns.size(),
+                distances, 0, columns.size());
+
+        double largestError = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            for (int j = 0; j < columns.size(); j++) {
+                double expected = eDistance.measureComparisonDistance(rows.get(i), columns.get(j));
+                largestError = Math.max(largestError, Math.abs(distances[i * columns.size() + j] - expected));
+            }
+        }
+        assertTrue(largestError < 1e-9, "points should be measured from wherever they are held, largest error was " + largestError);
+    }
+
+    // test 6
+    @Test
+    void testLargeMappedDataNotCopied() throws IOException {
+        Dataset mapped = new Dataset(new MappedFeatureMatrix(8), new MappedFeatureMatrix(8), 0);
+        ArrayList<DataPoint> points = createPoints(mapped, 600000, 8, 8);
+        assertFalse(DistanceBlocks.canMeasure(eDistance, points), "features kept off the heap should not be copied onto it");
+        assertTrue(DistanceBlocks.canMeasure(eDistance, createPoints(600000, 8, 8)),
+                "features already on the heap should be measured where they are");
+    }
+}
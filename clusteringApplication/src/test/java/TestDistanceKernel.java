@@ -0,0 +1,46 @@
+import kernel.DistanceKernel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDistanceKernel {
+
+    // test 1
+    @Test
+    void testSquaredDistanceForEveryRemainder() {
+        // lengths which leave every possible number of features after the unrolled loop
+        for (int length = 0; length <= 9; length++) {
+            double[] a = new double[length];
+            double[] b = new double[length];
+            double expected = 0;
+            for (int i = 0; i < length; i++) {
+                a[i] = i * 1.5;
+                b[i] = 10 - i;
+                expected += (a[i] - b[i]) * (a[i] - b[i]);
+            }
+            assertEquals(expected, DistanceKernel.squaredDistance(a, 0, b, 0, length), 1e-9,
+                    "squared distance should be the sum of the squared differences for " + length + " features");
+        }
+    }
+
+    // test 2
+    @Test
+    void testSquaredDistanceBetweenRowsOfAnArray() {
+        // two rows of three features held one after another, as a dataset holds them
+        double[] rows = {1.0, 2.0, 3.0, 4.0, 6.0, 3.0};
+        assertEquals(25.0, DistanceKernel.squaredDistance(rows, 0, rows, 3, 3),
+                "differences of 3, 4 and 0 should give a squared distance of 25");
+    }
+
+    // test 3
+    @Test
+    void testBoundedSquaredDistance() {
+        double[] a = {1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0};
+        double[] b = new double[9];
+        assertEquals(DistanceKernel.squaredDistance(a, 0, b, 0, 9), DistanceKernel.squaredDistance(a, 0, b, 0, 9, 9.0),
+                "a distance within the bound should be the same as the unbounded distance");
+        double abandoned = DistanceKernel.squaredDistance(a, 0, b, 0, 9, 3.0);
+        assertTrue(abandoned > 3.0 && abandoned < 9.0, "the sum should stop once the first four features pass the bound");
+    }
+}
@@ -0,0 +1,127 @@
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.DistanceMatrix;
+import kernel.DistanceMatrixCache;
+import org.junit.jupiter.api.Test;
+import plugins.EuclideanDistanceAlgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDistanceMatrixCache {
+    EuclideanDistanceAlgorithm eDistance = new EuclideanDistanceAlgorithm();
+
+    private Dataset createDataset(int rows) {
+        Dataset dataset = new Dataset(2, 1);
+        String[] categories = {"MIT", "NUC", "CYT"};
+        for (int i = 0; i < rows; i++) {
+            dataset.addRow("", new double[]{i * 0.5, (i * 7) % 5}, new String[]{categories[i % categories.length]});
+        }
+        return dataset;
+    }
+
+    // test 1
+    @Test
+    void testMatrixHoldsEveryPair() {
+        ArrayList<DataPoint> points = createDataset(25).getDataPoints();
+        DistanceMatrix matrix = DistanceMatrix.compute(points, eDistance);
+
+        boolean allMatch = true;
+        for (int i = 0; i < points.size(); i++) {
+            for (int j = 0; j < points.size(); j++) {
+                double expected = i == j ? 0 : eDistance.measureComparisonDistance(points.get(i), points.get(j));
+                allMatch &= matrix.get(i, j) == expected;
+            }
+        }
+        assertTrue(allMatch, "the matrix should hold the comparison distance of every pair");
+        assertEquals(25 * 24 / 2 * Double.BYTES, matrix.getByteSize(), "only the pairs above the diagonal should be stored");
+    }
+
+    // test 2
+    @Test
+    void testPointsFromAList() {
+        ArrayList<DataPoint> points = new ArrayList<>(createDataset(10).getDataPoints());
+        DataPoint handMade = new DataPoint("", new String[]{"MIT"}, new Double[]{3.0, 4.0});
+        points.add(0, handMade);
+        DistanceMatrix matrix = DistanceMatrix.compute(points, eDistance);
+
+        assertEquals(0, matrix.indexOf(handMade), "the index of a point should be its position in the list");
+        assertEquals(eDistance.measureComparisonDistance(handMade, points.get(5)), matrix.get(handMade, points.get(5)),
+                "looking up two data points should give their comparison distance");
+    }
+
+    // test 3
+    @Test
+    void testCachedUntilDatasetChanges() {
+        DistanceMatrixCache cache = new DistanceMatrixCache(1 << 20);
+        Dataset dataset = createDataset(20);
+
+        DistanceMatrix first = cache.getMatrix(dataset.getDataPoints(), eDistance);
+        assertSame(first, cache.getMatrix(dataset.getDataPoints(), new EuclideanDistanceAlgorithm()),
+                "the same dataset and distance algorithm should be given the cached matrix");
+
+        dataset.getDataPoints().get(3).setNumerical(0, 100.0);
+        DistanceMatrix changed = cache.getMatrix(dataset.getDataPoints(), eDistance);
+        assertNotSame(first, changed, "changing a feature should cause the matrix to be measured again");
+        assertEquals(1, cache.size(), "the out of date matrix should have been replaced");
+        assertEquals(changed.getByteSize(), cache.getMemoryUsed(), "only the new matrix should be counted");
+    }
+
+    // test 4
+    @Test
+    void testLeastRecentlyUsedRemoved() {
+        // room for two matrices of 20 points but not three
+        DistanceMatrixCache cache = new DistanceMatrixCache(2 * DistanceMatrix.byteSize(20));
+        Dataset dataset1 = createDataset(20);
+        Dataset dataset2 = createDataset(20);
+        Dataset dataset3 = createDataset(20);
+
+        DistanceMatrix matrix1 = cache.getMatrix(dataset1.getDataPoints(), eDistance);
+        cache.getMatrix(dataset2.getDataPoints(), eDistance);
+        // using the first matrix again makes the second the least recently used
+        cache.getMatrix(dataset1.getDataPoints(), eDistance);
+        cache.getMatrix(dataset3.getDataPoints(), eDistance);
+
+        assertEquals(2, cache.size(), "only two matrices should fit in the budget");
+        assertSame(matrix1, cache.getMatrix(dataset1.getDataPoints(), eDistance), "the recently used matrix should be kept");
+        assertTrue(cache.getMemoryUsed() <= cache.getMemoryBudget(), "the cache should stay within its budget");
+    }
+
+    // test 5
+    @Test
+    void testMeasuredOnceForConcurrentRequests() {
+        DistanceMatrixCache cache = new DistanceMatrixCache(1 << 24);
+        Dataset dataset = createDataset(400);
+
+        List<DistanceMatrix> matrices = IntStream.range(0, 8).parallel()
+                .mapToObj(i -> cache.getMatrix(dataset.getDataPoints(), eDistance)).collect(Collectors.toList());
+        for (DistanceMatrix matrix : matrices) {
+            assertSame(matrices.get(0), matrix, "requests made while the matrix is measured should wait for the same matrix");
+        }
+        assertEquals(1, cache.size(), "the matrix should only be cached once");
+        assertEquals(matrices.get(0).getByteSize(), cache.getMemoryUsed(), "the matrix should only be counted once");
+    }
+
+    // test 6
+    @Test
+    void testReleasedDatasetRemoved() throws InterruptedException {
+        DistanceMatrixCache cache = new DistanceMatrixCache(1 << 20);
+        cache.getMatrix(createDataset(20).getDataPoints(), eDistance);
+        assertEquals(1, cache.size(), "the matrix should be cached while the dataset may still be used");
+
+        // the dataset is no longer referenced, so once it has been collected its matrix should be removed
+        for (int attempt = 0; attempt < 50 && cache.size() > 0; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, cache.size(), "the matrix of a dataset which is no longer used should be removed");
+        assertEquals(0, cache.getMemoryUsed(), "the removed matrix should no longer be counted");
+    }
+}
@@ -0,0 +1,43 @@
+import kernel.EditDistance;
+import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestEditDistance {
+
+    // test 1
+    @Test
+    void testKnownDistances() {
+        assertEquals(3, EditDistance.measure("MIT", "NUC"), "three substitutions turn MIT into NUC");
+        assertEquals(3, EditDistance.measure("kitten", "sitting"), "kitten to sitting needs two substitutions and an insertion");
+        assertEquals(4, EditDistance.measure("", "CYTO"), "an empty value needs every character inserted");
+        assertEquals(0, EditDistance.measure("ME3", "ME3"), "equal values need no edits");
+    }
+
+    // test 2
+    @Test
+    void testMatchesLevenshtein() {
+        LevenshteinDistance levenshtein = LevenshteinDistance.getDefaultInstance();
+        Random random = new Random(7);
+        boolean allMatch = true;
+        for (int i = 0; i < 2000; i++) {
+            String value1 = randomString(random);
+            String value2 = randomString(random);
+            allMatch &= EditDistance.measure(value1, value2) == levenshtein.apply(value1, value2);
+        }
+        assertTrue(allMatch, "the edit distance should always match the Levenshtein distance");
+    }
+
+    private String randomString(Random random) {
+        // a small alphabet so that strings often share characters
+        char[] characters = new char[random.nextInt(40)];
+        for (int i = 0; i < characters.length; i++) {
+            characters[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(characters);
+    }
+}
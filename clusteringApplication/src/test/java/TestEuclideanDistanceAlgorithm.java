@@ -1,13 +1,16 @@
 import kernel.Cluster;
 import kernel.DataPoint;
+import kernel.Dataset;
 import plugins.EuclideanDistanceAlgorithm;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 
 import static java.lang.Math.round;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestEuclideanDistanceAlgorithm {
     EuclideanDistanceAlgorithm eDistance = new EuclideanDistanceAlgorithm();
@@ -91,4 +94,88 @@ public class TestEuclideanDistanceAlgorithm {
         double distance = eDistance.measureDistance(dp1, dp2);
         assertEquals(3.0, distance, "total squared distance of 9 so sqrt distance should be 3");
     }
+
+    // test 6
+    @Test
+    void testBatchedDistancesMatchSingleDistances() {
+        Dataset dataset = new Dataset(2, 1);
+        String[] categories = {"MIT", "NUC", "CYT", "ME3"};
+        for (int i = 0; i < 20; i++) {
+            dataset.addRow("", new double[]{i * 0.37, 5.0 - i * 1.3}, new String[]{categories[i % categories.length]});
+        }
+        ArrayList<DataPoint> points = dataset.getDataPoints();
+        DataPoint[] centroids = {
+                points.get(3),
+                new DataPoint("", new String[]{"NUC"}, new Double[]{1.5, -2.0}),
+                new DataPoint("", new String[]{"EXC"}, new Double[]{0.0, 0.0})
+        };
+
+        double[] oneToMany = new double[points.size()];
+        eDistance.measureDistances(centroids[1], points, oneToMany);
+        double[] manyToMany = new double[points.size() * centroids.length];
+        eDistance.measureDistances(points, centroids, manyToMany);
+
+        boolean allMatch = true;
+        for (int i = 0; i < points.size(); i++) {
+            allMatch &= oneToMany[i] == eDistance.measureDistance(centroids[1], points.get(i));
+            for (int j = 0; j < centroids.length; j++) {
+                allMatch &= manyToMany[i * centroids.length + j] == eDistance.measureDistance(points.get(i), centroids[j]);
+            }
+        }
+        assertTrue(allMatch, "batched distances should be exactly the same as measuring each pair on its own");
+    }
+
+    // test 7
+    @Test
+    void testComparisonDistanceIsSquaredDistance() {
+        DataPoint dp1 = new DataPoint("", new String[]{"MIT"}, new Double[]{4.0, 1.0});
+        DataPoint dp2 = new DataPoint("", new String[]{"NIV"}, new Double[]{2.0, 4.0});
+
+        double comparisonDistance = eDistance.measureComparisonDistance(dp1, dp2);
+        assertEquals(17.0, comparisonDistance, "squared differences of 4 and 9 plus an edit distance of 2 squared should give 17");
+        assertEquals(eDistance.measureDistance(dp1, dp2), eDistance.toDistance(comparisonDistance),
+                "converting the comparison distance should give the same value as measuring the distance");
+    }
+
+    // test 8
+    @Test
+    void testBoundedComparisonDistance() {
+        DataPoint dp1 = new DataPoint("", new String[]{"MIT"}, new Double[]{0.0, 0.0, 0.0, 0.0, 0.0});
+        DataPoint dp2 = new DataPoint("", new String[]{"CYTOPLASM"}, new Double[]{1.0, 2.0, 3.0, 4.0, 5.0});
+
+        double exact = eDistance.measureComparisonDistance(dp1, dp2);
+        assertEquals(exact, eDistance.measureComparisonDistance(dp1, dp2, exact),
+                "a pair exactly on the bound should be measured exactly");
+        assertTrue(eDistance.measureComparisonDistance(dp1, dp2, 20.0) > 20.0,
+                "the numerical features alone are further than the bound so a larger value should be returned");
+        assertTrue(eDistance.measureComparisonDistance(dp1, dp2, 60.0) > 60.0,
+                "the difference in length of the categorical values takes the pair over the bound");
+    }
+
+    // test 9
+    @Test
+    void testDistanceDoesNotAllocate() {
+        // points from separate datasets, so the categorical features are compared with the edit distance every time
+        DataPoint dp1 = new DataPoint("", new String[]{"cytoplasm", "MIT"}, new Double[]{0.2, 0.4, 0.6, 0.8, 1.0});
+        DataPoint dp2 = new DataPoint("", new String[]{"nucleus", "ME3"}, new Double[]{0.1, 0.3, 0.5, 0.7, 0.9});
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // warm up so the scratch rows have been created
+        double total = 0;
+        for (int i = 0; i < 20000; i++) {
+            total += eDistance.measureDistance(dp1, dp2);
+        }
+
+        int calls = 100000;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < calls; i++) {
+            total += eDistance.measureDistance(dp1, dp2);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(total > 0, "distances should have been measured");
+        // a little is allowed for the measurement itself, far less than a single object per call
+        assertTrue(allocated < 4096, "measuring distances should not allocate, but " + allocated + " bytes were allocated over " + calls + " calls");
+    }
 }
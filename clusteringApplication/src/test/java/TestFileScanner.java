@@ -0,0 +1,38 @@
+import kernel.FileScanner;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestFileScanner {
+
+    private File createFile(String contents) throws IOException {
+        File file = File.createTempFile("scan", ".data");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(contents);
+        }
+        return file;
+    }
+
+    // test 1
+    @Test
+    void testCountLines() throws IOException {
+        // lines of different lengths so the new lines fall in every position of the eight byte words
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            contents.append("x".repeat(i % 13)).append('\n');
+        }
+        assertEquals(1000, FileScanner.countLines(createFile(contents.toString())), "Every new line character should be counted");
+    }
+
+    // test 2
+    @Test
+    void testLastLineWithoutNewLine() throws IOException {
+        assertEquals(3, FileScanner.countLines(createFile("1,2\n3,4\n5,6")), "A last line which does not end with a new line should still be counted");
+        assertEquals(0, FileScanner.countLines(createFile("")), "An empty file has no lines");
+    }
+}
@@ -0,0 +1,92 @@
+import kernel.Cluster;
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.Linkage;
+import org.junit.jupiter.api.Test;
+import plugins.AgglomerativeAlgorithm;
+import plugins.EuclideanDistanceAlgorithm;
+import plugins.HybridHierarchicalAlgorithm;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestHybridHierarchicalAlgorithm {
+    HybridHierarchicalAlgorithm hybrid = new HybridHierarchicalAlgorithm();
+    EuclideanDistanceAlgorithm eDistance = new EuclideanDistanceAlgorithm();
+
+    // groups of points spread around well separated centres, the group of each point is kept in its categorical feature
+    private Dataset createGroups(int rows, double[][] centres) {
+        Dataset dataset = new Dataset(2, 1);
+        Random random = new Random(rows);
+        for (int i = 0; i < rows; i++) {
+            int group = i % centres.length;
+            double[] numerical = {centres[group][0] + random.nextGaussian() * 0.5, centres[group][1] + random.nextGaussian() * 0.5};
+            dataset.addRow("", numerical, new String[]{"G" + group});
+        }
+        return dataset;
+    }
+
+    // test 1
+    @Test
+    void testSmallDatasetsClusteredExactly() {
+        Dataset dataset = createGroups(40, new double[][]{{0, 0}, {3, 1}, {1, 4}});
+        AgglomerativeAlgorithm agglomerative = new AgglomerativeAlgorithm();
+        for (Linkage linkage : new Linkage[]{Linkage.WARD, Linkage.AVERAGE, Linkage.COMPLETE}) {
+            agglomerative.setLinkage(linkage);
+            agglomerative.setRoundLimit(35);
+            Cluster[] expected = agglomerative.clusterData(dataset.getDataPoints(), eDistance);
+
+            hybrid.setLinkage(linkage);
+            hybrid.setClusterCount(5);
+            Cluster[] actual = hybrid.clusterData(dataset.getDataPoints(), eDistance);
+
+            assertEquals(expected.length, actual.length, "With a micro-cluster per point the clusters should match " + linkage + " linkage");
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].size(), actual[i].size(), "With a micro-cluster per point the clusters should match " + linkage + " linkage");
+                for (int j = 0; j < expected[i].size(); j++) {
+                    assertEquals(expected[i].get(j).getRow(), actual[i].get(j).getRow(), "With a micro-cluster per point the clusters should match " + linkage + " linkage");
+                }
+            }
+        }
+    }
+
+    // test 2
+    @Test
+    void testMicroClustersMappedBack() {
+        Dataset dataset = createGroups(3000, new double[][]{{0, 0}, {20, 0}, {0, 20}});
+        hybrid.setLinkage(Linkage.WARD);
+        hybrid.setMicroClusterCount(60);
+        hybrid.setClusterCount(3);
+        Cluster[] clusters = hybrid.clusterData(dataset.getDataPoints(), eDistance);
+
+        assertEquals(3, clusters.length, "Three clusters should be returned");
+        int total = 0;
+        for (Cluster cluster : clusters) {
+            total += cluster.size();
+            String group = cluster.get(0).getCategorical(0);
+            for (int j = 0; j < cluster.size(); j++) {
+                assertEquals(group, cluster.get(j).getCategorical(0), "Each well separated group should be its own cluster");
+            }
+        }
+        assertEquals(3000, total, "Every data point should be in a cluster");
+    }
+
+    // test 3
+    @Test
+    void testCentroidsWeighted() {
+        ArrayList<Cluster> microClusters = new ArrayList<>();
+        Cluster cluster = new Cluster();
+        cluster.add(new DataPoint("", new String[]{"A"}, new Double[]{0.0, 2.0}));
+        cluster.add(new DataPoint("", new String[]{"B"}, new Double[]{1.0, 4.0}));
+        cluster.add(new DataPoint("", new String[]{"B"}, new Double[]{2.0, 6.0}));
+        microClusters.add(cluster);
+
+        DataPoint centroid = hybrid.calculateCentroids(microClusters).get(0);
+        assertEquals(1.0, centroid.getNumericalValue(0), 1e-12, "The centroid should be the mean of the numerical features");
+        assertEquals(4.0, centroid.getNumericalValue(1), 1e-12, "The centroid should be the mean of the numerical features");
+        assertTrue(centroid.getCategorical(0).equals("B"), "The centroid should take the most common categorical value");
+    }
+}
@@ -3,10 +3,13 @@ import org.junit.jupiter.api.Test;
 import plugins.DefaultParser;
 import plugins.KMeansAlgorithm;
 import plugins.EuclideanDistanceAlgorithm;
+import plugins.ManhattanDistanceAlgorithm;
+import spi.BatchReader;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -231,7 +234,113 @@ public class TestKmeans {
 
     }
 
+    @Test
+    void testClusterBatches() throws IOException {
+        String[] catData = new String[0];
+        ArrayList<DataPoint> dpList = new ArrayList<>();
+        dpList.add(new DataPoint("", catData, new Double[]{1.0, 1.0}));
+        dpList.add(new DataPoint("", catData, new Double[]{9.0, 9.0}));
+        dpList.add(new DataPoint("", catData, new Double[]{1.5, 1.0}));
+        dpList.add(new DataPoint("", catData, new Double[]{9.0, 8.5}));
+
+        BatchReader batches = new BatchReader() {
+            private boolean read;
+
+            @Override
+            public ArrayList<DataPoint> nextBatch() {
+                if (read) {
+                    return null;
+                }
+                read = true;
+                return dpList;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
 
+        kmeans.setkClusters(2);
+        Cluster[] outClusters = kmeans.clusterBatches(batches, singleLinkage, null);
+        assertTrue(outClusters.length == 2 && outClusters[0].contains(dpList.get(2)) && outClusters[1].contains(dpList.get(3)),
+                "Each data point should be added to the cluster of the closest starting point");
+    }
 
+    // k-means which always starts from the same data points, so two runs can be compared
+    private KMeansAlgorithm fixedStartKmeans(int k) {
+        KMeansAlgorithm fixedStart = new KMeansAlgorithm() {
+            @Override
+            public DataPoint[] chooseInitalCentroids(ArrayList<DataPoint> inputData) {
+                DataPoint[] centroids = new DataPoint[k];
+                for (int i = 0; i < k; i++) {
+                    centroids[i] = inputData.get(i * 7);
+                }
+                return centroids;
+            }
+        };
+        fixedStart.setkClusters(k);
+        fixedStart.setnumberOfRounds(30);
+        return fixedStart;
+    }
 
+    private Dataset createGroups(int rows) {
+        Dataset dataset = new Dataset(3, 0);
+        Random random = new Random(rows);
+        for (int i = 0; i < rows; i++) {
+            int group = random.nextInt(12);
+            dataset.addRow("", new double[]{group % 4 * 3 + random.nextGaussian(), group / 4 * 3 + random.nextGaussian(),
+                    random.nextGaussian()}, new String[0]);
+        }
+        return dataset;
+    }
+
+    @Test
+    void testElkanMatchesLloyd() {
+        Dataset dataset = createGroups(3000);
+        for (spi.DistanceAlgorithm distanceAlgorithm : new spi.DistanceAlgorithm[]{singleLinkage, new ManhattanDistanceAlgorithm()}) {
+            KMeansAlgorithm lloyd = fixedStartKmeans(12);
+            Cluster[] expected = lloyd.clusterData(dataset.getDataPoints(), distanceAlgorithm);
+
+            KMeansAlgorithm elkan = fixedStartKmeans(12);
+            elkan.setElkan(true);
+            Cluster[] actual = elkan.clusterData(dataset.getDataPoints(), distanceAlgorithm);
+
+            assertTrue(expected.length == actual.length, "Elkan's method should give the same number of clusters");
+            for (int i = 0; i < expected.length; i++) {
+                assertTrue(expected[i].size() == actual[i].size(), "Elkan's method should give the same clusters with " + distanceAlgorithm.getName());
+                for (int j = 0; j < expected[i].size(); j++) {
+                    assertTrue(expected[i].get(j) == actual[i].get(j), "Elkan's method should give the same clusters with " + distanceAlgorithm.getName());
+                }
+            }
+            assertTrue(elkan.getDistancesMeasured() + elkan.getDistancesSkipped() == lloyd.getDistancesMeasured(),
+                    "Every distance Lloyd's method measures should be either measured or skipped by Elkan's method");
+            assertTrue(elkan.getDistancesSkipped() > elkan.getDistancesMeasured(),
+                    "Most distances should be skipped once the clusters settle");
+            assertTrue(lloyd.getRunSummary() == null, "Lloyd's method should have nothing to report");
+            assertTrue(elkan.getRunSummary().contains(String.format("%,d of %,d", elkan.getDistancesSkipped(), lloyd.getDistancesMeasured())),
+                    "The summary should report the distances skipped out of the total");
+        }
+    }
+
+    @Test
+    void testRoundsUseLatestClusters() {
+        // the first two centroids start in the same group, each round should move the centroids on from the clusters
+        // of the round before so the groups are found
+        Dataset dataset = new Dataset(2, 0);
+        double[][] positions = {{0, 0}, {0.5, 0}, {10, 10}, {1, 0.5}, {10.5, 10}, {0, 1}, {10, 10.5}, {0.5, 1}};
+        for (double[] position : positions) {
+            dataset.addRow("", position, new String[0]);
+        }
+        KMeansAlgorithm fixedStart = new KMeansAlgorithm() {
+            @Override
+            public DataPoint[] chooseInitalCentroids(ArrayList<DataPoint> inputData) {
+                return new DataPoint[]{inputData.get(0), inputData.get(1)};
+            }
+        };
+        fixedStart.setkClusters(2);
+        fixedStart.setnumberOfRounds(5);
+        Cluster[] clusters = fixedStart.clusterData(dataset.getDataPoints(), singleLinkage);
+
+        assertTrue(clusters[0].size() == 5 && clusters[1].size() == 3, "The centroids should settle on the two groups");
+    }
 }
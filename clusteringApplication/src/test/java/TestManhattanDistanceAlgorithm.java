@@ -0,0 +1,39 @@
+import kernel.DataPoint;
+import org.junit.jupiter.api.Test;
+import plugins.ManhattanDistanceAlgorithm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestManhattanDistanceAlgorithm {
+    ManhattanDistanceAlgorithm mDistance = new ManhattanDistanceAlgorithm();
+    String[] catData = new String[0];
+
+    // test 1
+    @Test
+    void testNumericalManhattanDistance() {
+        DataPoint dp1 = new DataPoint("", catData, new Double[]{2.0, 5.0, 1.0, -4.0, 3.0});
+        DataPoint dp2 = new DataPoint("", catData, new Double[]{5.0, 10.0, 8.0, 4.0, 3.0});
+
+        assertEquals(23.0, mDistance.measureDistance(dp1, dp2), "differences of 3, 5, 7, 8 and 0 should add up to 23");
+    }
+
+    // test 2
+    @Test
+    void testMultiTypedDistance() {
+        DataPoint dp1 = new DataPoint("", new String[]{"MIT"}, new Double[]{4.0});
+        DataPoint dp2 = new DataPoint("", new String[]{"NIV"}, new Double[]{2.0});
+
+        assertEquals(4.0, mDistance.measureDistance(dp1, dp2), "difference of 2 plus an edit distance of 2 should give 4");
+    }
+
+    // test 3
+    @Test
+    void testBoundedDistance() {
+        DataPoint dp1 = new DataPoint("", catData, new Double[]{0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0});
+        DataPoint dp2 = new DataPoint("", catData, new Double[]{1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0});
+
+        assertEquals(8.0, mDistance.measureComparisonDistance(dp1, dp2, 8.0), "a distance on the bound should be exact");
+        assertTrue(mDistance.measureComparisonDistance(dp1, dp2, 3.0) > 3.0, "a distance past the bound should be larger than it");
+    }
+}
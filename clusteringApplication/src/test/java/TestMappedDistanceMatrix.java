@@ -0,0 +1,95 @@
+import kernel.Cluster;
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.DistanceMatrix;
+import kernel.Linkage;
+import kernel.MappedDistanceMatrix;
+import kernel.MergeTree;
+import kernel.NearestNeighborChain;
+import org.junit.jupiter.api.Test;
+import plugins.AgglomerativeAlgorithm;
+import plugins.EuclideanDistanceAlgorithm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestMappedDistanceMatrix {
+    EuclideanDistanceAlgorithm eDistance = new EuclideanDistanceAlgorithm();
+
+    // test 1
+    @Test
+    void testMatchesDistanceMatrix() throws IOException {
+        // points with a categorical feature cannot be measured by the block engine, so both ways of filling are checked
+        for (int categoricalCount = 0; categoricalCount <= 1; categoricalCount++) {
+            ArrayList<DataPoint> points = TestData.createDataset(150, categoricalCount).getDataPoints();
+            DistanceMatrix expected = DistanceMatrix.compute(points, eDistance);
+            try (MappedDistanceMatrix actual = MappedDistanceMatrix.compute(points, eDistance)) {
+                assertEquals(150, actual.size(), "The matrix should hold every point");
+                for (int i = 0; i < points.size(); i++) {
+                    for (int j = 0; j < points.size(); j++) {
+                        assertEquals(expected.get(i, j), actual.get(i, j), "The distances on disk should match the distances in memory");
+                    }
+                }
+
+                actual.set(7, 3, 42.0);
+                assertEquals(42.0, actual.get(3, 7), "A pair should hold the same value either way round");
+            }
+        }
+    }
+
+    // test 2
+    @Test
+    void testMatchesClosestPairMerging() throws IOException {
+        ArrayList<DataPoint> points = TestData.createDataset(80, 0).getDataPoints();
+        for (Linkage linkage : Linkage.values()) {
+            double[] distances = DistanceMatrix.compute(points, eDistance).toArray();
+            for (int i = 0; i < distances.length; i++) {
+                distances[i] = linkage.usesSquaredDistances() ? distances[i] : Math.sqrt(distances[i]);
+            }
+            MergeTree expected = NearestNeighborChain.mergeClosestPairs(distances, points.size(), linkage);
+
+            MergeTree actual;
+            try (MappedDistanceMatrix matrix = MappedDistanceMatrix.compute(points, eDistance)) {
+                matrix.convert(distance -> linkage.usesSquaredDistances() ? distance : Math.sqrt(distance));
+                actual = NearestNeighborChain.mergeClosestPairs(matrix, linkage);
+            }
+
+            assertEquals(expected.getMergeCount(), actual.getMergeCount(), linkage + " linkage should merge until one cluster is left");
+            for (int k = 0; k < actual.getMergeCount(); k++) {
+                assertEquals(expected.getLeft(k), actual.getLeft(k), linkage + " linkage should make the same merges on disk");
+                assertEquals(expected.getRight(k), actual.getRight(k), linkage + " linkage should make the same merges on disk");
+                assertEquals(expected.getHeight(k), actual.getHeight(k), linkage + " linkage merge heights should match");
+            }
+        }
+    }
+
+    // test 3
+    @Test
+    void testAgglomerativeDistancesOnDisk() {
+        Dataset dataset = TestData.createDataset(120, 1);
+        AgglomerativeAlgorithm agglomerative = new AgglomerativeAlgorithm();
+        agglomerative.setRoundLimit(110);
+        for (Linkage linkage : new Linkage[]{Linkage.SINGLE, Linkage.AVERAGE}) {
+            agglomerative.setLinkage(linkage);
+            agglomerative.setDistancesOnDisk(false);
+            Cluster[] expected = agglomerative.clusterData(dataset.getDataPoints(), eDistance);
+
+            // a different dataset with the same rows, so the hierarchy is not taken from the cache
+            Dataset copy = TestData.createDataset(120, 1);
+            agglomerative.setDistancesOnDisk(true);
+            Cluster[] actual = agglomerative.clusterData(copy.getDataPoints(), eDistance);
+
+            assertEquals(expected.length, actual.length, linkage + " linkage should give the same clusters with distances on disk");
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].size(), actual[i].size(), linkage + " linkage should give the same clusters with distances on disk");
+                for (int j = 0; j < expected[i].size(); j++) {
+                    assertTrue(expected[i].get(j).getRow() == actual[i].get(j).getRow(),
+                            linkage + " linkage should give the same clusters with distances on disk");
+                }
+            }
+        }
+    }
+}
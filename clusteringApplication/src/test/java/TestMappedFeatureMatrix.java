@@ -0,0 +1,79 @@
+import kernel.FeatureMatrix;
+import kernel.MappedFeatureMatrix;
+import org.junit.jupiter.api.Test;
+import plugins.DefaultParser;
+import plugins.EuclideanDistanceAlgorithm;
+import kernel.DataPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestMappedFeatureMatrix {
+    File ecoli = new File("src/main/resources/ecoli.data");
+
+    // test 1
+    @Test
+    void testReadBackRows() throws IOException {
+        MappedFeatureMatrix matrix = new MappedFeatureMatrix(3);
+        for (int i = 0; i < 100; i++) {
+            matrix.addRow(new double[]{i, i + 0.5, -i});
+        }
+        assertTrue(matrix.getRowCount() == 100 && matrix.get(42, 1) == 42.5 && matrix.get(99, 2) == -99.0,
+                "Values written to the mapped file should be read back unchanged");
+        matrix.close();
+    }
+
+    // test 2
+    @Test
+    void testCopyIsIndependent() throws IOException {
+        MappedFeatureMatrix matrix = new MappedFeatureMatrix(1);
+        matrix.addRow(new double[]{1.0});
+        FeatureMatrix copy = matrix.copy();
+        matrix.set(0, 0, 2.0);
+        assertEquals(1.0, copy.get(0, 0), "Changing the matrix should not change its copy");
+        matrix.close();
+    }
+
+    // test 3
+    @Test
+    void testOffHeapParseMatchesHeap() throws IOException {
+        DefaultParser heapParser = new DefaultParser();
+        heapParser.setDatabase(ecoli);
+        ArrayList<DataPoint> heapData = heapParser.readDB();
+
+        DefaultParser mappedParser = new DefaultParser();
+        mappedParser.setOffHeap(true);
+        mappedParser.setDatabase(ecoli);
+        ArrayList<DataPoint> mappedData = mappedParser.readDB();
+
+        EuclideanDistanceAlgorithm distance = new EuclideanDistanceAlgorithm();
+        assertTrue(mappedData.size() == heapData.size()
+                        && distance.measureDistance(heapData.get(3), heapData.get(200)) == distance.measureDistance(mappedData.get(3), mappedData.get(200)),
+                "Storing the features off the heap should not change the data which is read");
+    }
+
+    private int countMatrixFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles(
+                (dir, name) -> name.startsWith("features") && name.endsWith(".matrix"));
+        return Objects.requireNonNull(files).length;
+    }
+
+    // test 4
+    @Test
+    void testClosingDatasetRemovesFiles() throws IOException {
+        int before = countMatrixFiles();
+        DefaultParser mappedParser = new DefaultParser();
+        mappedParser.setOffHeap(true);
+        mappedParser.setDatabase(ecoli);
+        ArrayList<DataPoint> mappedData = mappedParser.readDB();
+        assertEquals(before + 2, countMatrixFiles(), "The working and original features should each have a file");
+
+        mappedData.get(0).getDataset().close();
+        assertEquals(before, countMatrixFiles(), "Closing the dataset should remove both of its files");
+    }
+}
@@ -0,0 +1,94 @@
+import kernel.Cluster;
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.Linkage;
+import kernel.MergeTree;
+import kernel.MergeTreeCache;
+import org.junit.jupiter.api.Test;
+import plugins.AgglomerativeAlgorithm;
+import plugins.EuclideanDistanceAlgorithm;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestMergeTreeCache {
+    EuclideanDistanceAlgorithm eDistance = new EuclideanDistanceAlgorithm();
+
+    // test 1
+    @Test
+    void testCuts() {
+        // points 0 and 1 merge at 1, point 2 joins them at 2 and point 3 joins everything at 5
+        MergeTree tree = MergeTree.fromMerges(4, new int[]{0, 2, 3}, new int[]{1, 0, 1}, new double[]{1, 2, 5});
+        ArrayList<DataPoint> points = TestData.createDataset(4).getDataPoints();
+
+        assertEquals(4, tree.cut(points, 0).length, "No merges should leave every point on its own");
+        assertEquals(2, tree.cutToCount(points, 2).length, "Cutting to two clusters should give two clusters");
+        assertEquals(3, tree.cutToCount(points, 2)[0].size(), "The first three points should be together");
+        assertEquals(1, tree.cutToCount(points, 0).length, "Fewer than one cluster should give a single cluster");
+        assertEquals(3, tree.cutAtHeight(points, 1.5).length, "Only the first merge is below 1.5");
+        assertEquals(2, tree.cutAtHeight(points, 2).length, "Merges at the height should be made");
+        assertEquals(1, tree.cutAtHeight(points, 10).length, "Every merge is below 10");
+    }
+
+    // test 2
+    @Test
+    void testTreeReusedForOtherRounds() {
+        Dataset dataset = TestData.createDataset(30);
+        AgglomerativeAlgorithm agglomerative = new AgglomerativeAlgorithm();
+        agglomerative.setLinkage(Linkage.WARD);
+
+        agglomerative.setRoundLimit(10);
+        Cluster[] clusters = agglomerative.clusterData(dataset.getDataPoints(), eDistance);
+        assertEquals(20, clusters.length, "Ten merges of thirty points should leave twenty clusters");
+        MergeTree tree = agglomerative.getMergeTree(dataset.getDataPoints(), eDistance);
+
+        agglomerative.setRoundLimit(25);
+        clusters = agglomerative.clusterData(dataset.getDataPoints(), eDistance);
+        assertEquals(5, clusters.length, "Twenty five merges of thirty points should leave five clusters");
+        assertSame(tree, agglomerative.getMergeTree(dataset.getDataPoints(), eDistance), "The tree should be reused for a different number of rounds");
+
+        agglomerative.setLinkage(Linkage.AVERAGE);
+        assertNotSame(tree, agglomerative.getMergeTree(dataset.getDataPoints(), eDistance), "Each linkage should have its own tree");
+    }
+
+    // test 3
+    @Test
+    void testTreeReplacedWhenDatasetChanges() {
+        Dataset dataset = TestData.createDataset(20);
+        ArrayList<DataPoint> points = dataset.getDataPoints();
+        MergeTreeCache cache = new MergeTreeCache(4);
+        MergeTree tree = MergeTree.fromMerges(20, new int[0], new int[0], new double[0]);
+
+        cache.put(points, eDistance, "test", tree);
+        assertSame(tree, cache.get(points, eDistance, "test"), "The tree should be cached for the dataset");
+        assertEquals(null, cache.get(points, eDistance, "other"), "Other methods should not share the tree");
+
+        points.get(3).setNumerical(0, 42.0);
+        assertEquals(null, cache.get(points, eDistance, "test"), "The tree should be dropped once the features change");
+        assertEquals(0, cache.size(), "The old tree should be removed");
+
+        for (int i = 0; i < 6; i++) {
+            cache.put(TestData.createDataset(5 + i).getDataPoints(), eDistance, "test", tree);
+        }
+        assertTrue(cache.size() <= 4, "The cache should keep at most its capacity");
+    }
+
+    // test 4
+    @Test
+    void testReleasedDatasetRemoved() throws InterruptedException {
+        MergeTreeCache cache = new MergeTreeCache(4);
+        cache.put(TestData.createDataset(10).getDataPoints(), eDistance, "test", MergeTree.fromMerges(10, new int[0], new int[0], new double[0]));
+        assertEquals(1, cache.size(), "The tree should be cached while the dataset may still be used");
+
+        // the dataset is no longer referenced, so once it has been collected its tree should be removed
+        for (int attempt = 0; attempt < 50 && cache.size() > 0; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, cache.size(), "The tree of a dataset which is no longer used should be removed");
+    }
+}
@@ -0,0 +1,146 @@
+import kernel.Cluster;
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.Linkage;
+import kernel.MergeTree;
+import kernel.NearestNeighborChain;
+import org.junit.jupiter.api.Test;
+import plugins.AgglomerativeAlgorithm;
+import plugins.EuclideanDistanceAlgorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestNearestNeighborChain {
+    EuclideanDistanceAlgorithm eDistance = new EuclideanDistanceAlgorithm();
+
+    private double[] pairDistances(ArrayList<DataPoint> points, boolean squared) {
+        int n = points.size();
+        double[] distances = new double[n * (n - 1) / 2];
+        int index = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double distance = eDistance.measureDistance(points.get(i), points.get(j));
+                distances[index++] = squared ? distance * distance : distance;
+            }
+        }
+        return distances;
+    }
+
+    // merges the closest pair of clusters each round by comparing every pair, to check the engine against
+    private MergeTree mergeClosestPairs(double[] pairs, int n, Linkage linkage) {
+        double[][] distances = new double[n][n];
+        int index = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                distances[i][j] = pairs[index];
+                distances[j][i] = pairs[index++];
+            }
+        }
+        int[] sizes = new int[n];
+        boolean[] merged = new boolean[n];
+        Arrays.fill(sizes, 1);
+        int[] pointsA = new int[n - 1];
+        int[] pointsB = new int[n - 1];
+        double[] heights = new double[n - 1];
+
+        for (int m = 0; m < n - 1; m++) {
+            int first = -1;
+            int second = -1;
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    if (!merged[i] && !merged[j] && (first < 0 || distances[i][j] < distances[first][second])) {
+                        first = i;
+                        second = j;
+                    }
+                }
+            }
+            pointsA[m] = first;
+            pointsB[m] = second;
+            heights[m] = linkage.usesSquaredDistances() ? Math.sqrt(distances[first][second]) : distances[first][second];
+            for (int k = 0; k < n; k++) {
+                if (!merged[k] && k != first && k != second) {
+                    distances[first][k] = linkage.update(distances[first][k], distances[second][k],
+                            distances[first][second], sizes[first], sizes[second], sizes[k]);
+                    distances[k][first] = distances[first][k];
+                }
+            }
+            sizes[first] += sizes[second];
+            merged[second] = true;
+        }
+        return MergeTree.fromMerges(n, pointsA, pointsB, heights);
+    }
+
+    private void assertSameClusters(Cluster[] expected, Cluster[] actual, String message) {
+        assertEquals(expected.length, actual.length, message);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].size(), actual[i].size(), message);
+            for (int j = 0; j < expected[i].size(); j++) {
+                assertTrue(expected[i].get(j) == actual[i].get(j), message);
+            }
+        }
+    }
+
+    // test 1
+    @Test
+    void testMatchesClosestPairMerging() {
+        ArrayList<DataPoint> points = TestData.createDataset(50).getDataPoints();
+        for (Linkage linkage : Linkage.values()) {
+            double[] pairs = pairDistances(points, linkage.usesSquaredDistances());
+            MergeTree expected = mergeClosestPairs(pairs, points.size(), linkage);
+            MergeTree actual = NearestNeighborChain.cluster(pairs.clone(), points.size(), linkage);
+
+            assertEquals(49, actual.getMergeCount(), linkage + " linkage should merge until one cluster is left");
+            for (int k = 0; k < actual.getMergeCount(); k++) {
+                assertEquals(expected.getHeight(k), actual.getHeight(k), 1e-9, linkage + " linkage merge heights should match");
+                assertEquals(expected.getSize(k), actual.getSize(k), linkage + " linkage merge sizes should match");
+            }
+            for (int rounds = 0; rounds < points.size(); rounds += 7) {
+                assertSameClusters(expected.cut(points, rounds), actual.cut(points, rounds),
+                        linkage + " linkage should give the same clusters after " + rounds + " rounds");
+            }
+        }
+    }
+
+    // test 2
+    @Test
+    void testMergeTreeNumbering() {
+        // points 0 and 2 merge first, then point 1 joins them
+        MergeTree tree = MergeTree.fromMerges(3, new int[]{2, 1}, new int[]{0, 2}, new double[]{1.0, 2.5});
+        assertEquals(0, tree.getLeft(0), "The first merge joins points 0 and 2");
+        assertEquals(2, tree.getRight(0), "The first merge joins points 0 and 2");
+        assertEquals(1, tree.getLeft(1), "The second merge joins point 1 to the cluster of the first merge");
+        assertEquals(3, tree.getRight(1), "The second merge joins point 1 to the cluster of the first merge");
+        assertEquals(3, tree.getSize(1), "The last merge holds every point");
+        assertEquals(2.5, tree.getHeight(1), "The height of a merge should be kept");
+    }
+
+    // test 3
+    @Test
+    void testAgglomerativeCompleteLinkage() {
+        // the gaps between the points grow, single linkage would chain the first five points together while complete
+        // linkage keeps the clusters compact
+        double[] positions = {0, 1, 2.1, 3.3, 4.6, 6};
+        Dataset dataset = new Dataset(2, 0);
+        for (double position : positions) {
+            dataset.addRow("", new double[]{position, position * 2}, new String[0]);
+        }
+        ArrayList<DataPoint> points = dataset.getDataPoints();
+
+        AgglomerativeAlgorithm agglomerative = new AgglomerativeAlgorithm();
+        agglomerative.setLinkage(Linkage.COMPLETE);
+        agglomerative.setRoundLimit(4);
+        Cluster[] clusters = agglomerative.clusterData(points, eDistance);
+
+        assertEquals(2, clusters.length, "Four merges of six points should leave two clusters");
+        assertEquals(4, clusters[0].size(), "Complete linkage should join the first two pairs");
+        assertEquals(2, clusters[1].size(), "Complete linkage should keep the last pair apart");
+
+        agglomerative.setLinkage(Linkage.SINGLE);
+        clusters = agglomerative.clusterData(dataset.getDataPoints(), eDistance);
+        assertEquals(5, clusters[0].size(), "Single linkage should chain the first five points together");
+    }
+}
@@ -1,4 +1,6 @@
 import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.FeatureStatistics;
 import kernel.MeanNormalization;
 import org.junit.jupiter.api.Test;
 
@@ -97,4 +99,40 @@ public class TestScaling {
         assertTrue(scaledValue1 == -0.425 && scaledValue2 == 0.425, "Scaling one feature should not have an effect on other features and thus" +
                 " results should match that of previous independent tests");
     }
+
+    // test 4
+    @Test
+    void scaleInBatches(){
+        ArrayList<DataPoint> firstBatch = new ArrayList<>();
+        firstBatch.add(new DataPoint("", catData, new Double[]{2.0}));
+        firstBatch.add(new DataPoint("", catData, new Double[]{5.0}));
+        ArrayList<DataPoint> secondBatch = new ArrayList<>();
+        secondBatch.add(new DataPoint("", catData, new Double[]{3.0}));
+        secondBatch.add(new DataPoint("", catData, new Double[]{10.0}));
+        secondBatch.add(new DataPoint("", catData, new Double[]{7.0}));
+
+        FeatureStatistics statistics = new FeatureStatistics();
+        statistics.add(firstBatch);
+        statistics.add(secondBatch);
+        scaler.scaleBatch(firstBatch, statistics);
+
+        DecimalFormat df = new DecimalFormat("##.###");
+        Double scaledValue = Double.valueOf(df.format(firstBatch.get(0).getNumerical(0)));
+        assertEquals(-0.425, scaledValue, "Statistics collected a batch at a time should scale the same as the whole dataset in test 1");
+    }
+
+    // test 5
+    @Test
+    void scaleWholeDatasetOnce(){
+        Dataset dataset = new Dataset(1, 0);
+        double[] values = {2.0, 5.0, 3.0, 10.0, 7.0};
+        for (double value : values) {
+            dataset.addRow("", new double[]{value}, catData);
+        }
+
+        ArrayList<DataPoint> data = scaler.scaleDataset(dataset.getDataPoints());
+        double scaledOnce = data.get(0).getNumericalValue(0);
+        scaler.scaleDataset(dataset.getDataPoints());
+        assertEquals(scaledOnce, data.get(0).getNumericalValue(0), "scaling a dataset which is already scaled should not change it");
+    }
 }
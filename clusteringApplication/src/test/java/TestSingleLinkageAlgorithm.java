@@ -0,0 +1,137 @@
+import kernel.Cluster;
+import kernel.DataPoint;
+import kernel.Dataset;
+import kernel.MergeTree;
+import org.junit.jupiter.api.Test;
+import plugins.AgglomerativeAlgorithm;
+import plugins.EuclideanDistanceAlgorithm;
+import plugins.SingleLinkageAlgorithm;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestSingleLinkageAlgorithm {
+    SingleLinkageAlgorithm singleLinkage = new SingleLinkageAlgorithm();
+    EuclideanDistanceAlgorithm eDistance = new EuclideanDistanceAlgorithm();
+
+    private Dataset createDataset(int rows, boolean categorical) {
+        Dataset dataset = new Dataset(3, categorical ? 1 : 0);
+        String[] categories = {"MIT", "NUC", "CYT", "ME1"};
+        Random random = new Random(rows);
+        for (int i = 0; i < rows; i++) {
+            double[] numerical = {random.nextDouble() * 10, random.nextDouble() * 5, random.nextGaussian()};
+            String[] categoricalValues = categorical ? new String[]{categories[random.nextInt(categories.length)]} : new String[0];
+            dataset.addRow("", numerical, categoricalValues);
+        }
+        return dataset;
+    }
+
+    // test 1
+    @Test
+    void testBaseCase() {
+        DataPoint dp = new DataPoint("", new String[0], new Double[]{2.0, 4.0});
+        ArrayList<DataPoint> dpList = new ArrayList<>();
+        dpList.add(dp);
+
+        singleLinkage.setRoundLimit(5);
+        Cluster[] clusteredOutput = singleLinkage.clusterData(dpList, eDistance);
+        assertEquals(1, clusteredOutput.length, "Only single value input so no data to cluster");
+        assertTrue(clusteredOutput[0].get(0).equals(dp), "Only single value input so no data to cluster");
+    }
+
+    // test 2
+    @Test
+    void testSpanningTreeSize() {
+        ArrayList<DataPoint> points = createDataset(40, false).getDataPoints();
+        MergeTree tree = singleLinkage.buildSpanningTree(points, eDistance);
+        assertEquals(39, tree.getMergeCount(), "A spanning tree has one edge less than the number of points");
+
+        // merging along every edge leaves one cluster holding every point
+        Cluster[] clusters = tree.cut(points, tree.getMergeCount());
+        assertEquals(1, clusters.length, "Merging along every edge should join every point");
+        assertEquals(40, clusters[0].size(), "Merging along every edge should join every point");
+        for (int k = 1; k < tree.getMergeCount(); k++) {
+            assertTrue(tree.getHeight(k - 1) <= tree.getHeight(k), "Edges should be merged from the shortest to the longest");
+        }
+    }
+
+    // test 3
+    @Test
+    void testMatchesAgglomerative() {
+        AgglomerativeAlgorithm agglomerative = new AgglomerativeAlgorithm();
+        for (boolean categorical : new boolean[]{false, true}) {
+            Dataset dataset = createDataset(60, categorical);
+            for (int rounds : new int[]{1, 10, 30, 55, 59, 100}) {
+                agglomerative.setRoundLimit(rounds);
+                singleLinkage.setRoundLimit(rounds);
+                Cluster[] expected = agglomerative.clusterData(dataset.getDataPoints(), eDistance);
+                Cluster[] actual = singleLinkage.clusterData(dataset.getDataPoints(), eDistance);
+
+                assertEquals(expected.length, actual.length, "Both algorithms should leave the same number of clusters");
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(expected[i].size(), actual[i].size(), "Both algorithms should give the same clusters");
+                    for (int j = 0; j < expected[i].size(); j++) {
+                        assertEquals(expected[i].get(j).getRow(), actual[i].get(j).getRow(),
+                                "Both algorithms should give the same data points in the same order");
+                    }
+                }
+            }
+        }
+    }
+
+    // test 4
+    @Test
+    void testEqualEdgesMergedInClusterOrder() {
+        // 0 and 5 merge first, then {0, 5} is as close to 3 as 1 is to 4
+        Dataset dataset = new Dataset(1, 0);
+        for (double value : new double[]{0, 10, 30, 3, 12, 1}) {
+            dataset.addRow("", new double[]{value}, new String[0]);
+        }
+        ArrayList<DataPoint> points = dataset.getDataPoints();
+        Cluster[] clusters = singleLinkage.buildSpanningTree(points, eDistance).cut(points, 2);
+
+        // the agglomerative algorithm lists {0, 5} before {1}, so it joins {0, 5} with 3 before joining 1 with 4
+        int[][] expected = {{0, 5, 3}, {1}, {2}, {4}};
+        assertEquals(expected.length, clusters.length, "Two merges should leave four clusters");
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].length, clusters[i].size(), "Equal edges should be merged in the order of their clusters");
+            for (int j = 0; j < expected[i].length; j++) {
+                assertEquals(expected[i][j], clusters[i].get(j).getRow(), "Equal edges should be merged in the order of their clusters");
+            }
+        }
+    }
+
+    // test 5
+    @Test
+    void testEqualDistancesMatchAgglomerative() {
+        // small integer positions give many pairs of equal distance, including pairs the spanning tree leaves out
+        AgglomerativeAlgorithm agglomerative = new AgglomerativeAlgorithm();
+        Random random = new Random(19);
+        for (int trial = 0; trial < 500; trial++) {
+            Dataset dataset = new Dataset(2, 0);
+            for (int i = 0; i < 9; i++) {
+                dataset.addRow("", new double[]{random.nextInt(5), random.nextInt(5)}, new String[0]);
+            }
+            ArrayList<DataPoint> points = dataset.getDataPoints();
+            MergeTree expected = agglomerative.getMergeTree(points, eDistance);
+            MergeTree actual = singleLinkage.buildSpanningTree(points, eDistance);
+
+            for (int rounds = 1; rounds < points.size(); rounds++) {
+                Cluster[] expectedClusters = expected.cut(points, rounds);
+                Cluster[] actualClusters = actual.cut(points, rounds);
+                assertEquals(expectedClusters.length, actualClusters.length, "Both algorithms should leave the same number of clusters");
+                for (int i = 0; i < expectedClusters.length; i++) {
+                    assertEquals(expectedClusters[i].size(), actualClusters[i].size(),
+                            "Equal distances should be merged in the same order as the agglomerative algorithm");
+                    for (int j = 0; j < expectedClusters[i].size(); j++) {
+                        assertEquals(expectedClusters[i].get(j).getRow(), actualClusters[i].get(j).getRow(),
+                                "Equal distances should be merged in the same order as the agglomerative algorithm");
+                    }
+                }
+            }
+        }
+    }
+}